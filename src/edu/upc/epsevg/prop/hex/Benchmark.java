@@ -0,0 +1,1601 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.BatchEvaluator;
+import edu.upc.epsevg.prop.hex.players.Dijkstra;
+import edu.upc.epsevg.prop.hex.players.EvaluationCache;
+import edu.upc.epsevg.prop.hex.players.HexPosition;
+import edu.upc.epsevg.prop.hex.players.IncrementalDijkstra;
+import edu.upc.epsevg.prop.hex.players.InferiorCells;
+import edu.upc.epsevg.prop.hex.players.MustPlayRegion;
+import edu.upc.epsevg.prop.hex.players.OffHeapTranspositionTable;
+import edu.upc.epsevg.prop.hex.players.PlayerIDHexCalculators;
+import edu.upc.epsevg.prop.hex.players.PlayerMinimaxHexCalculators;
+import edu.upc.epsevg.prop.hex.players.TranspositionTable;
+import edu.upc.epsevg.prop.hex.players.VirtualConnections;
+import java.awt.Point;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * Mesures de rendiment dels components del motor de cerca.
+ * Cada mesura es llança pel seu nom com a primer argument (per defecte, totes).
+ */
+public class Benchmark {
+
+    private static final int[] MIDES = {9, 11, 13};
+
+    public static void main(String[] args) {
+        String quin = args.length > 0 ? args[0] : "tots";
+        if (quin.equals("tots") || quin.equals("incremental")) {
+            incremental();
+        }
+        if (quin.equals("tots") || quin.equals("cache")) {
+            cache();
+        }
+        if (quin.equals("tots") || quin.equals("ordenacio")) {
+            ordenacio();
+        }
+        if (quin.equals("tots") || quin.equals("mapes")) {
+            mapes();
+        }
+        if (quin.equals("tots") || quin.equals("dirigida")) {
+            dirigida();
+        }
+        if (quin.equals("tots") || quin.equals("perezosa")) {
+            perezosa();
+        }
+        if (quin.equals("tots") || quin.equals("lots")) {
+            lots();
+        }
+        if (quin.equals("tots") || quin.equals("connexions")) {
+            connexions();
+        }
+        if (quin.equals("tots") || quin.equals("inferiors")) {
+            inferiors();
+        }
+        if (quin.equals("tots") || quin.equals("obligada")) {
+            obligada();
+        }
+        if (quin.equals("tots") || quin.equals("zona")) {
+            zona();
+        }
+        if (quin.equals("tots") || quin.equals("paralel")) {
+            paralel();
+        }
+        if (quin.equals("tots") || quin.equals("smp")) {
+            smp();
+        }
+        if (quin.equals("tots") || quin.equals("ybwc")) {
+            ybwc();
+        }
+        if (quin.equals("tots") || quin.equals("posicio")) {
+            posicio();
+        }
+        if (quin.equals("tots") || quin.equals("taula")) {
+            taula();
+        }
+        if (quin.equals("tots") || quin.equals("concurrent")) {
+            concurrent();
+        }
+        if (quin.equals("tots") || quin.equals("foraheap")) {
+            foraHeap();
+        }
+        if (quin.equals("tots") || quin.equals("persistent")) {
+            persistent();
+        }
+        if (quin.equals("tots") || quin.equals("generacions")) {
+            generacions();
+        }
+    }
+
+    /**
+     * Genera una posició a mitja partida jugant pedres a l'atzar.
+     *
+     * @param mida Mida del tauler.
+     * @param pedres Nombre de pedres a col·locar.
+     * @param llavor Llavor del generador aleatori.
+     * @return L'estat resultant.
+     */
+    static HexGameStatus posicioAleatoria(int mida, int pedres, long llavor) {
+        Random random = new Random(llavor);
+        HexGameStatus s = new HexGameStatus(mida);
+        for (int i = 0; i < pedres && !s.isGameOver(); i++) {
+            List<MoveNode> moves = s.getMoves();
+            s.placeStone(moves.get(random.nextInt(moves.size())).getPoint());
+        }
+        return s;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Avaluació incremental vs. recàlcul complet
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_ARBRE = 3;
+    private static final int BRANCA_ARBRE = 8;
+
+    /**
+     * Recorre el mateix arbre (profunditat 3, 8 fills per node) avaluant les fulles amb
+     * el recàlcul complet de {@link Dijkstra} i amb {@link IncrementalDijkstra}.
+     */
+    static void incremental() {
+        System.out.println("== Avaluació incremental vs. recàlcul complet (arbre " + PROF_ARBRE
+                + " plies x " + BRANCA_ARBRE + " fills) ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[20];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 4, i);
+            }
+            Dijkstra dijkstra = new Dijkstra();
+            IncrementalDijkstra incremental = new IncrementalDijkstra(mida);
+            Dijkstra resultat = new Dijkstra();
+
+            long[] fulles = new long[1];
+            long checkComplet = 0;
+            long checkIncremental = 0;
+            long tempsComplet = Long.MAX_VALUE;
+            long tempsIncremental = Long.MAX_VALUE;
+            for (int rep = 0; rep < 5; rep++) {
+                long t0 = System.nanoTime();
+                fulles[0] = 0;
+                checkComplet = 0;
+                for (HexGameStatus s : posicions) {
+                    checkComplet += arbreComplet(s, PROF_ARBRE, new Random(mida), dijkstra, fulles);
+                }
+                long t1 = System.nanoTime();
+                checkIncremental = 0;
+                for (HexGameStatus s : posicions) {
+                    incremental.reiniciar(s);
+                    checkIncremental += arbreIncremental(s, PROF_ARBRE, new Random(mida), incremental, resultat);
+                }
+                long t2 = System.nanoTime();
+                tempsComplet = Math.min(tempsComplet, t1 - t0);
+                tempsIncremental = Math.min(tempsIncremental, t2 - t1);
+            }
+            System.out.printf("%2dx%-2d  fulles=%d  complet=%.2f us/fulla  incremental=%.2f us/fulla  x%.2f  %s%n",
+                    mida, mida, fulles[0],
+                    tempsComplet / 1e3 / fulles[0], tempsIncremental / 1e3 / fulles[0],
+                    (double) tempsComplet / tempsIncremental,
+                    checkComplet == checkIncremental ? "resultats iguals" : "RESULTATS DIFERENTS");
+        }
+    }
+
+    private static long arbreComplet(HexGameStatus s, int prof, Random random, Dijkstra dijkstra, long[] fulles) {
+        if (prof == 0) {
+            fulles[0]++;
+            Dijkstra d = dijkstra.calcular(s, 1);
+            return 31L * d.shortestPath + 7L * d.viablePathsCount + 3L * d.enemyShortestPath + d.viableEnemyPathsCount;
+        }
+        long suma = 0;
+        List<MoveNode> moves = s.getMoves();
+        for (int i = 0; i < BRANCA_ARBRE && i < moves.size(); i++) {
+            Point p = moves.get(random.nextInt(moves.size())).getPoint();
+            if (s.getPos(p.x, p.y) != 0) continue;
+            HexGameStatus fill = new HexGameStatus(s);
+            fill.placeStone(p);
+            suma += arbreComplet(fill, prof - 1, random, dijkstra, fulles);
+        }
+        return suma;
+    }
+
+    private static long arbreIncremental(HexGameStatus s, int prof, Random random,
+                                         IncrementalDijkstra incremental, Dijkstra resultat) {
+        if (prof == 0) {
+            Dijkstra d = incremental.metriques(1, resultat);
+            return 31L * d.shortestPath + 7L * d.viablePathsCount + 3L * d.enemyShortestPath + d.viableEnemyPathsCount;
+        }
+        long suma = 0;
+        List<MoveNode> moves = s.getMoves();
+        for (int i = 0; i < BRANCA_ARBRE && i < moves.size(); i++) {
+            Point p = moves.get(random.nextInt(moves.size())).getPoint();
+            if (s.getPos(p.x, p.y) != 0) continue;
+            // El recorregut necessita l'estat per generar els fills; l'avaluació no el fa servir
+            HexGameStatus fill = new HexGameStatus(s);
+            fill.placeStone(p);
+            incremental.push(p, s.getCurrentPlayerColor());
+            suma += arbreIncremental(fill, prof - 1, random, incremental, resultat);
+            incremental.pop();
+        }
+        return suma;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Memòria cau d'avaluacions
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_CACHE = 3;
+
+    /**
+     * Juga la mateixa seqüència de posicions amb el jugador Minimax amb i sense memòria cau
+     * d'avaluacions i compara el temps total, els encerts i les jugades escollides.
+     */
+    static void cache() {
+        System.out.println("== Memòria cau d'avaluacions (Minimax, profunditat " + PROF_CACHE + ") ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[10];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 4, 100 + i);
+            }
+            long tempsSense = Long.MAX_VALUE;
+            long tempsAmb = Long.MAX_VALUE;
+            long hits = 0;
+            long misses = 0;
+            boolean iguals = true;
+            for (int rep = 0; rep < 3; rep++) {
+                hits = 0;
+                misses = 0;
+                long t0 = System.nanoTime();
+                Point[] jugadesSense = jugarPosicions(posicions, mida, 0, null);
+                long t1 = System.nanoTime();
+                long[] comptadors = new long[2];
+                Point[] jugadesAmb = jugarPosicions(posicions, mida, EvaluationCache.ENTRADES_PER_DEFECTE, comptadors);
+                long t2 = System.nanoTime();
+                hits = comptadors[0];
+                misses = comptadors[1];
+                iguals = Arrays.equals(jugadesSense, jugadesAmb);
+                tempsSense = Math.min(tempsSense, t1 - t0);
+                tempsAmb = Math.min(tempsAmb, t2 - t1);
+            }
+            System.out.printf("%2dx%-2d  sense=%.1f ms  amb=%.1f ms  x%.2f  encerts=%d fallades=%d (%.1f%%)  %s%n",
+                    mida, mida, tempsSense / 1e6, tempsAmb / 1e6, (double) tempsSense / tempsAmb,
+                    hits, misses, 100.0 * hits / Math.max(1, hits + misses),
+                    iguals ? "jugades iguals" : "JUGADES DIFERENTS");
+        }
+    }
+
+    private static Point[] jugarPosicions(HexGameStatus[] posicions, int mida, int entrades, long[] comptadors) {
+        Point[] jugades = new Point[posicions.length];
+        for (int i = 0; i < posicions.length; i++) {
+            PlayerMinimaxHexCalculators jugador = new PlayerMinimaxHexCalculators("bench", PROF_CACHE, mida);
+            jugador.setMidaCacheAvaluacio(entrades);
+            jugades[i] = jugador.move(new HexGameStatus(posicions[i])).getPoint();
+            if (comptadors != null) {
+                comptadors[0] += jugador.getCacheAvaluacio().getHits();
+                comptadors[1] += jugador.getCacheAvaluacio().getMisses();
+            }
+        }
+        return jugades;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Ordenació de moviments
+    // ------------------------------------------------------------------------------------------
+
+    /**
+     * Compara l'ordenació amb una avaluació per moviment amb l'antiga, que avaluava els dos
+     * fills dins del comparador. Es fa sobre el tauler buit i sobre posicions a mitja partida,
+     * totes amb el primer jugador a moure.
+     */
+    static void ordenacio() {
+        System.out.println("== Ordenació de moviments: comparador vs. una avaluació per moviment ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[5];
+            posicions[0] = new HexGameStatus(mida);
+            for (int i = 1; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, 2 * (mida * mida / 8), 200 + i);
+            }
+            PlayerMinimaxHexCalculators jugador = new PlayerMinimaxHexCalculators("bench", 1, mida);
+            jugador.setMidaCacheAvaluacio(0);
+            // Una jugada fixa el color del jugador, que és el que fa servir l'ordenació
+            jugador.move(new HexGameStatus(posicions[0]));
+
+            long[] avaluacions = new long[1];
+            long tempsComparador = Long.MAX_VALUE;
+            long tempsUnCop = Long.MAX_VALUE;
+            boolean iguals = true;
+            for (int rep = 0; rep < 5; rep++) {
+                avaluacions[0] = 0;
+                long t0 = System.nanoTime();
+                List<List<MoveNode>> antics = new java.util.ArrayList<>();
+                for (HexGameStatus s : posicions) {
+                    antics.add(ordenarAmbComparador(jugador, s, avaluacions));
+                }
+                long t1 = System.nanoTime();
+                List<List<MoveNode>> nous = new java.util.ArrayList<>();
+                for (HexGameStatus s : posicions) {
+                    nous.add(jugador.ordenarMovimientos(s));
+                }
+                long t2 = System.nanoTime();
+                tempsComparador = Math.min(tempsComparador, t1 - t0);
+                tempsUnCop = Math.min(tempsUnCop, t2 - t1);
+                for (int i = 0; i < posicions.length; i++) {
+                    for (int j = 0; j < antics.get(i).size(); j++) {
+                        iguals &= antics.get(i).get(j).getPoint().equals(nous.get(i).get(j).getPoint());
+                    }
+                }
+            }
+            long moviments = 0;
+            for (HexGameStatus s : posicions) {
+                moviments += s.getMoves().size();
+            }
+            System.out.printf("%2dx%-2d  comparador=%.2f ms (%d avaluacions)  un cop=%.2f ms (%d avaluacions)  x%.1f  %s%n",
+                    mida, mida, tempsComparador / 1e6, avaluacions[0], tempsUnCop / 1e6, moviments,
+                    (double) tempsComparador / tempsUnCop, iguals ? "ordre igual" : "ORDRE DIFERENT");
+        }
+    }
+
+    private static List<MoveNode> ordenarAmbComparador(PlayerMinimaxHexCalculators jugador, HexGameStatus estado,
+                                                       long[] avaluacions) {
+        int color = 1;
+        List<MoveNode> movimientos = estado.getMoves();
+        movimientos.sort((a, b) -> {
+            HexGameStatus estadoA = new HexGameStatus(estado);
+            HexGameStatus estadoB = new HexGameStatus(estado);
+            estadoA.placeStone(a.getPoint());
+            estadoB.placeStone(b.getPoint());
+            avaluacions[0] += 2;
+            return Integer.compare(jugador.heuristica(estadoB, color), jugador.heuristica(estadoA, color));
+        });
+        return movimientos;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Puntuació per mapes de distàncies
+    // ------------------------------------------------------------------------------------------
+
+    private static final int TOP_MAPES = 10;
+
+    /**
+     * Compara l'ordenació de l'arrel simulant cada moviment amb la puntuació per mapes de
+     * distàncies: temps per ordenació i quants dels 10 primers moviments coincideixen.
+     */
+    static void mapes() {
+        System.out.println("== Ordenació de l'arrel: Dijkstra per moviment vs. mapes de distàncies ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[20];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, 2 * (mida * mida / 8), 300 + i);
+            }
+            PlayerMinimaxHexCalculators perMoviment = new PlayerMinimaxHexCalculators("bench", 1, mida);
+            PlayerMinimaxHexCalculators perMapes = new PlayerMinimaxHexCalculators("bench", 1, mida);
+            perMoviment.setMidaCacheAvaluacio(0);
+            perMapes.setOrdenacioPerMapes(true);
+            // Una jugada fixa el color del jugador, que és el que fa servir l'ordenació
+            perMoviment.move(new HexGameStatus(posicions[0]));
+            perMapes.move(new HexGameStatus(posicions[0]));
+
+            long tempsMoviment = Long.MAX_VALUE;
+            long tempsMapes = Long.MAX_VALUE;
+            int coincidencies = 0;
+            int primers = 0;
+            for (int rep = 0; rep < 5; rep++) {
+                coincidencies = 0;
+                primers = 0;
+                long t0 = System.nanoTime();
+                List<List<MoveNode>> a = new java.util.ArrayList<>();
+                for (HexGameStatus s : posicions) {
+                    a.add(perMoviment.ordenarMovimientos(s));
+                }
+                long t1 = System.nanoTime();
+                List<List<MoveNode>> b = new java.util.ArrayList<>();
+                for (HexGameStatus s : posicions) {
+                    b.add(perMapes.ordenarMovimientos(s));
+                }
+                long t2 = System.nanoTime();
+                tempsMoviment = Math.min(tempsMoviment, t1 - t0);
+                tempsMapes = Math.min(tempsMapes, t2 - t1);
+                for (int i = 0; i < posicions.length; i++) {
+                    java.util.Set<Point> top = new java.util.HashSet<>();
+                    for (int j = 0; j < TOP_MAPES; j++) {
+                        top.add(a.get(i).get(j).getPoint());
+                    }
+                    for (int j = 0; j < TOP_MAPES; j++) {
+                        if (top.contains(b.get(i).get(j).getPoint())) coincidencies++;
+                    }
+                    if (a.get(i).get(0).getPoint().equals(b.get(i).get(0).getPoint())) primers++;
+                }
+            }
+            System.out.printf("%2dx%-2d  per moviment=%.3f ms  mapes=%.3f ms  x%.1f  top-%d comú=%.1f%%  primer igual=%d/%d%n",
+                    mida, mida, tempsMoviment / 1e6 / posicions.length, tempsMapes / 1e6 / posicions.length,
+                    (double) tempsMoviment / tempsMapes, TOP_MAPES,
+                    100.0 * coincidencies / (TOP_MAPES * posicions.length), primers, posicions.length);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Cerca dirigida del camí més curt
+    // ------------------------------------------------------------------------------------------
+
+    /**
+     * Nodes expandits per cerca i temps per crida de tres maneres d'obtenir el camí més curt:
+     * la cerca completa (mitjana de les quatre de {@link Dijkstra#puntuarCaselles}), la de
+     * {@link Dijkstra#calcular} que s'atura al camí més curt i la dirigida de
+     * {@link Dijkstra#camiMinim}. Les posicions van de l'obertura a final de partida.
+     */
+    static void dirigida() {
+        System.out.println("== Camí més curt: nodes expandits per cerca ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[60];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, i * mida * mida / (2 * posicions.length), 400 + i);
+            }
+            Dijkstra dijkstra = new Dijkstra();
+            long completa = 0;
+            long parada = 0;
+            long dirigida = 0;
+            boolean iguals = true;
+            for (HexGameStatus s : posicions) {
+                for (int color : new int[]{1, -1}) {
+                    dijkstra.puntuarCaselles(s, color);
+                    completa += dijkstra.getNodesVisitats();
+                    int esperat = dijkstra.calcular(s, color).shortestPath;
+                    parada += dijkstra.getNodesVisitats();
+                    iguals &= dijkstra.camiMinim(s, color) == esperat;
+                    dirigida += dijkstra.getNodesVisitats();
+                }
+            }
+            int cerques = 2 * posicions.length;
+
+            long tempsCalcular = Long.MAX_VALUE;
+            long tempsDirigida = Long.MAX_VALUE;
+            long check = 0;
+            for (int rep = 0; rep < 10; rep++) {
+                long t0 = System.nanoTime();
+                for (int j = 0; j < 50; j++) {
+                    for (HexGameStatus s : posicions) {
+                        check += dijkstra.calcular(s, 1).shortestPath;
+                    }
+                }
+                long t1 = System.nanoTime();
+                for (int j = 0; j < 50; j++) {
+                    for (HexGameStatus s : posicions) {
+                        check -= dijkstra.camiMinim(s, 1);
+                    }
+                }
+                long t2 = System.nanoTime();
+                tempsCalcular = Math.min(tempsCalcular, t1 - t0);
+                tempsDirigida = Math.min(tempsDirigida, t2 - t1);
+            }
+            System.out.printf("%2dx%-2d  completa=%.1f  aturada=%.1f  dirigida=%.1f nodes/cerca  "
+                            + "calcular=%.2f us  camiMinim=%.2f us  %s%n",
+                    mida, mida, completa / 4.0 / cerques, parada / 2.0 / cerques, (double) dirigida / cerques,
+                    tempsCalcular / 1e3 / (50 * posicions.length), tempsDirigida / 1e3 / (50 * posicions.length),
+                    iguals && check == 0 ? "resultats iguals" : "RESULTATS DIFERENTS");
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Avaluació mandrosa de les fulles fora de la finestra
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_PEREZOSA = 3;
+
+    /**
+     * Fulles per segon del Minimax amb i sense l'avaluació mandrosa de les fulles, sobre les
+     * mateixes posicions i sense memòria cau (perquè totes les fulles passin per l'avaluador).
+     */
+    static void perezosa() {
+        System.out.println("== Avaluació mandrosa de les fulles (Minimax, profunditat " + PROF_PEREZOSA + ") ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[10];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 4, 300 + i);
+            }
+            long tempsSense = Long.MAX_VALUE;
+            long tempsAmb = Long.MAX_VALUE;
+            long[] fullesSense = new long[1];
+            long[] fullesAmb = new long[1];
+            boolean iguals = true;
+            for (int rep = 0; rep < 3; rep++) {
+                fullesSense[0] = 0;
+                fullesAmb[0] = 0;
+                long t0 = System.nanoTime();
+                Point[] jugadesSense = jugarPerezosa(posicions, mida, false, fullesSense);
+                long t1 = System.nanoTime();
+                Point[] jugadesAmb = jugarPerezosa(posicions, mida, true, fullesAmb);
+                long t2 = System.nanoTime();
+                iguals &= Arrays.equals(jugadesSense, jugadesAmb);
+                tempsSense = Math.min(tempsSense, t1 - t0);
+                tempsAmb = Math.min(tempsAmb, t2 - t1);
+            }
+            System.out.printf("%2dx%-2d  sense=%.1f ms (%.0f fulles/s)  amb=%.1f ms (%.0f fulles/s)  x%.2f  %s%n",
+                    mida, mida, tempsSense / 1e6, fullesSense[0] / (tempsSense / 1e9),
+                    tempsAmb / 1e6, fullesAmb[0] / (tempsAmb / 1e9), (double) tempsSense / tempsAmb,
+                    iguals ? "jugades iguals" : "JUGADES DIFERENTS");
+        }
+    }
+
+    private static Point[] jugarPerezosa(HexGameStatus[] posicions, int mida, boolean perezosa, long[] fulles) {
+        Point[] jugades = new Point[posicions.length];
+        for (int i = 0; i < posicions.length; i++) {
+            PlayerMinimaxHexCalculators jugador = new PlayerMinimaxHexCalculators("bench", PROF_PEREZOSA, mida);
+            jugador.setMidaCacheAvaluacio(0);
+            jugador.setAvaluacioPerezosa(perezosa);
+            jugades[i] = jugador.move(new HexGameStatus(posicions[i])).getPoint();
+            fulles[0] += jugador.getFullesAvaluades();
+        }
+        return jugades;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Avaluació per lots de posicions germanes
+    // ------------------------------------------------------------------------------------------
+
+    private static final int REPETICIONS_LOTS = 200;
+
+    /**
+     * Taulers per segon avaluant tots els fills d'una posició d'un sol cop, per carrils i tauler
+     * a tauler amb el Dijkstra.
+     */
+    static void lots() {
+        System.out.println("== Avaluació per lots dels fills d'una posició ==");
+        for (int mida : MIDES) {
+            for (int pedres : new int[]{mida * mida / 8, mida * mida / 3}) {
+                HexGameStatus pare = posicioAleatoria(mida, pedres, 400 + pedres);
+                List<MoveNode> moves = pare.getMoves();
+                HexGameStatus[] fills = new HexGameStatus[moves.size()];
+                for (int i = 0; i < fills.length; i++) {
+                    fills[i] = new HexGameStatus(pare);
+                    fills[i].placeStone(moves.get(i).getPoint());
+                }
+                BatchEvaluator perCarrils = new BatchEvaluator();
+                BatchEvaluator escalar = new BatchEvaluator();
+                escalar.setPerCarrils(false);
+
+                long tempsCarrils = Long.MAX_VALUE;
+                long tempsEscalar = Long.MAX_VALUE;
+                boolean iguals = true;
+                for (int rep = 0; rep < 5; rep++) {
+                    Dijkstra[] a = null;
+                    Dijkstra[] b = null;
+                    long t0 = System.nanoTime();
+                    for (int i = 0; i < REPETICIONS_LOTS; i++) {
+                        a = perCarrils.evaluateBatch(fills, 1);
+                    }
+                    long t1 = System.nanoTime();
+                    for (int i = 0; i < REPETICIONS_LOTS; i++) {
+                        b = escalar.evaluateBatch(fills, 1);
+                    }
+                    long t2 = System.nanoTime();
+                    tempsCarrils = Math.min(tempsCarrils, t1 - t0);
+                    tempsEscalar = Math.min(tempsEscalar, t2 - t1);
+                    for (int i = 0; i < fills.length; i++) {
+                        iguals &= a[i].shortestPath == b[i].shortestPath
+                                && a[i].viablePathsCount == b[i].viablePathsCount
+                                && a[i].enemyShortestPath == b[i].enemyShortestPath
+                                && a[i].viableEnemyPathsCount == b[i].viableEnemyPathsCount;
+                    }
+                }
+                double taulers = (double) fills.length * REPETICIONS_LOTS;
+                System.out.printf("%2dx%-2d  %3d pedres, lot de %3d  carrils=%.0f taulers/s  escalar=%.0f taulers/s  x%.2f  %s%n",
+                        mida, mida, pedres, fills.length, taulers / (tempsCarrils / 1e9), taulers / (tempsEscalar / 1e9),
+                        (double) tempsEscalar / tempsCarrils, iguals ? "mètriques iguals" : "MÈTRIQUES DIFERENTS");
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Connexions virtuals a l'arrel
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_CONNEXIONS = 3;
+
+    /**
+     * Partides del Minimax contra ell mateix amb i sense connexions virtuals: nodes, temps i la
+     * primera jugada en què les connexions ja demostren el guanyador.
+     */
+    static void connexions() {
+        System.out.println("== Connexions virtuals (Minimax contra Minimax, profunditat " + PROF_CONNEXIONS + ") ==");
+        for (int mida : new int[]{7, 9, 11}) {
+            for (int obertura = 0; obertura < 3; obertura++) {
+                HexGameStatus inici = posicioAleatoria(mida, 2, 500 + obertura);
+                long[] sense = jugarPartida(inici, mida, false);
+                long[] amb = jugarPartida(inici, mida, true);
+                System.out.printf("%2dx%-2d obertura %d  sense: %3d jugades %9d nodes %7.1f ms  "
+                        + "amb: %3d jugades %9d nodes %7.1f ms (demostrada a la jugada %d)%n",
+                        mida, mida, obertura, sense[0], sense[1], sense[2] / 1e6,
+                        amb[0], amb[1], amb[2] / 1e6, amb[3]);
+            }
+        }
+    }
+
+    /**
+     * @return {jugades, nodes, temps en ns, primera jugada amb el guanyador demostrat}.
+     */
+    private static long[] jugarPartida(HexGameStatus inici, int mida, boolean connexions) {
+        PlayerMinimaxHexCalculators[] jugadors = {
+            new PlayerMinimaxHexCalculators("a", PROF_CONNEXIONS, mida),
+            new PlayerMinimaxHexCalculators("b", PROF_CONNEXIONS, mida)
+        };
+        VirtualConnections comprovacio = new VirtualConnections(mida);
+        HexGameStatus s = new HexGameStatus(inici);
+        long jugades = 0;
+        long nodes = 0;
+        long temps = 0;
+        long demostrada = -1;
+        Random hashos = new Random(0);
+        while (!s.isGameOver()) {
+            if (demostrada < 0 && comprovacio.guanyador(s, hashos.nextLong()) != 0) {
+                demostrada = jugades;
+            }
+            PlayerMinimaxHexCalculators jugador = jugadors[(int) (jugades % 2)];
+            jugador.setConnexionsVirtuals(connexions);
+            long t0 = System.nanoTime();
+            PlayerMove move = jugador.move(new HexGameStatus(s));
+            temps += System.nanoTime() - t0;
+            nodes += move.getNumerOfNodesExplored();
+            s.placeStone(move.getPoint());
+            jugades++;
+        }
+        return new long[]{jugades, nodes, temps, demostrada};
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Poda de caselles mortes i capturades
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_INFERIORS = 3;
+    private static final int BUIDES_RESOLUCIO = 11;
+
+    /**
+     * Efecte de la poda de caselles inferiors: caselles descartades, nodes, temps i factor de
+     * ramificació efectiu del Minimax sobre un joc de posicions, i temps de resolució exacta de
+     * posicions petites.
+     */
+    static void inferiors() {
+        System.out.println("== Caselles mortes i capturades (Minimax, profunditat " + PROF_INFERIORS + ") ==");
+        for (int mida : MIDES) {
+            for (int pedres : new int[]{mida * mida / 4, mida * mida / 2}) {
+                HexGameStatus[] posicions = new HexGameStatus[10];
+                InferiorCells inferiors = new InferiorCells(mida);
+                long buides = 0;
+                long podades = 0;
+                for (int i = 0; i < posicions.length; i++) {
+                    posicions[i] = posicioAleatoria(mida, pedres, 600 + i);
+                    buides += posicions[i].getMoves().size();
+                    podades += inferiors.analitzar(posicions[i]);
+                }
+                long[] sense = jugarInferiors(posicions, mida, false);
+                long[] amb = jugarInferiors(posicions, mida, true);
+                System.out.printf("%2dx%-2d %3d pedres  podades %4.1f%% de les buides  sense: %8d nodes %7.1f ms b=%.1f  "
+                        + "amb: %8d nodes %7.1f ms b=%.1f%n",
+                        mida, mida, pedres, 100.0 * podades / buides,
+                        sense[0], sense[1] / 1e6, ramificacio(sense[0], posicions.length),
+                        amb[0], amb[1] / 1e6, ramificacio(amb[0], posicions.length));
+            }
+        }
+
+        System.out.println("== Resolució exacta amb " + BUIDES_RESOLUCIO + " caselles buides ==");
+        for (int mida : new int[]{4, 5}) {
+            InferiorCells inferiors = new InferiorCells(mida);
+            long[] nodesSense = new long[1];
+            long[] nodesAmb = new long[1];
+            long tempsSense = 0;
+            long tempsAmb = 0;
+            boolean iguals = true;
+            int resoltes = 0;
+            for (int i = 0; resoltes < 20; i++) {
+                HexGameStatus s = posicioAleatoria(mida, mida * mida - BUIDES_RESOLUCIO, 700 + i);
+                if (s.isGameOver()) continue;
+                resoltes++;
+                long t0 = System.nanoTime();
+                int a = resoldre(s, null, nodesSense);
+                long t1 = System.nanoTime();
+                int b = resoldre(s, inferiors, nodesAmb);
+                long t2 = System.nanoTime();
+                iguals &= a == b;
+                tempsSense += t1 - t0;
+                tempsAmb += t2 - t1;
+            }
+            System.out.printf("%2dx%-2d  sense: %9d nodes %8.1f ms  amb: %9d nodes %8.1f ms  x%.2f  %s%n",
+                    mida, mida, nodesSense[0], tempsSense / 1e6, nodesAmb[0], tempsAmb / 1e6,
+                    (double) tempsSense / tempsAmb, iguals ? "guanyadors iguals" : "GUANYADORS DIFERENTS");
+        }
+    }
+
+    /**
+     * @return {nodes, temps en ns} de la primera jugada del Minimax a cada posició.
+     */
+    private static long[] jugarInferiors(HexGameStatus[] posicions, int mida, boolean poda) {
+        long nodes = 0;
+        long temps = 0;
+        for (HexGameStatus posicio : posicions) {
+            PlayerMinimaxHexCalculators jugador = new PlayerMinimaxHexCalculators("bench", PROF_INFERIORS, mida);
+            jugador.setConnexionsVirtuals(false);
+            jugador.setPodaInferiors(poda);
+            long t0 = System.nanoTime();
+            nodes += jugador.move(new HexGameStatus(posicio)).getNumerOfNodesExplored();
+            temps += System.nanoTime() - t0;
+        }
+        return new long[]{nodes, temps};
+    }
+
+    /**
+     * @return El factor de ramificació efectiu b tal que b^PROF_INFERIORS és la mitjana de nodes.
+     */
+    private static double ramificacio(long nodes, int posicions) {
+        return Math.pow((double) nodes / posicions, 1.0 / PROF_INFERIORS);
+    }
+
+    /**
+     * Resol una posició amb una cerca completa que s'atura al primer fill guanyador.
+     *
+     * @param inferiors Analitzador amb què es poden els moviments, o null per provar-los tots.
+     * @return El color guanyador.
+     */
+    private static int resoldre(HexGameStatus s, InferiorCells inferiors, long[] nodes) {
+        nodes[0]++;
+        if (s.isGameOver()) {
+            return s.GetWinner() == PlayerType.PLAYER1 ? 1 : -1;
+        }
+        int color = s.getCurrentPlayerColor();
+        List<MoveNode> moves = s.getMoves();
+        if (inferiors != null) {
+            moves = inferiors.podar(s, moves);
+        }
+        for (MoveNode move : moves) {
+            HexGameStatus fill = new HexGameStatus(s);
+            fill.placeStone(move.getPoint());
+            if (resoldre(fill, inferiors, nodes) == color) {
+                return color;
+            }
+        }
+        return -color;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Regió obligada davant les amenaces del contrari
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_OBLIGADA = 3;
+    private static final int TIMEOUT_OBLIGADA = 1;
+
+    /**
+     * Posicions defensives (el contrari és a dues caselles o menys de connectar): nodes, temps i
+     * factor de ramificació del Minimax i profunditat assolida per l'ID en un segon, amb i sense
+     * la regió obligada.
+     */
+    static void obligada() {
+        System.out.println("== Regió obligada (Minimax profunditat " + PROF_OBLIGADA + ", ID " + TIMEOUT_OBLIGADA + " s) ==");
+        Dijkstra dijkstra = new Dijkstra();
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[10];
+            for (int i = 0, llavor = 800; i < posicions.length; llavor++) {
+                HexGameStatus s = posicioAleatoria(mida, mida * mida / 3, llavor);
+                if (!s.isGameOver() && dijkstra.camiMinim(s, -s.getCurrentPlayerColor()) <= 2) {
+                    posicions[i++] = s;
+                }
+            }
+            long[] sense = jugarObligada(posicions, mida, false);
+            long[] amb = jugarObligada(posicions, mida, true);
+            System.out.printf("%2dx%-2d  sense: %8d nodes %7.1f ms b=%.1f prof. ID %.1f  "
+                    + "amb: %8d nodes %7.1f ms b=%.1f prof. ID %.1f  (regió a %d nodes, %.1f de %.1f candidats)%n",
+                    mida, mida, sense[0], sense[1] / 1e6, Math.pow((double) sense[0] / posicions.length, 1.0 / PROF_OBLIGADA),
+                    (double) sense[2] / posicions.length,
+                    amb[0], amb[1] / 1e6, Math.pow((double) amb[0] / posicions.length, 1.0 / PROF_OBLIGADA),
+                    (double) amb[2] / posicions.length, amb[3], (double) amb[5] / Math.max(1, amb[3]),
+                    (double) amb[4] / Math.max(1, amb[3]));
+        }
+    }
+
+    /**
+     * @return {nodes, temps en ns, suma de profunditats de l'ID, posicions amb regió, candidats, obligats}.
+     */
+    private static long[] jugarObligada(HexGameStatus[] posicions, int mida, boolean obligada) {
+        long[] r = new long[6];
+        for (HexGameStatus posicio : posicions) {
+            PlayerMinimaxHexCalculators minimax = new PlayerMinimaxHexCalculators("bench", PROF_OBLIGADA, mida);
+            minimax.setConnexionsVirtuals(false);
+            minimax.setRegioObligada(obligada);
+            long t0 = System.nanoTime();
+            r[0] += minimax.move(new HexGameStatus(posicio)).getNumerOfNodesExplored();
+            r[1] += System.nanoTime() - t0;
+            MustPlayRegion regio = minimax.getRegioObligada();
+            r[3] += regio.getAplicacions();
+            r[4] += regio.getCandidats();
+            r[5] += regio.getObligats();
+
+            PlayerIDHexCalculators id = new PlayerIDHexCalculators("bench", mida, TIMEOUT_OBLIGADA);
+            id.setConnexionsVirtuals(false);
+            id.setRegioObligada(obligada);
+            r[2] += id.move(new HexGameStatus(posicio)).getMaxDepthReached();
+        }
+        return r;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Zona rellevant
+    // ------------------------------------------------------------------------------------------
+
+    private static final int MIDA_ZONA = 11;
+    private static final int PROF_MAX_ZONA = 4;
+    private static final int TIMEOUT_ZONA = 30;
+    private static final int[] JUGADES_ZONA = {8, 16, 24};
+
+    /**
+     * Posicions de partides de 11x11: nodes per profunditat del Minimax i profunditat assolida
+     * per l'ID en 30 segons, sense zona rellevant i amb folga 1 i 2.
+     */
+    static void zona() {
+        System.out.println("== Zona rellevant (" + MIDA_ZONA + "x" + MIDA_ZONA + ", ID " + TIMEOUT_ZONA + " s) ==");
+        for (int obertura = 0; obertura < 2; obertura++) {
+            HexGameStatus s = posicioAleatoria(MIDA_ZONA, 2, 900 + obertura);
+            PlayerMinimaxHexCalculators[] jugadors = {
+                new PlayerMinimaxHexCalculators("a", 2, MIDA_ZONA),
+                new PlayerMinimaxHexCalculators("b", 2, MIDA_ZONA)
+            };
+            for (int jugada = 2; jugada <= JUGADES_ZONA[JUGADES_ZONA.length - 1] && !s.isGameOver(); jugada++) {
+                if (Arrays.binarySearch(JUGADES_ZONA, jugada) >= 0) {
+                    for (int folga = -1; folga <= 2; folga++) {
+                        if (folga == 0) continue;
+                        mesurarZona(s, obertura, jugada, folga);
+                    }
+                }
+                s.placeStone(jugadors[jugada % 2].move(new HexGameStatus(s)).getPoint());
+            }
+        }
+    }
+
+    /**
+     * Mesura una posició amb una folga (negativa per desactivar la zona).
+     */
+    private static void mesurarZona(HexGameStatus s, int obertura, int jugada, int folga) {
+        StringBuilder nodes = new StringBuilder();
+        Point jugadaMinimax = null;
+        for (int prof = 1; prof <= PROF_MAX_ZONA; prof++) {
+            PlayerMinimaxHexCalculators minimax = new PlayerMinimaxHexCalculators("bench", prof, MIDA_ZONA);
+            minimax.setConnexionsVirtuals(false);
+            minimax.setZonaRellevant(folga >= 0);
+            minimax.getZonaRellevant().setFolga(folga);
+            PlayerMove move = minimax.move(new HexGameStatus(s));
+            nodes.append(String.format(" %8d", move.getNumerOfNodesExplored()));
+            jugadaMinimax = move.getPoint();
+        }
+        PlayerIDHexCalculators id = new PlayerIDHexCalculators("bench", MIDA_ZONA, TIMEOUT_ZONA);
+        id.setConnexionsVirtuals(false);
+        id.setZonaRellevant(folga >= 0);
+        id.getZonaRellevant().setFolga(folga);
+        long t0 = System.nanoTime();
+        PlayerMove move = id.move(new HexGameStatus(s));
+        long temps = System.nanoTime() - t0;
+        System.out.printf("obertura %d jugada %2d %-8s nodes per profunditat 1..%d:%s  (%d,%d)  "
+                + "ID: profunditat %d, %d nodes, %.1f s%n",
+                obertura, jugada, folga < 0 ? "sense" : "folga " + folga, PROF_MAX_ZONA, nodes,
+                jugadaMinimax.x, jugadaMinimax.y, move.getMaxDepthReached(), move.getNumerOfNodesExplored(), temps / 1e9);
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Arrel en paral·lel
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_PARALEL = 3;
+    private static final int[] FILS_PARALEL = {1, 2, 4};
+
+    /**
+     * Les mateixes posicions amb el Minimax de profunditat 3 sense grup de fils i amb grups de
+     * 1, 2 i 4 fils: nodes, temps i nombre de jugades que coincideixen amb la cerca seqüencial.
+     */
+    static void paralel() {
+        System.out.println("== Arrel en paral·lel (Minimax profunditat " + PROF_PARALEL + ", "
+                + Runtime.getRuntime().availableProcessors() + " processadors) ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[10];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 4, 1000 + i);
+            }
+            Point[] serie = new Point[posicions.length];
+            long[] r = jugarParalel(posicions, mida, null, serie);
+            System.out.printf("%2dx%-2d  seqüencial: %8d nodes %8.1f ms%n", mida, mida, r[0], r[1] / 1e6);
+            for (int fils : FILS_PARALEL) {
+                ForkJoinPool pool = new ForkJoinPool(fils);
+                Point[] jugades = new Point[posicions.length];
+                r = jugarParalel(posicions, mida, pool, jugades);
+                pool.shutdown();
+                int iguals = 0;
+                for (int i = 0; i < posicions.length; i++) {
+                    if (jugades[i].equals(serie[i])) iguals++;
+                }
+                System.out.printf("%2dx%-2d  %d fils:     %8d nodes %8.1f ms  (%d/%d jugades iguals)%n",
+                        mida, mida, fils, r[0], r[1] / 1e6, iguals, posicions.length);
+            }
+        }
+    }
+
+    /**
+     * @return {nodes, temps en ns}; les jugades es deixen a {@code jugades}.
+     */
+    private static long[] jugarParalel(HexGameStatus[] posicions, int mida, ForkJoinPool pool, Point[] jugades) {
+        long[] r = new long[2];
+        for (int i = 0; i < posicions.length; i++) {
+            PlayerMinimaxHexCalculators minimax = new PlayerMinimaxHexCalculators("bench", PROF_PARALEL, mida);
+            minimax.setConnexionsVirtuals(false);
+            minimax.setForkJoinPool(pool);
+            long t0 = System.nanoTime();
+            PlayerMove move = minimax.move(new HexGameStatus(posicions[i]));
+            r[1] += System.nanoTime() - t0;
+            r[0] += move.getNumerOfNodesExplored();
+            jugades[i] = move.getPoint();
+        }
+        return r;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Lazy SMP
+    // ------------------------------------------------------------------------------------------
+
+    private static final int[] FILS_SMP = {1, 2, 4, 8, 16};
+    private static final int TIMEOUT_SMP = 2;
+    private static final int MIDA_PARTIDES_SMP = 7;
+    private static final int PARTIDES_SMP = 4;
+
+    /**
+     * Profunditat assolida i nodes de l'ID en 2 segons amb 1, 2, 4, 8 i 16 fils sobre les
+     * mateixes posicions, i partides de 7x7 (1 segon per jugada) de cada configuració contra
+     * l'ID d'un sol fil, alternant els colors.
+     */
+    static void smp() {
+        System.out.println("== Lazy SMP (ID " + TIMEOUT_SMP + " s, "
+                + Runtime.getRuntime().availableProcessors() + " processadors) ==");
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[5];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 4, 1100 + i);
+            }
+            for (int fils : FILS_SMP) {
+                long nodes = 0;
+                long profunditat = 0;
+                long temps = 0;
+                for (HexGameStatus posicio : posicions) {
+                    PlayerIDHexCalculators id = new PlayerIDHexCalculators("bench", mida, TIMEOUT_SMP);
+                    id.setConnexionsVirtuals(false);
+                    id.setFils(fils);
+                    long t0 = System.nanoTime();
+                    PlayerMove move = id.move(new HexGameStatus(posicio));
+                    temps += System.nanoTime() - t0;
+                    id.tancar();
+                    nodes += move.getNumerOfNodesExplored();
+                    profunditat += move.getMaxDepthReached();
+                }
+                System.out.printf("%2dx%-2d  %2d fils: profunditat %.1f  %9d nodes  %6.0f nodes/ms%n",
+                        mida, mida, fils, (double) profunditat / posicions.length, nodes, nodes / (temps / 1e6));
+            }
+        }
+        for (int fils : FILS_SMP) {
+            int victories = 0;
+            for (int partida = 0; partida < PARTIDES_SMP; partida++) {
+                PlayerIDHexCalculators smp = new PlayerIDHexCalculators("smp", MIDA_PARTIDES_SMP, 1);
+                PlayerIDHexCalculators base = new PlayerIDHexCalculators("base", MIDA_PARTIDES_SMP, 1);
+                smp.setFils(fils);
+                boolean smpPrimer = partida % 2 == 0;
+                HexGameStatus s = posicioAleatoria(MIDA_PARTIDES_SMP, 2, 1200 + partida / 2);
+                while (!s.isGameOver()) {
+                    boolean tornSmp = (s.getCurrentPlayer() == PlayerType.PLAYER1) == smpPrimer;
+                    PlayerIDHexCalculators jugador = tornSmp ? smp : base;
+                    s.placeStone(jugador.move(new HexGameStatus(s)).getPoint());
+                }
+                smp.tancar();
+                if ((s.GetWinner() == PlayerType.PLAYER1) == smpPrimer) victories++;
+            }
+            System.out.printf("%dx%d  %2d fils contra 1 fil: %d/%d victòries%n",
+                    MIDA_PARTIDES_SMP, MIDA_PARTIDES_SMP, fils, victories, PARTIDES_SMP);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Punts de partició (Young Brothers Wait)
+    // ------------------------------------------------------------------------------------------
+
+    private static final int[] PROF_YBWC = {2, 3, 4};
+    private static final int FILS_YBWC = 4;
+
+    /**
+     * Les mateixes posicions amb el Minimax seqüencial i amb punts de partició en un grup de 4
+     * fils, a profunditat 2, 3 i 4: valors i jugades iguals, nodes i temps.
+     */
+    static void ybwc() {
+        System.out.println("== Young Brothers Wait (" + FILS_YBWC + " fils, "
+                + Runtime.getRuntime().availableProcessors() + " processadors) ==");
+        ForkJoinPool pool = new ForkJoinPool(FILS_YBWC);
+        for (int mida : MIDES) {
+            HexGameStatus[] posicions = new HexGameStatus[6];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 4, 1300 + i);
+            }
+            for (int prof : PROF_YBWC) {
+                long[] nodes = new long[2];
+                long[] temps = new long[2];
+                int valorsIguals = 0;
+                int jugadesIguals = 0;
+                for (HexGameStatus posicio : posicions) {
+                    int[] valors = new int[2];
+                    Point[] jugades = new Point[2];
+                    for (int k = 0; k < 2; k++) {
+                        PlayerMinimaxHexCalculators minimax = new PlayerMinimaxHexCalculators("bench", prof, mida);
+                        minimax.setConnexionsVirtuals(false);
+                        if (k == 1) {
+                            minimax.setForkJoinPool(pool);
+                            minimax.setPuntsParticio(true);
+                        }
+                        long t0 = System.nanoTime();
+                        PlayerMove move = minimax.move(new HexGameStatus(posicio));
+                        temps[k] += System.nanoTime() - t0;
+                        nodes[k] += move.getNumerOfNodesExplored();
+                        valors[k] = minimax.getUltimValor();
+                        jugades[k] = move.getPoint();
+                    }
+                    if (valors[0] == valors[1]) valorsIguals++;
+                    if (jugades[0].equals(jugades[1])) jugadesIguals++;
+                }
+                System.out.printf("%2dx%-2d prof. %d  seqüencial: %8d nodes %8.1f ms  YBWC: %8d nodes %8.1f ms  "
+                        + "(%d/%d valors, %d/%d jugades iguals)%n",
+                        mida, mida, prof, nodes[0], temps[0] / 1e6, nodes[1], temps[1] / 1e6,
+                        valorsIguals, posicions.length, jugadesIguals, posicions.length);
+            }
+        }
+        pool.shutdown();
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Jugar i desfer sobre una posició mutable vs. copiar l'estat
+    // ------------------------------------------------------------------------------------------
+
+    private static final int PROF_POSICIO = 3;
+
+    /**
+     * Recorre l'arbre sencer de profunditat 3 de les mateixes posicions copiant l'estat a cada
+     * node, com feia la cerca, i jugant i desfent sobre una {@link HexPosition}. Es comparen
+     * les fulles i les victòries trobades.
+     */
+    static void posicio() {
+        System.out.println("== Posició mutable vs. còpia de l'estat (arbre sencer, profunditat " + PROF_POSICIO + ") ==");
+        for (int mida : MIDES) {
+            // El constructor del jugador prepara la taula Zobrist de la mida
+            new PlayerMinimaxHexCalculators("bench", 1, mida);
+            HexGameStatus[] posicions = new HexGameStatus[5];
+            for (int i = 0; i < posicions.length; i++) {
+                posicions[i] = posicioAleatoria(mida, mida * mida / 2, 1400 + i);
+            }
+            long[] copia = new long[2];
+            long[] mutable = new long[2];
+            long tempsCopia = Long.MAX_VALUE;
+            long tempsMutable = Long.MAX_VALUE;
+            for (int rep = 0; rep < 3; rep++) {
+                copia[0] = copia[1] = mutable[0] = mutable[1] = 0;
+                long t0 = System.nanoTime();
+                for (HexGameStatus s : posicions) {
+                    arbreCopia(s, PROF_POSICIO, copia);
+                }
+                long t1 = System.nanoTime();
+                for (HexGameStatus s : posicions) {
+                    arbreMutable(new HexPosition(s), PROF_POSICIO, mutable);
+                }
+                long t2 = System.nanoTime();
+                tempsCopia = Math.min(tempsCopia, t1 - t0);
+                tempsMutable = Math.min(tempsMutable, t2 - t1);
+            }
+            System.out.printf("%2dx%-2d  nodes=%d  còpia=%.1f ms  jugar/desfer=%.1f ms  x%.2f  %s%n",
+                    mida, mida, copia[0], tempsCopia / 1e6, tempsMutable / 1e6,
+                    (double) tempsCopia / tempsMutable,
+                    (copia[0] == mutable[0] && copia[1] == mutable[1]) ? "arbres iguals" : "ARBRES DIFERENTS");
+        }
+    }
+
+    /**
+     * @param comptadors {nodes, victòries}.
+     */
+    private static void arbreCopia(HexGameStatus s, int prof, long[] comptadors) {
+        comptadors[0]++;
+        if (s.isGameOver()) {
+            comptadors[1]++;
+            return;
+        }
+        if (prof == 0) return;
+        for (MoveNode moviment : s.getMoves()) {
+            HexGameStatus fill = new HexGameStatus(s);
+            fill.placeStone(moviment.getPoint());
+            arbreCopia(fill, prof - 1, comptadors);
+        }
+    }
+
+    /**
+     * @param comptadors {nodes, victòries}.
+     */
+    private static void arbreMutable(HexPosition s, int prof, long[] comptadors) {
+        comptadors[0]++;
+        if (s.isGameOver()) {
+            comptadors[1]++;
+            return;
+        }
+        if (prof == 0) return;
+        for (MoveNode moviment : s.getMoves()) {
+            s.play(moviment.getPoint());
+            arbreMutable(s, prof - 1, comptadors);
+            s.undo();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Taula de transposició sobre vector vs. HashMap
+    // ------------------------------------------------------------------------------------------
+
+    private static final int[] ENTRADES_TAULA = {1 << 14, 1 << 18, 1 << 21};
+    private static final int[] MEGAS_TAULA = {1, 16, 64};
+    private static final int PROF_TAULA = 3;
+    private static final int JUGADES_TAULA = 30;
+
+    /**
+     * Cost en ns de desar i consultar claus aleatòries a la taula sobre vector de 1, 16 i 64 MB
+     * i a un HashMap amb un objecte per entrada, com la taula anterior, i la memòria que ocupen.
+     * Després es juga una mateixa seqüència de jugades amb el Minimax de profunditat 3 amb cada
+     * mida de taula: nodes, temps i ocupació de la taula al final.
+     */
+    static void taula() {
+        System.out.println("== Taula de transposició: vector de long vs. HashMap ==");
+        for (int entrades : ENTRADES_TAULA) {
+            Random random = new Random(2100);
+            long[] claus = new long[entrades];
+            for (int i = 0; i < entrades; i++) claus[i] = random.nextLong();
+            long[] r = new long[4];
+            for (int rep = 0; rep < 3; rep++) mesurarHashMap(claus, r);
+            System.out.printf("%8d claus  HashMap       desar %6.1f ns  consultar %6.1f ns  %7.1f MB%n",
+                    entrades, (double) r[0] / entrades, (double) r[1] / entrades, r[2] / 1048576.0);
+            for (int megas : MEGAS_TAULA) {
+                r = new long[4];
+                for (int rep = 0; rep < 3; rep++) mesurarTaula(claus, megas, r);
+                System.out.printf("%8d claus  vector %3d MB desar %6.1f ns  consultar %6.1f ns  %7.1f MB  (%d%% trobades)%n",
+                        entrades, megas, (double) r[0] / entrades, (double) r[1] / entrades, r[2] / 1048576.0,
+                        100 * r[3] / entrades);
+            }
+        }
+
+        int mida = 11;
+        HexGameStatus inici = posicioAleatoria(mida, 6, 2101);
+        // Una primera partida sense mesurar perquè el JIT no afavoreixi les últimes mides
+        jugarPartidaTaula(inici, mida, TranspositionTable.MEGABYTES_PER_DEFECTE);
+        for (int megas : MEGAS_TAULA) {
+            System.out.println(jugarPartidaTaula(inici, mida, megas));
+        }
+    }
+
+    /**
+     * @return La línia de resultats de la partida.
+     */
+    private static String jugarPartidaTaula(HexGameStatus inici, int mida, int megas) {
+        PlayerMinimaxHexCalculators minimax = new PlayerMinimaxHexCalculators("bench", PROF_TAULA, mida);
+        minimax.setConnexionsVirtuals(false);
+        minimax.setMidaTaulaTransposicio(megas);
+        HexGameStatus s = new HexGameStatus(inici);
+        long nodes = 0;
+        long temps = 0;
+        long abans = memoriaUsada();
+        for (int j = 0; j < JUGADES_TAULA && !s.isGameOver(); j++) {
+            long t0 = System.nanoTime();
+            PlayerMove move = minimax.move(new HexGameStatus(s));
+            temps += System.nanoTime() - t0;
+            nodes += move.getNumerOfNodesExplored();
+            s.placeStone(move.getPoint());
+        }
+        long creixement = memoriaUsada() - abans;
+        TranspositionTable taula = minimax.getTaulaTransposicio();
+        return String.format("partida %dx%d, %d jugades, %3d MB: %9d nodes %8.1f ms  ocupació %d/%d  memòria %+.1f MB",
+                mida, mida, JUGADES_TAULA, megas, nodes, temps / 1e6, taula.size(), taula.capacitat(),
+                creixement / 1048576.0);
+    }
+
+    /**
+     * @param r {ns desant, ns consultant, bytes, claus trobades} de la millor repetició.
+     */
+    private static void mesurarHashMap(long[] claus, long[] r) {
+        long abans = memoriaUsada();
+        long t0 = System.nanoTime();
+        Map<Long, int[]> taula = new HashMap<>();
+        for (int i = 0; i < claus.length; i++) {
+            taula.put(claus[i], new int[]{i, 3, TranspositionTable.EXACT, i & 0x7F});
+        }
+        long t1 = System.nanoTime();
+        long trobades = 0;
+        for (long clau : claus) {
+            if (taula.get(clau) != null) trobades++;
+        }
+        long t2 = System.nanoTime();
+        guardarMillor(r, t1 - t0, t2 - t1, memoriaUsada() - abans, trobades);
+        Reference.reachabilityFence(taula);
+    }
+
+    /**
+     * @param r {ns desant, ns consultant, bytes, claus trobades} de la millor repetició.
+     */
+    private static void mesurarTaula(long[] claus, int megas, long[] r) {
+        long abans = memoriaUsada();
+        TranspositionTable taula = new TranspositionTable(megas);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < claus.length; i++) {
+            taula.store(claus[i], 3, i, TranspositionTable.EXACT, i & 0x7F);
+        }
+        long t1 = System.nanoTime();
+        TranspositionTable.TableEntry entrada = new TranspositionTable.TableEntry();
+        long trobades = 0;
+        for (long clau : claus) {
+            if (taula.lookup(clau, entrada)) trobades++;
+        }
+        long t2 = System.nanoTime();
+        guardarMillor(r, t1 - t0, t2 - t1, memoriaUsada() - abans, trobades);
+        Reference.reachabilityFence(taula);
+    }
+
+    private static void guardarMillor(long[] r, long desar, long consultar, long bytes, long trobades) {
+        if (r[0] == 0 || desar + consultar < r[0] + r[1]) {
+            r[0] = desar;
+            r[1] = consultar;
+        }
+        r[2] = bytes;
+        r[3] = trobades;
+    }
+
+    private static long memoriaUsada() {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Taula de transposició compartida sense bloquejos vs. ConcurrentHashMap
+    // ------------------------------------------------------------------------------------------
+
+    private static final int[] FILS_CONCURRENT = {1, 2, 4, 8, 16};
+    private static final int CLAUS_CONCURRENT = 1 << 20;
+    private static final int OPERACIONS_CONCURRENT = 2_000_000;
+
+    /**
+     * Els mateixos fils desen i consulten claus aleatòries (meitat i meitat) a la taula
+     * concurrent de 16 MB i a un ConcurrentHashMap amb un objecte per entrada: operacions per
+     * segon, consultes trobades i, a la taula, entrades trobades amb dades d'una altra posició.
+     */
+    static void concurrent() {
+        System.out.println("== Taula compartida sense bloquejos vs. ConcurrentHashMap ("
+                + Runtime.getRuntime().availableProcessors() + " processadors) ==");
+        Random random = new Random(2200);
+        long[] claus = new long[CLAUS_CONCURRENT];
+        for (int i = 0; i < claus.length; i++) claus[i] = random.nextLong();
+        for (int fils : FILS_CONCURRENT) {
+            long millorTaula = Long.MAX_VALUE;
+            long millorMapa = Long.MAX_VALUE;
+            long[] taula = new long[3];
+            long[] mapa = new long[3];
+            for (int rep = 0; rep < 3; rep++) {
+                long[] r = new long[3];
+                TranspositionTable tt = new TranspositionTable(TranspositionTable.MEGABYTES_PER_DEFECTE);
+                long t = executarFils(fils, f -> operacionsTaula(tt, claus, f, fils, r));
+                if (t < millorTaula) {
+                    millorTaula = t;
+                    taula = r;
+                }
+                long[] m = new long[3];
+                Map<Long, int[]> chm = new ConcurrentHashMap<>();
+                t = executarFils(fils, f -> operacionsMapa(chm, claus, f, fils, m));
+                if (t < millorMapa) {
+                    millorMapa = t;
+                    mapa = m;
+                }
+            }
+            System.out.printf("%2d fils  taula %6.1f Mop/s (%2d%% trobades, %d corruptes)  ConcurrentHashMap %6.1f Mop/s (%2d%% trobades)  x%.2f%n",
+                    fils, OPERACIONS_CONCURRENT * 1e3 / millorTaula, 100 * taula[1] / Math.max(1, taula[0]), taula[2],
+                    OPERACIONS_CONCURRENT * 1e3 / millorMapa, 100 * mapa[1] / Math.max(1, mapa[0]),
+                    (double) millorMapa / millorTaula);
+        }
+    }
+
+    /**
+     * Reparteix {@link #OPERACIONS_CONCURRENT} operacions entre els fils.
+     *
+     * @return Temps en ns fins que acaben tots.
+     */
+    private static long executarFils(int fils, IntConsumer feina) {
+        Thread[] t = new Thread[fils];
+        for (int f = 0; f < fils; f++) {
+            final int fil = f;
+            t[f] = new Thread(() -> feina.accept(fil));
+        }
+        long t0 = System.nanoTime();
+        for (Thread fil : t) fil.start();
+        try {
+            for (Thread fil : t) fil.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return System.nanoTime() - t0;
+    }
+
+    /**
+     * @param r {consultes, trobades, corruptes}, sumats entre fils.
+     */
+    private static void operacionsTaula(TranspositionTable taula, long[] claus, int fil, int fils, long[] r) {
+        Random random = new Random(fil);
+        TranspositionTable.TableEntry entrada = new TranspositionTable.TableEntry();
+        long consultes = 0;
+        long trobades = 0;
+        long corruptes = 0;
+        for (int i = 0; i < OPERACIONS_CONCURRENT / fils; i++) {
+            long clau = claus[random.nextInt(claus.length)];
+            if ((i & 1) == 0) {
+                taula.store(clau, (int) (clau & 0x3F), (int) (clau >>> 32), TranspositionTable.EXACT, 0);
+            } else {
+                consultes++;
+                if (taula.lookup(clau, entrada)) {
+                    trobades++;
+                    if (entrada.value != (int) (clau >>> 32) || entrada.depth != (int) (clau & 0x3F)) corruptes++;
+                }
+            }
+        }
+        synchronized (r) {
+            r[0] += consultes;
+            r[1] += trobades;
+            r[2] += corruptes;
+        }
+    }
+
+    /**
+     * @param r {consultes, trobades, corruptes}, sumats entre fils.
+     */
+    private static void operacionsMapa(Map<Long, int[]> mapa, long[] claus, int fil, int fils, long[] r) {
+        Random random = new Random(fil);
+        long consultes = 0;
+        long trobades = 0;
+        for (int i = 0; i < OPERACIONS_CONCURRENT / fils; i++) {
+            long clau = claus[random.nextInt(claus.length)];
+            if ((i & 1) == 0) {
+                mapa.put(clau, new int[]{(int) (clau >>> 32), (int) (clau & 0x3F), TranspositionTable.EXACT, 0});
+            } else {
+                consultes++;
+                if (mapa.get(clau) != null) trobades++;
+            }
+        }
+        synchronized (r) {
+            r[0] += consultes;
+            r[1] += trobades;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Taula de transposició fora del heap
+    // ------------------------------------------------------------------------------------------
+
+    private static final int MEGAS_COMPARACIO_HEAP = 64;
+    private static final int MEGAS_ANALISI_HEAP = 256;
+    private static final int TIMEOUT_ANALISI = 5;
+    private static final int JUGADES_ANALISI = 6;
+
+    /**
+     * Primer, el cost de desar i consultar a una taula de 64 MB al heap i fora. Després, una
+     * anàlisi amb l'Iterative Deepening de diverses jugades seguides, amb una taula de 256 MB al
+     * heap i una de {@link TranspositionTable#MEGABYTES_FORA_HEAP} MB fora, que és on la posa la
+     * mida: memòria de la generació vella abans i després, i recol·leccions durant l'anàlisi.
+     * La taula de fora del heap necessita {@code -XX:MaxDirectMemorySize} prou gran si el heap
+     * màxim és més petit que la taula.
+     */
+    static void foraHeap() {
+        System.out.println("== Taula de transposició fora del heap ==");
+        Random random = new Random(2300);
+        long[] claus = new long[1 << 21];
+        for (int i = 0; i < claus.length; i++) claus[i] = random.nextLong();
+        for (boolean fora : new boolean[]{false, true}) {
+            long[] r = new long[2];
+            for (int rep = 0; rep < 3; rep++) {
+                TranspositionTable taula = fora
+                        ? new OffHeapTranspositionTable(MEGAS_COMPARACIO_HEAP)
+                        : new TranspositionTable(MEGAS_COMPARACIO_HEAP);
+                TranspositionTable.TableEntry entrada = new TranspositionTable.TableEntry();
+                long t0 = System.nanoTime();
+                for (int i = 0; i < claus.length; i++) {
+                    taula.store(claus[i], i & 0x3F, i, TranspositionTable.EXACT, i & 0x7F);
+                }
+                long t1 = System.nanoTime();
+                long trobades = 0;
+                for (long clau : claus) {
+                    if (taula.lookup(clau, entrada)) trobades++;
+                }
+                long t2 = System.nanoTime();
+                if (r[0] == 0 || (t2 - t0) < r[0] + r[1]) {
+                    r[0] = t1 - t0;
+                    r[1] = t2 - t1;
+                }
+                Reference.reachabilityFence(trobades);
+            }
+            System.out.printf("%d MB %-9s desar %5.1f ns  consultar %5.1f ns%n", MEGAS_COMPARACIO_HEAP,
+                    fora ? "fora heap" : "heap", (double) r[0] / claus.length, (double) r[1] / claus.length);
+        }
+
+        int mida = 11;
+        for (int megas : new int[]{MEGAS_ANALISI_HEAP, TranspositionTable.MEGABYTES_FORA_HEAP}) {
+            PlayerIDHexCalculators id = new PlayerIDHexCalculators("bench", mida, TIMEOUT_ANALISI);
+            id.setConnexionsVirtuals(false);
+            id.setMidaTaulaTransposicio(megas);
+            HexGameStatus s = posicioAleatoria(mida, 10, 2301);
+            long vellaAbans = memoriaVella();
+            long[] gcAbans = recollidor();
+            int profunditat = 0;
+            for (int j = 0; j < JUGADES_ANALISI && !s.isGameOver(); j++) {
+                PlayerMove move = id.move(new HexGameStatus(s));
+                profunditat += move.getMaxDepthReached();
+                s.placeStone(move.getPoint());
+            }
+            long[] gcDespres = recollidor();
+            long vellaDespres = memoriaVella();
+            System.out.printf("anàlisi %d x %d s, %4d MB %-9s profunditat %.1f  generació vella %6.1f -> %6.1f MB"
+                            + "  %d recol·leccions, %d ms%n",
+                    JUGADES_ANALISI, TIMEOUT_ANALISI, megas,
+                    (id.getTaulaTransposicio() instanceof OffHeapTranspositionTable) ? "fora heap" : "heap",
+                    (double) profunditat / JUGADES_ANALISI, vellaAbans / 1048576.0, vellaDespres / 1048576.0,
+                    gcDespres[0] - gcAbans[0], gcDespres[1] - gcAbans[1]);
+        }
+    }
+
+    /**
+     * @return Bytes ocupats a la generació vella després d'una recol·lecció completa.
+     */
+    private static long memoriaVella() {
+        System.gc();
+        long bytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String nom = pool.getName();
+            if (nom.contains("Old") || nom.contains("Tenured")) bytes += pool.getUsage().getUsed();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return {recol·leccions, ms} acumulats de tots els recol·lectors.
+     */
+    private static long[] recollidor() {
+        long[] r = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            r[0] += Math.max(0, gc.getCollectionCount());
+            r[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return r;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Taula de transposició desada en un fitxer: primera jugada en calent vs. en fred
+    // ------------------------------------------------------------------------------------------
+
+    private static final int MIDA_PERSISTENT = 11;
+    private static final int TIMEOUT_PERSISTENT = 2;
+
+    /**
+     * Simula un reinici del programa: un jugador ID nou juga la primera jugada de cada posició
+     * (en fred) i desa la taula; un altre jugador nou carrega el fitxer i juga la mateixa primera
+     * jugada (en calent). Es compara la profunditat assolida i el temps: l'Iterative Deepening
+     * s'atura abans del límit quan la millor jugada es repeteix tres iteracions seguides, cosa que
+     * amb la taula calenta passa aviat.
+     */
+    static void persistent() {
+        System.out.println("== Taula desada en un fitxer (ID " + TIMEOUT_PERSISTENT + " s, "
+                + MIDA_PERSISTENT + "x" + MIDA_PERSISTENT + ") ==");
+        try {
+            Path fitxer = Files.createTempFile("hex", ".tt");
+            try {
+                for (int i = 0; i < 4; i++) {
+                    HexGameStatus posicio = (i == 0)
+                            ? new HexGameStatus(MIDA_PERSISTENT)
+                            : posicioAleatoria(MIDA_PERSISTENT, 2 * i, 2400 + i);
+                    PlayerIDHexCalculators fred = new PlayerIDHexCalculators("fred", MIDA_PERSISTENT, TIMEOUT_PERSISTENT);
+                    fred.setConnexionsVirtuals(false);
+                    long inici = System.nanoTime();
+                    PlayerMove jugadaFred = fred.move(new HexGameStatus(posicio));
+                    long t0 = System.nanoTime();
+                    fred.desarTaulaTransposicio(fitxer);
+                    long t1 = System.nanoTime();
+
+                    PlayerIDHexCalculators calent = new PlayerIDHexCalculators("calent", MIDA_PERSISTENT, TIMEOUT_PERSISTENT);
+                    calent.setConnexionsVirtuals(false);
+                    boolean carregada = calent.carregarTaulaTransposicio(fitxer);
+                    long t2 = System.nanoTime();
+                    PlayerMove jugadaCalent = calent.move(new HexGameStatus(posicio));
+                    long t3 = System.nanoTime();
+                    System.out.printf("posició %d (%d pedres)  fred: profunditat %2d %7d nodes %5.0f ms"
+                                    + "  calent: profunditat %2d %7d nodes %5.0f ms  desar %.1f ms, carregar %.1f ms%s%n",
+                            i, 2 * i, jugadaFred.getMaxDepthReached(), jugadaFred.getNumerOfNodesExplored(), (t0 - inici) / 1e6,
+                            jugadaCalent.getMaxDepthReached(), jugadaCalent.getNumerOfNodesExplored(), (t3 - t2) / 1e6,
+                            (t1 - t0) / 1e6, (t2 - t1) / 1e6, carregada ? "" : "  (FITXER REBUTJAT)");
+                }
+            } finally {
+                Files.deleteIfExists(fitxer);
+            }
+        } catch (IOException e) {
+            System.out.println("No s'ha pogut fer servir el fitxer temporal: " + e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Taula conservada entre partides amb generacions vs. buidada a cada partida
+    // ------------------------------------------------------------------------------------------
+
+    private static final int MIDA_GENERACIONS = 9;
+    private static final int PROF_GENERACIONS = 4;
+    private static final int JUGADES_OBERTURA = 10;
+    /** Primera resposta del contrari a cada partida: les obertures es repeteixen, com en un torneig. */
+    private static final int[] RESPOSTES_GENERACIONS = {0, 1, 0, 2, 1, 0};
+    private static final Point[] RESPOSTES = {new Point(4, 4), new Point(3, 5), new Point(5, 2)};
+
+    /**
+     * Un mateix Minimax juga diverses partides seguides de primer contra un altre Minimax, que
+     * respon a la primera jugada amb una de poques caselles. Es compta quantes consultes a la
+     * taula de transposició troben la posició a les primeres jugades de cada partida, i els nodes
+     * i el temps que hi gasta, conservant la taula amb generacions o buidant-la a cada partida.
+     * També es compten els encerts del segon jugador, que no veu mai el tauler buit.
+     */
+    static void generacions() {
+        System.out.println("== Taula conservada entre partides (Minimax profunditat " + PROF_GENERACIONS + ", "
+                + MIDA_GENERACIONS + "x" + MIDA_GENERACIONS + ", primeres " + JUGADES_OBERTURA + " jugades) ==");
+        // Una primera sèrie sense mesurar perquè el JIT no afavoreixi la segona
+        jugarPartidesGeneracions(true);
+        for (boolean conservar : new boolean[]{false, true}) {
+            long[][] r = jugarPartidesGeneracions(conservar);
+            long consultes = 0, encerts = 0, nodes = 0, temps = 0, consultesSegon = 0, encertsSegon = 0;
+            for (int i = 0; i < r.length; i++) {
+                System.out.printf("%-9s partida %d (resposta %d): %5.1f%% encerts (%6d/%7d)  %8d nodes %7.1f ms"
+                                + "  segon jugador %5.1f%%%n",
+                        conservar ? "conserva" : "buida", i + 1, RESPOSTES_GENERACIONS[i],
+                        100.0 * r[i][1] / r[i][0], r[i][1], r[i][0], r[i][2], r[i][3] / 1e6, 100.0 * r[i][5] / r[i][4]);
+                if (i > 0) {
+                    consultes += r[i][0];
+                    encerts += r[i][1];
+                    nodes += r[i][2];
+                    temps += r[i][3];
+                    consultesSegon += r[i][4];
+                    encertsSegon += r[i][5];
+                }
+            }
+            System.out.printf("%-9s partides 2..%d: %5.1f%% encerts  %8d nodes %7.1f ms  (partida 1: %5.1f%%)"
+                            + "  segon jugador %5.1f%% (partida 1: %5.1f%%)%n",
+                    conservar ? "conserva" : "buida", r.length, 100.0 * encerts / consultes, nodes, temps / 1e6,
+                    100.0 * r[0][1] / r[0][0], 100.0 * encertsSegon / consultesSegon, 100.0 * r[0][5] / r[0][4]);
+        }
+    }
+
+    /**
+     * @return Per partida, {consultes, encerts, nodes, temps en ns} del primer jugador i
+     *         {consultes, encerts} del segon a les primeres jugades.
+     */
+    private static long[][] jugarPartidesGeneracions(boolean conservar) {
+        PlayerMinimaxHexCalculators jugador = new PlayerMinimaxHexCalculators("jugador", PROF_GENERACIONS, MIDA_GENERACIONS);
+        jugador.setConnexionsVirtuals(false);
+        jugador.setConservarTaula(conservar);
+        PlayerMinimaxHexCalculators contrari = new PlayerMinimaxHexCalculators("contrari", PROF_GENERACIONS - 1, MIDA_GENERACIONS);
+        contrari.setConnexionsVirtuals(false);
+        contrari.setConservarTaula(conservar);
+        long[][] r = new long[RESPOSTES_GENERACIONS.length][6];
+        for (int partida = 0; partida < r.length; partida++) {
+            HexGameStatus s = new HexGameStatus(MIDA_GENERACIONS);
+            for (int jugada = 0; !s.isGameOver(); jugada++) {
+                if (jugada % 2 == 1) {
+                    long consultes = contrari.getConsultesTaula();
+                    long encerts = contrari.getEncertsTaula();
+                    s.placeStone(jugada == 1 ? RESPOSTES[RESPOSTES_GENERACIONS[partida]]
+                            : contrari.move(new HexGameStatus(s)).getPoint());
+                    if (jugada < JUGADES_OBERTURA) {
+                        r[partida][4] += contrari.getConsultesTaula() - consultes;
+                        r[partida][5] += contrari.getEncertsTaula() - encerts;
+                    }
+                    continue;
+                }
+                long consultes = jugador.getConsultesTaula();
+                long encerts = jugador.getEncertsTaula();
+                long t0 = System.nanoTime();
+                PlayerMove move = jugador.move(new HexGameStatus(s));
+                long t1 = System.nanoTime();
+                if (jugada < JUGADES_OBERTURA) {
+                    r[partida][0] += jugador.getConsultesTaula() - consultes;
+                    r[partida][1] += jugador.getEncertsTaula() - encerts;
+                    r[partida][2] += move.getNumerOfNodesExplored();
+                    r[partida][3] += t1 - t0;
+                }
+                s.placeStone(move.getPoint());
+            }
+        }
+        return r;
+    }
+}
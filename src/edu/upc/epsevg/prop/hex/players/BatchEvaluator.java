@@ -0,0 +1,305 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.util.Arrays;
+
+/**
+ * Avaluador de molts taulers de la mateixa mida alhora, pensat per a conjunts de posicions
+ * germanes (totes les jugades d'un node, partides d'autojoc, ...).
+ *
+ * Els taulers es carreguen en vectors estructurats per carrils: la casella c del tauler l és a
+ * la posició c * carrils + l. Les distàncies es calculen amb escombrades de relaxació de tipus
+ * Bellman-Ford, alternant el sentit, fins que cap distància canvia. Cada relaxació és el mateix
+ * mínim sobre els veïns per a tots els carrils, sense salts i sense dependències entre taulers,
+ * de manera que el compilador JIT el pot vectoritzar. Els ponts tancats es tradueixen abans en
+ * una penalització infinita per carril. Una casella només es torna a relaxar si algun dels seus
+ * veïns ha canviat des de l'última vegada, a qualsevol carril.
+ *
+ * El graf és el mateix que el de {@link Dijkstra}: caselles pròpies a cost 0, buides a cost 1,
+ * enemigues infranquejables i ponts amb les dues caselles intermèdies buides cap a una pedra
+ * pròpia a cost 0. Per tant, les quatre mètriques de cada tauler coincideixen amb les de
+ * {@link Dijkstra#calcular(HexGameStatus, int)}.
+ *
+ * Conserva els vectors de treball entre crides i no és segur entre fils.
+ */
+public class BatchEvaluator {
+    /** Per sota d'aquest nombre de taulers s'avalua cada tauler amb el {@link Dijkstra}. */
+    public static final int CARRILS_MINIMS = 4;
+
+    // Distància de les caselles inabastables: prou petita perquè dues sumes no desbordin
+    private static final int INF = 1 << 24;
+
+    private final Dijkstra escalar = new Dijkstra();
+    private boolean perCarrils = true;
+
+    private HexGeometry geometria;
+    private int capacitat;
+    private int[] tauler;
+    private int[] cost;
+    private int[] dist;
+    private int[] pont;
+    private boolean[] pontObert;
+    private int[] minim;
+    // Rellotge de relaxacions: quan ha canviat per últim cop cada casella i quan s'ha relaxat
+    private int rellotge;
+    private int[] ultimCanvi;
+    private int[] ultimaRelaxacio;
+    private int[] cami;
+    private int[] viables;
+
+    /**
+     * Tria si els lots s'avaluen per carrils (per defecte) o tauler a tauler amb el {@link Dijkstra}.
+     *
+     * @param perCarrils Si s'ha de fer servir l'avaluació per carrils.
+     */
+    public void setPerCarrils(boolean perCarrils) {
+        this.perCarrils = perCarrils;
+    }
+
+    /**
+     * Calcula les mètriques de {@link Dijkstra#calcular(HexGameStatus, int)} per a cada tauler.
+     * Si el lot és petit o barreja mides de tauler, s'avalua tauler a tauler.
+     *
+     * @param boards Taulers a avaluar.
+     * @param color Color des del qual s'avaluen (1 o -1).
+     * @return Les mètriques de cada tauler, en el mateix ordre.
+     */
+    public Dijkstra[] evaluateBatch(HexGameStatus[] boards, int color) {
+        Dijkstra[] resultats = new Dijkstra[boards.length];
+        if (!perCarrils || boards.length < CARRILS_MINIMS || !mateixaMida(boards)) {
+            for (int i = 0; i < boards.length; i++) {
+                escalar.calcular(boards[i], color);
+                resultats[i] = new Dijkstra(escalar.shortestPath, escalar.viablePathsCount,
+                        escalar.viableEnemyPathsCount, escalar.enemyShortestPath);
+            }
+            return resultats;
+        }
+
+        int carrils = boards.length;
+        carregar(boards);
+        relaxar(color, carrils);
+        for (int l = 0; l < carrils; l++) {
+            resultats[l] = new Dijkstra(cami[l], viables[l], 0, Integer.MAX_VALUE);
+        }
+        relaxar(-color, carrils);
+        for (int l = 0; l < carrils; l++) {
+            resultats[l].enemyShortestPath = cami[l];
+            resultats[l].viableEnemyPathsCount = viables[l];
+        }
+        return resultats;
+    }
+
+    private static boolean mateixaMida(HexGameStatus[] boards) {
+        for (HexGameStatus b : boards) {
+            if (b.getSize() != boards[0].getSize()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copia els taulers al vector per carrils, redimensionant els buffers si cal.
+     */
+    private void carregar(HexGameStatus[] boards) {
+        int mida = boards[0].getSize();
+        int carrils = boards.length;
+        if (geometria == null || geometria.midaTauler != mida || capacitat < carrils) {
+            geometria = HexGeometry.of(mida);
+            capacitat = Math.max(carrils, capacitat);
+            int n = geometria.numCaselles * capacitat;
+            tauler = new int[n];
+            cost = new int[n];
+            dist = new int[n];
+            pont = new int[geometria.pontDesti.length * capacitat];
+            pontObert = new boolean[geometria.pontDesti.length];
+            minim = new int[capacitat];
+            ultimCanvi = new int[geometria.numCaselles];
+            ultimaRelaxacio = new int[geometria.numCaselles];
+            cami = new int[capacitat];
+            viables = new int[capacitat];
+        }
+        for (int l = 0; l < carrils; l++) {
+            HexGameStatus b = boards[l];
+            for (int x = 0; x < mida; x++) {
+                for (int y = 0; y < mida; y++) {
+                    tauler[(x * mida + y) * carrils + l] = b.getPos(x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula les distàncies d'un color des de la seva vora inicial per a tots els carrils i
+     * deixa a {@code cami} i {@code viables} la distància a la vora final i el nombre de caselles
+     * de la vora final que hi arriben.
+     */
+    private void relaxar(int color, int carrils) {
+        HexGeometry g = geometria;
+        int mida = g.midaTauler;
+        int numCaselles = g.numCaselles;
+        int[] iniciPonts = g.iniciPonts;
+        int[] pontInter1 = g.pontInter1;
+        int[] pontInter2 = g.pontInter2;
+        int[] tauler = this.tauler;
+        int[] cost = this.cost;
+        int[] dist = this.dist;
+
+        for (int c = 0; c < numCaselles; c++) {
+            boolean inici = g.esInici(c, color);
+            for (int i = c * carrils, fi = i + carrils; i < fi; i++) {
+                int t = tauler[i];
+                int k = (t == color) ? 0 : (t == 0) ? 1 : INF;
+                cost[i] = k;
+                dist[i] = inici ? k : INF;
+            }
+        }
+
+        // Un pont només és obert si l'extrem és propi i les dues caselles intermèdies són buides
+        // (els ponts tancats a tots els carrils no es relaxen)
+        int[] pont = this.pont;
+        boolean[] pontObert = this.pontObert;
+        for (int c = 0; c < numCaselles; c++) {
+            int base = c * carrils;
+            for (int k = iniciPonts[c], fi = iniciPonts[c + 1]; k < fi; k++) {
+                int base1 = pontInter1[k] * carrils;
+                int base2 = pontInter2[k] * carrils;
+                int basePont = k * carrils;
+                // Sense salts: (t & 3) és 0 només per a les caselles buides, i obert equival a tancat == 0
+                int minTancat = INF;
+                for (int l = 0; l < carrils; l++) {
+                    int tancat = cost[base + l] | (tauler[base1 + l] & 3) | (tauler[base2 + l] & 3);
+                    pont[basePont + l] = Math.min(tancat, 1) * INF;
+                    minTancat = Math.min(minTancat, tancat);
+                }
+                pontObert[k] = minTancat == 0;
+            }
+        }
+
+        // Cada escombrada avança per files perpendiculars a la direcció del color i relaxa cada fila
+        // en els dos sentits: els camins que no tornen enrere es resolen en una sola escombrada
+        Arrays.fill(ultimCanvi, 0);
+        Arrays.fill(ultimaRelaxacio, -1);
+        rellotge = 0;
+        boolean canvi = true;
+        boolean endavant = true;
+        while (canvi) {
+            canvi = false;
+            for (int i = 0; i < mida; i++) {
+                int fila = endavant ? i : mida - 1 - i;
+                for (int j = 0; j < mida; j++) {
+                    canvi |= relaxarCasella(casella(color, fila, j, mida), carrils);
+                }
+                for (int j = mida - 2; j >= 0; j--) {
+                    canvi |= relaxarCasella(casella(color, fila, j, mida), carrils);
+                }
+            }
+            endavant = !endavant;
+        }
+
+        for (int l = 0; l < carrils; l++) {
+            cami[l] = INF;
+            viables[l] = 0;
+        }
+        for (int i = 0; i < mida; i++) {
+            int c = (color == 1) ? (mida - 1) * mida + i : i * mida + (mida - 1);
+            int base = c * carrils;
+            for (int l = 0; l < carrils; l++) {
+                int d = dist[base + l];
+                if (d < cami[l]) {
+                    cami[l] = d;
+                    viables[l] = 1;
+                } else if (d == cami[l]) {
+                    viables[l]++;
+                }
+            }
+        }
+        for (int l = 0; l < carrils; l++) {
+            if (cami[l] >= INF) {
+                // Igual que el Dijkstra: sense camí, totes les caselles de la vora compten
+                cami[l] = Integer.MAX_VALUE;
+                viables[l] = mida;
+            }
+        }
+    }
+
+    /**
+     * @return La casella j de la fila perpendicular número {@code fila} en la direcció del color.
+     */
+    private static int casella(int color, int fila, int j, int mida) {
+        return (color == 1) ? fila * mida + j : j * mida + fila;
+    }
+
+    /**
+     * Relaxa una casella a tots els carrils amb els seus veïns i els ponts oberts, si alguna de
+     * les seves entrades ha canviat des de l'última relaxació.
+     *
+     * @return Si la distància de la casella ha baixat en algun carril.
+     */
+    private boolean relaxarCasella(int c, int carrils) {
+        int[] iniciVeins = geometria.iniciVeins;
+        int[] veins = geometria.veins;
+        int[] iniciPonts = geometria.iniciPonts;
+        int[] pontDesti = geometria.pontDesti;
+        int numCaselles = geometria.numCaselles;
+        int[] dist = this.dist;
+        int[] cost = this.cost;
+        int[] pont = this.pont;
+        boolean[] pontObert = this.pontObert;
+        int[] minim = this.minim;
+        int base = c * carrils;
+        int[] ultimCanvi = this.ultimCanvi;
+        int darrera = ultimaRelaxacio[c];
+        boolean pendent = false;
+        for (int k = iniciVeins[c], fi = iniciVeins[c + 1]; k < fi && !pendent; k++) {
+            int v = veins[k];
+            pendent = v < numCaselles && ultimCanvi[v] >= darrera;
+        }
+        for (int k = iniciPonts[c], fi = iniciPonts[c + 1]; k < fi && !pendent; k++) {
+            pendent = pontObert[k] && ultimCanvi[pontDesti[k]] >= darrera;
+        }
+        if (!pendent) return false;
+        int ara = ++rellotge;
+        ultimaRelaxacio[c] = ara;
+
+        // El mínim dels veïns es calcula en un vector a part: així el compilador no ha de
+        // demostrar que les lectures de dist no se solapen amb l'escriptura de la casella
+        int k0 = iniciVeins[c];
+        if (iniciVeins[c + 1] - k0 == 6) {
+            // Casella interior: els sis veïns en una sola passada
+            int b0 = veins[k0] * carrils, b1 = veins[k0 + 1] * carrils, b2 = veins[k0 + 2] * carrils;
+            int b3 = veins[k0 + 3] * carrils, b4 = veins[k0 + 4] * carrils, b5 = veins[k0 + 5] * carrils;
+            for (int l = 0; l < carrils; l++) {
+                int m = Math.min(Math.min(dist[b0 + l], dist[b1 + l]), Math.min(dist[b2 + l], dist[b3 + l]));
+                minim[l] = Math.min(m, Math.min(dist[b4 + l], dist[b5 + l]));
+            }
+        } else {
+            Arrays.fill(minim, 0, carrils, INF);
+            for (int k = k0, fi = iniciVeins[c + 1]; k < fi; k++) {
+                int v = veins[k];
+                if (v >= numCaselles) continue;
+                int baseVei = v * carrils;
+                for (int l = 0; l < carrils; l++) {
+                    minim[l] = Math.min(minim[l], dist[baseVei + l]);
+                }
+            }
+        }
+        // Els ponts oberts arriben a una pedra pròpia, de cost 0: es poden sumar al mateix mínim
+        for (int k = iniciPonts[c], fi = iniciPonts[c + 1]; k < fi; k++) {
+            if (!pontObert[k]) continue;
+            int baseVei = pontDesti[k] * carrils;
+            int basePont = k * carrils;
+            for (int l = 0; l < carrils; l++) {
+                minim[l] = Math.min(minim[l], dist[baseVei + l] + pont[basePont + l]);
+            }
+        }
+        int diferencia = 0;
+        for (int l = 0; l < carrils; l++) {
+            int anterior = dist[base + l];
+            int nou = Math.min(anterior, minim[l] + cost[base + l]);
+            dist[base + l] = nou;
+            diferencia |= anterior ^ nou;
+        }
+        if (diferencia == 0) return false;
+        ultimCanvi[c] = ara;
+        return true;
+    }
+}
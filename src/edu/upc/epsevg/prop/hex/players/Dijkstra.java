@@ -1,19 +1,55 @@
 package edu.upc.epsevg.prop.hex.players;
 
 import edu.upc.epsevg.prop.hex.HexGameStatus;
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
 /**
  * Classe que implementa el càlcul de camins mínims i altres mètriques associades
  * utilitzant l'algorisme de Dijkstra.
+ *
+ * Com que els costos de les arestes només poden ser 0 (casella pròpia) o 1 (casella buida),
+ * el Dijkstra es resol amb una cua doble (0-1 BFS) sobre índexs enters de casella, que
+ * dona les mateixes distàncies en temps lineal i sense crear cap objecte per node.
+ *
+ * Una instància conserva els seus vectors de treball entre crides i fa alhora de contenidor
+ * del resultat de {@link #calcular(HexGameStatus, int)}, de manera que en règim estable no
+ * fa cap reserva de memòria. Per això no és segura entre fils: cal una instància per fil de cerca.
  */
 public class Dijkstra {
     public int shortestPath;         // Camino más corto
     public int viablePathsCount;     // Número de caminos viables cercanos al óptimo
     public int viableEnemyPathsCount; // Número de caminos viables cercanos al óptimo del enemigo
     public int enemyShortestPath;    // Camino más corto del enemigo
+    // Nombre de camins més curts (saturat a Integer.MAX_VALUE). Només els omplen calcular i puntuarCaselles
+    public int shortestPathsCount;
+    public int enemyShortestPathsCount;
+
+    // Vectors de treball reutilitzats entre crides (es redimensionen si canvia la mida del tauler)
+    private HexGeometry geometria;
+    private int[] tauler;
+    private int[] distancias;
+    private int[] distanciasEnemigo;
+    private int[] distanciasFinal;
+    private int[] distanciasFinalEnemigo;
+    private int[] puntuaciones;
+    private boolean[] zona;
+    private boolean[] visitado;
+    private int[] cua;
+    private int[] camins;
+    // Resultats secundaris de l'última cerca: camins més curts i caselles de la vora final on acaben
+    private int caminsFinal;
+    private int cellesFinal;
+    // Cerca dirigida: cota inferior per node i cues per valor de f (llistes doblement enllaçades)
+    private int[] cota;
+    private int[] capCua;
+    private int[] seguent;
+    private int[] anterior;
+    private int[] cuaNode;
+    private boolean[] filaPropia;
+    private int[] cotaFila;
+    private int nodesVisitats;
+    // Tauler que llegeix l'estat de les crides amb HexGameStatus
+    private final HexBoard.Adaptador adaptador = new HexBoard.Adaptador();
 
     /**
      * Constructor amb paràmetres.
@@ -43,222 +79,502 @@ public class Dijkstra {
     }
 
     /**
-    * Calcula el camí més curt i altres mètriques utilitzant nodes virtuals per simular 
+    * Calcula el camí més curt i altres mètriques utilitzant nodes virtuals per simular
     * les vores del tauler. Aquesta funció aplica l'algorisme de Dijkstra per determinar
     * la distància mínima tant per al jugador actual com per a l'enemic.
     *
     * @param estat Estat actual del tauler.
     * @param color Color del jugador actual (1 o -1).
-    * @return Una instància de la classe Dijkstra amb les mètriques calculades.
+    * @return Una instància nova de la classe Dijkstra amb les mètriques calculades.
     */
     public Dijkstra shortestPathWithVirtualNodes(HexGameStatus estat, int color) {
-        int midaTauler = estat.getSize();
-        int[] distancias = new int[midaTauler * midaTauler];
-        int[] distanciasEnemigo = new int[midaTauler * midaTauler];
-        boolean[][] visitado = new boolean[midaTauler][midaTauler];
-
-        PriorityQueue<Point> cua = new PriorityQueue<>((a, b) ->
-            Integer.compare(distancias[a.x * midaTauler + a.y], distancias[b.x * midaTauler + b.y])
-        );
-
-        PriorityQueue<Point> cuaEnemigo = new PriorityQueue<>((a, b) ->
-            Integer.compare(distanciasEnemigo[a.x * midaTauler + a.y], distanciasEnemigo[b.x * midaTauler + b.y])
-        );
-
-        // Inicialización de distancias para jugador y enemigo
-        for (int i = 0; i < midaTauler * midaTauler; i++) {
-            distancias[i] = Integer.MAX_VALUE;
-            distanciasEnemigo[i] = Integer.MAX_VALUE;
-
-            int columna = i / midaTauler;
-            int fila = i % midaTauler;
-            int colorCasella = estat.getPos(columna, fila);
-
-            // Inicialización para el jugador
-            if ((color == 1 && columna == 0) || (color == -1 && fila == 0)) {
-                if (colorCasella != -color) { // No agregar si es del enemigo
-                    cua.add(new Point(columna, fila));
-                    distancias[i] = (colorCasella == color) ? 0 : 1;
-                }
-            }
+        calcular(estat, color);
+        return new Dijkstra(shortestPath, viablePathsCount, viableEnemyPathsCount, enemyShortestPath);
+    }
 
-            // Inicialización para el enemigo
-            if ((-color == 1 && columna == 0) || (-color == -1 && fila == 0)) {
-                if (colorCasella != color) { // No agregar si es del jugador actual
-                    cuaEnemigo.add(new Point(columna, fila));
-                    distanciasEnemigo[i] = (colorCasella == -color) ? 0 : 1;
-                }
+    /**
+    * Calcula les mateixes mètriques que {@link #shortestPathWithVirtualNodes(HexGameStatus, int)}
+    * però les deixa als camps d'aquesta instància, reutilitzant els vectors de treball.
+    * Un cop dimensionats els buffers per a una mida de tauler, no fa cap reserva de memòria.
+    *
+    * @param estat Estat actual del tauler.
+    * @param color Color del jugador actual (1 o -1).
+    * @return Aquesta mateixa instància, amb les mètriques actualitzades.
+    */
+    public Dijkstra calcular(HexGameStatus estat, int color) {
+        return calcular(adaptador.llegir(estat), color);
+    }
+
+    /**
+     * Com {@link #calcular(HexGameStatus, int)}, sobre qualsevol tauler, també la posició de la cerca.
+     */
+    public Dijkstra calcular(HexBoard estat, int color) {
+        copiarTauler(estat);
+        nodesVisitats = 0;
+
+        // Ejecutar Dijkstra para el jugador y para el enemigo (n'hi ha prou amb els nodes fins al camí més curt)
+        // Els camins viables i els camins més curts es compten durant la mateixa cerca
+        shortestPath = calcularDistancias(color, false, false, distancias);
+        viablePathsCount = cellesFinal;
+        shortestPathsCount = caminsFinal;
+        enemyShortestPath = calcularDistancias(-color, false, false, distanciasEnemigo);
+        viableEnemyPathsCount = cellesFinal;
+        enemyShortestPathsCount = caminsFinal;
+        return this;
+    }
+
+    /**
+    * Puntua totes les caselles buides amb quatre cerques: per a cada color, una des de la vora
+    * inicial i una des de la final. El cost del millor camí d'un color que passa per una casella
+    * és la suma de les dues distàncies menys el cost de la mateixa casella, de manera que no cal
+    * col·locar cada pedra candidata i tornar a executar el Dijkstra.
+    *
+    * La puntuació premia les caselles dels camins curts propis i les que bloquegen els camins
+    * curts de l'enemic, amb els mateixos pesos (10 i 7) que la heurística dels jugadors.
+    * També deixa als camps d'aquesta instància les mètriques de {@link #calcular(HexGameStatus, int)}.
+    * Aquí els mapes han de ser complets, de manera que les cerques no s'aturen al camí més curt.
+    *
+    * @param estat Estat actual del tauler.
+    * @param color Color del jugador que puntua (1 o -1).
+    * @return Puntuació de cada casella indexada com a {@link HexGeometry#index(int, int)}; les
+    *         caselles ocupades valen Integer.MIN_VALUE. El vector es reutilitza a la crida següent.
+    */
+    public int[] puntuarCaselles(HexGameStatus estat, int color) {
+        return puntuarCaselles(adaptador.llegir(estat), color);
+    }
+
+    /**
+     * Com {@link #puntuarCaselles(HexGameStatus, int)}, sobre qualsevol tauler, també la posició de la cerca.
+     */
+    public int[] puntuarCaselles(HexBoard estat, int color) {
+        copiarTauler(estat);
+        nodesVisitats = 0;
+        shortestPath = calcularDistancias(color, false, true, distancias);
+        viablePathsCount = cellesFinal;
+        shortestPathsCount = caminsFinal;
+        enemyShortestPath = calcularDistancias(-color, false, true, distanciasEnemigo);
+        viableEnemyPathsCount = cellesFinal;
+        enemyShortestPathsCount = caminsFinal;
+        calcularDistancias(color, true, true, distanciasFinal);
+        calcularDistancias(-color, true, true, distanciasFinalEnemigo);
+
+        HexGeometry g = geometria;
+        int midaTauler = g.midaTauler;
+        for (int casella = 0; casella < g.numCaselles; casella++) {
+            if (tauler[casella] != 0) {
+                puntuaciones[casella] = Integer.MIN_VALUE;
+                continue;
             }
+            int caminoPropio = caminoPorCasella(distancias[casella], distanciasFinal[casella], g.numCaselles);
+            int caminoEnemigo = caminoPorCasella(distanciasEnemigo[casella], distanciasFinalEnemigo[casella], g.numCaselles);
+            puntuaciones[casella] = 10 * (midaTauler - caminoPropio) + 7 * (midaTauler - caminoEnemigo);
         }
+        return puntuaciones;
+    }
 
-        // Ejecutar Dijkstra para el jugador
-        int shortestPath = Integer.MAX_VALUE;
-        while (!cua.isEmpty()) {
-            Point pActual = cua.poll();
-            if (visitado[pActual.x][pActual.y]) continue;
-            visitado[pActual.x][pActual.y] = true;
-
-            ArrayList<Point> vecinos = estat.getNeigh(pActual);
-            // Direcciones: {deltaX1, deltaY1, deltaX2, deltaY2, deltaX3, deltaY3}
-            int[][] direcciones = {
-                {0, -1, 1, -1, 1, -2}, // Arriba
-                {-1, 0, 0, -1, -1, -1}, // Arriba-Izquierda            
-                {-1, 1, -1, 0, -2, 1}, // Abajo-Izquierda             
-                {0, 1, -1, 1, -1, 2},  // Abajo
-                {1, 0, 0, 1, 1, 1},    // Abajo-Derecha
-                {1, -1, 1, 0, 2, -1}  // Arriba-Derecha
-            };
-
-            // Comprobar las seis casillas para cada dirección
-            for (int[] dir : direcciones) {
-                int interX1 = pActual.x + dir[0];
-                int interY1 = pActual.y + dir[1];
-                int interX2 = pActual.x + dir[2];
-                int interY2 = pActual.y + dir[3];
-                int finalX = pActual.x + dir[4];
-                int finalY = pActual.y + dir[5];
-
-                // Verificar si las coordenadas están dentro del tablero
-                if (interX1 >= 0 && interX1 < midaTauler && interY1 >= 0 && interY1 < midaTauler &&
-                    interX2 >= 0 && interX2 < midaTauler && interY2 >= 0 && interY2 < midaTauler &&
-                    finalX >= 0 && finalX < midaTauler && finalY >= 0 && finalY < midaTauler) {
-
-                    // Comprobar las condiciones de las casillas
-                    if (estat.getPos(interX1, interY1) == 0 && estat.getPos(interX2, interY2) == 0 &&
-                        estat.getPos(finalX, finalY) == color) {
-                        // Añadir la casilla final como vecino directo
-                        vecinos.add(new Point(finalX, finalY));
-                    }
-                }
-            }
+    /**
+    * Marca les caselles buides que són a prop d'algun camí mínim d'un dels dos colors: les que
+    * tenen un camí del color que hi passa amb un cost que no supera el mínim en més de la folga.
+    * Fa les mateixes quatre cerques completes que {@link #puntuarCaselles(HexGameStatus, int)} i
+    * també deixa les mètriques de {@link #calcular(HexGameStatus, int)} als camps.
+    *
+    * @param estat Estat actual del tauler.
+    * @param color Color del jugador (1 o -1).
+    * @param folga Cost extra admès respecte del camí mínim de cada color.
+    * @return Si cada casella és a la zona, indexada com a {@link HexGeometry#index(int, int)}; les
+    *         caselles ocupades hi queden fora. El vector es reutilitza a la crida següent.
+    */
+    public boolean[] zonaRellevant(HexGameStatus estat, int color, int folga) {
+        return zonaRellevant(adaptador.llegir(estat), color, folga);
+    }
 
-            for (Point vecino : vecinos) {
-                int indexActual = pActual.x * midaTauler + pActual.y;
-                int indexVecino = vecino.x * midaTauler + vecino.y;
-                int colorVecino = estat.getPos(vecino.x, vecino.y);
+    /**
+     * Com {@link #zonaRellevant(HexGameStatus, int, int)}, sobre qualsevol tauler, també la posició de la cerca.
+     */
+    public boolean[] zonaRellevant(HexBoard estat, int color, int folga) {
+        copiarTauler(estat);
+        nodesVisitats = 0;
+        shortestPath = calcularDistancias(color, false, true, distancias);
+        viablePathsCount = cellesFinal;
+        shortestPathsCount = caminsFinal;
+        enemyShortestPath = calcularDistancias(-color, false, true, distanciasEnemigo);
+        viableEnemyPathsCount = cellesFinal;
+        enemyShortestPathsCount = caminsFinal;
+        calcularDistancias(color, true, true, distanciasFinal);
+        calcularDistancias(-color, true, true, distanciasFinalEnemigo);
+
+        int numCaselles = geometria.numCaselles;
+        // Sense camí, el límit queda per sota de qualsevol cost i el color no aporta caselles
+        int limitPropi = (shortestPath == Integer.MAX_VALUE) ? -1 : shortestPath + folga;
+        int limitEnemic = (enemyShortestPath == Integer.MAX_VALUE) ? -1 : enemyShortestPath + folga;
+        for (int casella = 0; casella < numCaselles; casella++) {
+            zona[casella] = tauler[casella] == 0
+                    && (caminoPorCasella(distancias[casella], distanciasFinal[casella], numCaselles) <= limitPropi
+                    || caminoPorCasella(distanciasEnemigo[casella], distanciasFinalEnemigo[casella], numCaselles) <= limitEnemic);
+        }
+        return zona;
+    }
 
-                // Ignorar si el vecino está bloqueado por el enemigo
-                if (colorVecino == -color) continue;
+    /**
+     * @return Cost del millor camí que passa per una casella buida, limitat a un màxim si no n'hi ha.
+     */
+    private static int caminoPorCasella(int desdeInicio, int desdeFinal, int maximo) {
+        if (desdeInicio == Integer.MAX_VALUE || desdeFinal == Integer.MAX_VALUE) return maximo;
+        return Math.min(desdeInicio + desdeFinal - 1, maximo);
+    }
 
-                int nuevoCosto = distancias[indexActual] +
-                    ((colorVecino == color) ? 0 : 1);
+    /**
+    * Calcula només el camí més curt d'un color, amb una cerca dirigida cap a la vora final
+    * (A*) que s'atura tan bon punt la vora queda tancada. Serveix quan no calen la resta de
+    * mètriques, per exemple per saber si un color ja ha connectat o per fitar una avaluació.
+    *
+    * La cota inferior compta les files que queden fins a la vora final on el camí ha de pagar
+    * per força una casella: les que no tenen cap pedra pròpia i tampoc en tenen a la fila
+    * següent (on podria aterrar un pont que la saltés). La cota és consistent, de manera que
+    * un node tancat ja té la distància definitiva.
+    *
+    * Els camps d'aquesta instància no es modifiquen.
+    *
+    * @param estat Estat actual del tauler.
+    * @param color Color del jugador (1 o -1).
+    * @return La distància mínima del color fins a la seva vora final, o Integer.MAX_VALUE si no hi ha camí.
+    */
+    public int camiMinim(HexGameStatus estat, int color) {
+        return camiMinim(adaptador.llegir(estat), color);
+    }
 
-                if (nuevoCosto < distancias[indexVecino]) {
-                    distancias[indexVecino] = nuevoCosto;
-                    cua.add(vecino);
+    /**
+     * Com {@link #camiMinim(HexGameStatus, int)}, sobre qualsevol tauler, també la posició de la cerca.
+     */
+    public int camiMinim(HexBoard estat, int color) {
+        copiarTauler(estat);
+        nodesVisitats = 0;
+        calcularCota(color);
+        return cercaDirigida(color);
+    }
 
-                    if ((color == 1 && vecino.x == midaTauler - 1) || 
-                        (color == -1 && vecino.y == midaTauler - 1)) {
-                        shortestPath = Math.min(shortestPath, nuevoCosto);
-                    }
-                }
+    /**
+     * Com {@link #camiMinim(HexGameStatus, int)}, sobre el tauler de l'última crida amb una
+     * pedra del color contrari afegida a una casella buida. La pedra no canvia la cota inferior,
+     * de manera que es reaprofita la de l'última crida, i el tauler queda com estava.
+     *
+     * @param casella Índex de la casella on es posa la pedra contrària.
+     * @param color Color del jugador (1 o -1), el mateix de l'última crida a camiMinim.
+     * @return La distància mínima del color amb la pedra contrària, o Integer.MAX_VALUE si no hi ha camí.
+     */
+    int camiMinimAmbPedra(int casella, int color) {
+        tauler[casella] = -color;
+        int distancia = cercaDirigida(color);
+        tauler[casella] = 0;
+        return distancia;
+    }
+
+    /**
+     * @return Nombre de nodes expandits per l'última crida a {@link #calcular(HexGameStatus, int)},
+     *         {@link #camiMinim(HexGameStatus, int)} o {@link #puntuarCaselles(HexGameStatus, int)}.
+     */
+    public int getNodesVisitats() {
+        return nodesVisitats;
+    }
+
+    /**
+     * Copia el tauler a la representació plana (els nodes virtuals de les vores ja tenen el
+     * color del seu propietari).
+     *
+     * @param estat Estat actual del tauler.
+     */
+    private void copiarTauler(HexBoard estat) {
+        prepararBuffers(estat.getSize());
+        HexGeometry g = geometria;
+        for (int casella = 0; casella < g.numCaselles; casella++) {
+            tauler[casella] = estat.getPos(g.x(casella), g.y(casella));
+        }
+    }
+
+    /**
+     * Omple la cota inferior de cada node per a la cerca dirigida del color. Les files es
+     * compten en la direcció del color: la coordenada x per al color 1 i la y per al -1.
+     *
+     * @param color Color del jugador (1 o -1).
+     */
+    private void calcularCota(int color) {
+        HexGeometry g = geometria;
+        int midaTauler = g.midaTauler;
+        Arrays.fill(filaPropia, false);
+        for (int casella = 0; casella < g.numCaselles; casella++) {
+            if (tauler[casella] == color) {
+                filaPropia[(color == 1) ? g.x(casella) : g.y(casella)] = true;
             }
         }
+        // cotaFila[f] = files obligatòries des de la fila f fins a la vora final
+        cotaFila[midaTauler] = 0;
+        for (int fila = midaTauler - 1; fila >= 0; fila--) {
+            boolean obligatoria = !filaPropia[fila] && (fila == midaTauler - 1 || !filaPropia[fila + 1]);
+            cotaFila[fila] = cotaFila[fila + 1] + (obligatoria ? 1 : 0);
+        }
+        for (int casella = 0; casella < g.numCaselles; casella++) {
+            int fila = (color == 1) ? g.x(casella) : g.y(casella);
+            cota[casella] = cotaFila[fila + 1];
+        }
+        cota[g.nodeInici(color)] = cotaFila[0];
+        cota[g.nodeFinal(color)] = 0;
+    }
+
+    /**
+     * A* amb cues per valor de f = distància + cota. Com que la cota és consistent, la f dels
+     * nodes que surten de les cues mai no baixa i n'hi ha prou amb un cursor que avança.
+     *
+     * @param color Color del jugador (1 o -1).
+     * @return La distància mínima fins a la vora final, o Integer.MAX_VALUE si no hi ha camí.
+     */
+    private int cercaDirigida(int color) {
+        HexGeometry g = geometria;
+        int[] tauler = this.tauler;
+        int[] iniciVeins = g.iniciVeins;
+        int[] veins = g.veins;
+        int[] iniciPonts = g.iniciPonts;
+        int[] pontDesti = g.pontDesti;
+        int[] pontInter1 = g.pontInter1;
+        int[] pontInter2 = g.pontInter2;
+        int numCaselles = g.numCaselles;
+
+        Arrays.fill(distancias, Integer.MAX_VALUE);
+        Arrays.fill(visitado, false);
+        Arrays.fill(capCua, -1);
+        Arrays.fill(cuaNode, -1);
+        int nodeInici = g.nodeInici(color);
+        int nodeFinal = g.nodeFinal(color);
+        distancias[nodeInici] = 0;
+        encuar(nodeInici, cota[nodeInici]);
+
+        for (int f = cota[nodeInici]; f < capCua.length; f++) {
+            while (capCua[f] != -1) {
+                int actual = capCua[f];
+                desencuar(actual);
+                visitado[actual] = true;
+                nodesVisitats++;
+                if (actual == nodeFinal) return distancias[actual];
+                int distanciaActual = distancias[actual];
+
+                for (int k = iniciVeins[actual], fi = iniciVeins[actual + 1]; k < fi; k++) {
+                    int vecino = veins[k];
+                    int colorVecino = tauler[vecino];
+                    if (colorVecino == -color || visitado[vecino]) continue;
+                    int nuevoCosto = distanciaActual + ((colorVecino == color) ? 0 : 1);
+                    if (nuevoCosto < distancias[vecino]) {
+                        distancias[vecino] = nuevoCosto;
+                        encuar(vecino, nuevoCosto + cota[vecino]);
+                    }
+                }
 
-        // Ejecutar Dijkstra para el enemigo
-        int enemyShortestPath = Integer.MAX_VALUE;
-        while (!cuaEnemigo.isEmpty()) {
-            Point pActual = cuaEnemigo.poll();
-            ArrayList<Point> vecinos = estat.getNeigh(pActual);
-            int[][] direcciones = {
-                {0, -1, 1, -1, 1, -2}, // Arriba
-                {-1, 0, 0, -1, -1, -1}, // Arriba-Izquierda            
-                {-1, 1, -1, 0, -2, 1}, // Abajo-Izquierda             
-                {0, 1, -1, 1, -1, 2},  // Abajo
-                {1, 0, 0, 1, 1, 1},    // Abajo-Derecha
-                {1, -1, 1, 0, 2, -1}  // Arriba-Derecha
-            };
-
-            // Comprobar las seis casillas para cada dirección
-            for (int[] dir : direcciones) {
-                int interX1 = pActual.x + dir[0];
-                int interY1 = pActual.y + dir[1];
-                int interX2 = pActual.x + dir[2];
-                int interY2 = pActual.y + dir[3];
-                int finalX = pActual.x + dir[4];
-                int finalY = pActual.y + dir[5];
-
-                // Verificar si las coordenadas están dentro del tablero
-                if (interX1 >= 0 && interX1 < midaTauler && interY1 >= 0 && interY1 < midaTauler &&
-                    interX2 >= 0 && interX2 < midaTauler && interY2 >= 0 && interY2 < midaTauler &&
-                    finalX >= 0 && finalX < midaTauler && finalY >= 0 && finalY < midaTauler) {
-
-                    // Comprobar las condiciones de las casillas
-                    if (estat.getPos(interX1, interY1) == 0 && estat.getPos(interX2, interY2) == 0 &&
-                        estat.getPos(finalX, finalY) == -color) {
-                        // Añadir la casilla final como vecino directo
-                        vecinos.add(new Point(finalX, finalY));
+                if (actual >= numCaselles) continue;
+                for (int k = iniciPonts[actual], fi = iniciPonts[actual + 1]; k < fi; k++) {
+                    int desti = pontDesti[k];
+                    if (tauler[desti] == color && !visitado[desti] && tauler[pontInter1[k]] == 0
+                            && tauler[pontInter2[k]] == 0 && distanciaActual < distancias[desti]) {
+                        distancias[desti] = distanciaActual;
+                        encuar(desti, distanciaActual + cota[desti]);
                     }
                 }
             }
-            for (Point vecino : vecinos) {
-                int indexActual = pActual.x * midaTauler + pActual.y;
-                int indexVecino = vecino.x * midaTauler + vecino.y;
-                int colorVecino = estat.getPos(vecino.x, vecino.y);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Posa un node a la cua del valor f indicat, traient-lo abans de la cua on fos.
+     */
+    private void encuar(int node, int f) {
+        if (cuaNode[node] != -1) desencuar(node);
+        cuaNode[node] = f;
+        anterior[node] = -1;
+        seguent[node] = capCua[f];
+        if (capCua[f] != -1) anterior[capCua[f]] = node;
+        capCua[f] = node;
+    }
 
-                // Ignorar si el vecino está bloqueado por el jugador
-                if (colorVecino == color) continue;
+    private void desencuar(int node) {
+        int f = cuaNode[node];
+        if (anterior[node] != -1) {
+            seguent[anterior[node]] = seguent[node];
+        } else {
+            capCua[f] = seguent[node];
+        }
+        if (seguent[node] != -1) anterior[seguent[node]] = anterior[node];
+        cuaNode[node] = -1;
+    }
 
-                int nuevoCosto = distanciasEnemigo[indexActual] +
-                    ((colorVecino == -color) ? 0 : 1);
+    /**
+     * Reserva els vectors de treball si encara no existeixen o si la mida del tauler ha canviat.
+     *
+     * @param midaTauler Mida del tauler.
+     */
+    private void prepararBuffers(int midaTauler) {
+        if (geometria != null && geometria.midaTauler == midaTauler) return;
+        geometria = HexGeometry.of(midaTauler);
+        int numNodes = geometria.numNodes;
+        tauler = Arrays.copyOf(geometria.colorNode, numNodes);
+        distancias = new int[numNodes];
+        distanciasEnemigo = new int[numNodes];
+        distanciasFinal = new int[numNodes];
+        distanciasFinalEnemigo = new int[numNodes];
+        puntuaciones = new int[geometria.numCaselles];
+        zona = new boolean[geometria.numCaselles];
+        visitado = new boolean[numNodes];
+        cota = new int[numNodes];
+        // f = distància + cota no passa del nombre de caselles més la mida del tauler
+        capCua = new int[geometria.numCaselles + midaTauler + 2];
+        seguent = new int[numNodes];
+        anterior = new int[numNodes];
+        cuaNode = new int[numNodes];
+        filaPropia = new boolean[midaTauler];
+        cotaFila = new int[midaTauler + 1];
+        // Cada node entra com a molt dues vegades a la cua (0-1 BFS)
+        cua = new int[Integer.highestOneBit(2 * numNodes) << 1];
+        camins = new int[numNodes];
+    }
 
-                if (nuevoCosto < distanciasEnemigo[indexVecino]) {
-                    distanciasEnemigo[indexVecino] = nuevoCosto;
-                    cuaEnemigo.add(vecino);
+    /**
+     * Executa el 0-1 BFS per a un color des del node virtual d'una de les seves vores.
+     * Les caselles pròpies costen 0, les buides 1 i les de l'enemic són infranquejables
+     * (les vores virtuals del contrari també ho són, perquè tenen el seu color).
+     * Els ponts amb les dues caselles intermèdies buides que acaben en una pedra pròpia es
+     * tracten com a veïns directes; en sentit invers el pont surt de la pedra pròpia.
+     * El node virtual de la vora oposada no s'expandeix.
+     *
+     * Alhora compta els camins més curts: cada node suma els camins dels predecessors ajustats
+     * que s'han tancat abans que ell, de manera que les pedres pròpies veïnes (arestes de cost 0
+     * en les dues direccions) no generen cicles. El recompte satura a Integer.MAX_VALUE. També
+     * compta les caselles de la vora oposada que arriben al node virtual amb la distància mínima.
+     * Els dos valors es deixen a {@code caminsFinal} i {@code cellesFinal}.
+     *
+     * @param color Color per al qual es calculen les distàncies (1 o -1).
+     * @param invers Si és cert, la cerca surt de la vora final del color en lloc de la inicial.
+     * @param completa Si és fals, la cerca s'atura quan les distàncies que queden superen la de la
+     *                 vora oposada: les que ja estan fixades són les úniques que compten per als
+     *                 camins viables.
+     * @param distancias Vector on es deixen les distàncies, indexat per node.
+     * @return La distància mínima fins a la vora oposada, o Integer.MAX_VALUE si no hi ha camí.
+     */
+    private int calcularDistancias(int color, boolean invers, boolean completa, int[] distancias) {
+        HexGeometry g = geometria;
+        int[] tauler = this.tauler;
+        int[] iniciVeins = g.iniciVeins;
+        int[] veins = g.veins;
+        int[] iniciPonts = g.iniciPonts;
+        int[] pontDesti = g.pontDesti;
+        int[] pontInter1 = g.pontInter1;
+        int[] pontInter2 = g.pontInter2;
+        int numCaselles = g.numCaselles;
+        int mascara = cua.length - 1;
+
+        Arrays.fill(distancias, Integer.MAX_VALUE);
+        Arrays.fill(visitado, false);
+        int[] camins = this.camins;
+        int nodeInici = invers ? g.nodeFinal(color) : g.nodeInici(color);
+        int nodeFinal = invers ? g.nodeInici(color) : g.nodeFinal(color);
+        distancias[nodeInici] = 0;
+        camins[nodeInici] = 1;
+        cellesFinal = 0;
+        cua[0] = nodeInici;
+        int cap = 0;
+        int cola = 1;
+
+        while (cap != cola) {
+            int actual = cua[cap];
+            cap = (cap + 1) & mascara;
+            if (visitado[actual]) continue;
+            int distanciaActual = distancias[actual];
+            // Els nodes surten en ordre de distància: la resta ja queden per sobre del camí més curt
+            if (!completa && distanciaActual > distancias[nodeFinal]) break;
+            nodesVisitats++;
+            // El node final no es tanca ni s'expandeix: hi poden arribar camins després de treure'l
+            if (actual == nodeFinal) continue;
+            visitado[actual] = true;
+            int caminsActual = camins[actual];
+
+            // Veïns directes (inclou les vores virtuals)
+            for (int k = iniciVeins[actual], fi = iniciVeins[actual + 1]; k < fi; k++) {
+                int vecino = veins[k];
+                int colorVecino = tauler[vecino];
+                // Ignorar si el vecino está bloqueado por el enemigo
+                if (colorVecino == -color) continue;
 
-                    if ((-color == 1 && vecino.x == midaTauler - 1) || 
-                        (-color == -1 && vecino.y == midaTauler - 1)) {
-                        enemyShortestPath = Math.min(enemyShortestPath, nuevoCosto);
+                int coste = (colorVecino == color) ? 0 : 1;
+                int nuevoCosto = distanciaActual + coste;
+                int distanciaVecino = distancias[vecino];
+                if (nuevoCosto < distanciaVecino) {
+                    distancias[vecino] = nuevoCosto;
+                    camins[vecino] = caminsActual;
+                    if (vecino == nodeFinal) cellesFinal = 1;
+                    if (coste == 0) {
+                        cap = (cap - 1) & mascara;
+                        cua[cap] = vecino;
+                    } else {
+                        cua[cola] = vecino;
+                        cola = (cola + 1) & mascara;
                     }
+                } else if (nuevoCosto == distanciaVecino && !visitado[vecino]) {
+                    camins[vecino] = sumarCamins(camins[vecino], caminsActual);
+                    if (vecino == nodeFinal) cellesFinal++;
                 }
             }
-        }
 
-        // Contar caminos viables
-        viablePathsCount = 0;
-        viableEnemyPathsCount = 0;
-        if (color == 1) {
-        // Casillas finales para el jugador 1 (última fila)
-            for (int fila = 0; fila < midaTauler; fila++) {
-                //int index = fila * midaTauler + (midaTauler - 1); // Última fila
-                int index = (midaTauler - 1) * midaTauler + fila;
-                if (distancias[index] <= shortestPath) {
-                    viablePathsCount++;
+            // Ponts cap a pedres pròpies (cost 0)
+            if (actual >= numCaselles) continue;
+            if (!invers) {
+                for (int k = iniciPonts[actual], fi = iniciPonts[actual + 1]; k < fi; k++) {
+                    int desti = pontDesti[k];
+                    if (tauler[desti] != color || tauler[pontInter1[k]] != 0 || tauler[pontInter2[k]] != 0) continue;
+                    if (distanciaActual < distancias[desti]) {
+                        distancias[desti] = distanciaActual;
+                        camins[desti] = caminsActual;
+                        cap = (cap - 1) & mascara;
+                        cua[cap] = desti;
+                    } else if (distanciaActual == distancias[desti] && !visitado[desti]) {
+                        camins[desti] = sumarCamins(camins[desti], caminsActual);
+                    }
                 }
-            }
-        } else if (color == -1) {
-            // Casillas finales para el jugador -1 (última columna)
-            for (int columna = 0; columna < midaTauler; columna++) {
-                //int index = (midaTauler - 1) * midaTauler + columna; // Última columna
-                int index = columna * midaTauler + (midaTauler - 1);
-                if (distancias[index] <= shortestPath) {
-                    viablePathsCount++;
+            } else if (tauler[actual] == color) {
+                // En sentit invers el pont surt de la pedra pròpia i es paga la casella d'arribada
+                for (int k = iniciPonts[actual], fi = iniciPonts[actual + 1]; k < fi; k++) {
+                    int desti = pontDesti[k];
+                    int colorDesti = tauler[desti];
+                    if (colorDesti == -color || tauler[pontInter1[k]] != 0 || tauler[pontInter2[k]] != 0) continue;
+                    int coste = (colorDesti == color) ? 0 : 1;
+                    int nuevoCosto = distanciaActual + coste;
+                    if (nuevoCosto < distancias[desti]) {
+                        distancias[desti] = nuevoCosto;
+                        camins[desti] = caminsActual;
+                        if (coste == 0) {
+                            cap = (cap - 1) & mascara;
+                            cua[cap] = desti;
+                        } else {
+                            cua[cola] = desti;
+                            cola = (cola + 1) & mascara;
+                        }
+                    } else if (nuevoCosto == distancias[desti] && !visitado[desti]) {
+                        camins[desti] = sumarCamins(camins[desti], caminsActual);
+                    }
                 }
             }
         }
-
-        // Repetir para el enemigo (-color)
-        if (-color == 1) {
-            // Casillas finales para el enemigo hacia la derecha
-            for (int fila = 0; fila < midaTauler; fila++) {
-                //int index = fila * midaTauler + (midaTauler - 1); // Última fila
-                int index = (midaTauler - 1) * midaTauler + fila;
-                if (distanciasEnemigo[index] <= enemyShortestPath) {
-                    viableEnemyPathsCount++;
-                }
-            }
-        } else if (-color == -1) {
-            // Casillas finales para el enemigo hacia abajo
-            for (int columna = 0; columna < midaTauler; columna++) {
-                //int index = (midaTauler - 1) * midaTauler + columna; // Última columna
-                int index = columna * midaTauler + (midaTauler - 1);
-                if (distanciasEnemigo[index] <= enemyShortestPath) {
-                    viableEnemyPathsCount++;
-                }
-            }
+        if (distancias[nodeFinal] == Integer.MAX_VALUE) {
+            // Sense camí totes les caselles de la vora queden a distància <= infinit
+            caminsFinal = 0;
+            cellesFinal = g.midaTauler;
+        } else {
+            caminsFinal = camins[nodeFinal];
         }
+        return distancias[nodeFinal];
+    }
 
-        return new Dijkstra(shortestPath, viablePathsCount, viableEnemyPathsCount, enemyShortestPath);
+    /**
+     * @return La suma de dos recomptes de camins, saturada a Integer.MAX_VALUE.
+     */
+    private static int sumarCamins(int a, int b) {
+        int suma = a + b;
+        return (suma < 0) ? Integer.MAX_VALUE : suma;
     }
 
 }
@@ -0,0 +1,157 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.Arrays;
+
+/**
+ * Memòria cau d'avaluacions indexada pel hash Zobrist de la posició.
+ *
+ * Guarda les quatre mètriques del {@link Dijkstra} empaquetades en un long, sempre des del punt
+ * de vista del color 1, de manera que una mateixa entrada serveix per avaluar des de qualsevol
+ * dels dos colors. És de mida fixa i amb pèrdua: cada hash té una única posició possible i una
+ * entrada nova sempre substitueix l'anterior. La clau completa es guarda per descartar col·lisions.
+ *
+ * No és segura entre fils: cal una instància per fil de cerca.
+ */
+public class EvaluationCache {
+    /** Mida per defecte, en entrades (16 bytes cadascuna). */
+    public static final int ENTRADES_PER_DEFECTE = 1 << 16;
+
+    private static final long VALIDA = 1L << 63;
+    private static final int INF_EMPAQUETAT = 0xFFFF;
+    /** Màxim d'entrades (4 GB): més enllà, la mida arrodonida ja no cabria en un int. */
+    private static final int MAX_ENTRADES = 1 << 28;
+
+    private final long[] claus;
+    private final long[] valors;
+    private final int mascara;
+    private long hits;
+    private long misses;
+
+    /**
+     * Crea una memòria cau amb almenys el nombre d'entrades indicat (s'arrodoneix a potència de dos,
+     * fins a un màxim de 2^28).
+     *
+     * @param entrades Nombre d'entrades; 0 desactiva la memòria cau.
+     */
+    public EvaluationCache(int entrades) {
+        int mida = nombreEntrades(entrades);
+        this.claus = new long[mida];
+        this.valors = new long[mida];
+        this.mascara = mida - 1;
+    }
+
+    /**
+     * @param entrades Nombre d'entrades demanat.
+     * @return La potència de dos més petita que no és inferior a les entrades demanades, fins a
+     *         {@link #MAX_ENTRADES}; 0 si no se'n demana cap.
+     */
+    static int nombreEntrades(int entrades) {
+        if (entrades <= 0) return 0;
+        return (int) Long.highestOneBit(Math.min(Math.max(1L, entrades - 1L) << 1, MAX_ENTRADES));
+    }
+
+    /**
+     * @return Nombre d'entrades de la memòria cau (0 si està desactivada).
+     */
+    public int getEntrades() {
+        return claus.length;
+    }
+
+    /**
+     * Busca les mètriques d'una posició.
+     *
+     * @param hash Hash Zobrist de la posició.
+     * @param color Color des del qual es volen les mètriques (1 o -1).
+     * @param resultat Contenidor on es deixen les mètriques si hi són.
+     * @return Si s'han trobat les mètriques.
+     */
+    public boolean lookup(long hash, int color, Dijkstra resultat) {
+        if (claus.length == 0) {
+            misses++;
+            return false;
+        }
+        int i = (int) hash & mascara;
+        long valor = valors[i];
+        if (claus[i] != hash || (valor & VALIDA) == 0) {
+            misses++;
+            return false;
+        }
+        hits++;
+        int cami1 = desempaquetarCami(valor, 0);
+        int viables1 = (int) ((valor >>> 16) & 0xFFFF);
+        int cami2 = desempaquetarCami(valor, 32);
+        int viables2 = (int) ((valor >>> 48) & 0x7FFF);
+        if (color == 1) {
+            resultat.shortestPath = cami1;
+            resultat.viablePathsCount = viables1;
+            resultat.enemyShortestPath = cami2;
+            resultat.viableEnemyPathsCount = viables2;
+        } else {
+            resultat.shortestPath = cami2;
+            resultat.viablePathsCount = viables2;
+            resultat.enemyShortestPath = cami1;
+            resultat.viableEnemyPathsCount = viables1;
+        }
+        return true;
+    }
+
+    /**
+     * Desa les mètriques d'una posició, substituint el que hi hagués a la seva posició.
+     *
+     * @param hash Hash Zobrist de la posició.
+     * @param color Color des del qual s'han calculat les mètriques (1 o -1).
+     * @param resultat Mètriques a desar.
+     */
+    public void store(long hash, int color, Dijkstra resultat) {
+        if (claus.length == 0) return;
+        int cami1, viables1, cami2, viables2;
+        if (color == 1) {
+            cami1 = resultat.shortestPath;
+            viables1 = resultat.viablePathsCount;
+            cami2 = resultat.enemyShortestPath;
+            viables2 = resultat.viableEnemyPathsCount;
+        } else {
+            cami1 = resultat.enemyShortestPath;
+            viables1 = resultat.viableEnemyPathsCount;
+            cami2 = resultat.shortestPath;
+            viables2 = resultat.viablePathsCount;
+        }
+        int i = (int) hash & mascara;
+        claus[i] = hash;
+        // Format: [63] vàlida | [48..62] viables2 | [32..47] camí2 | [16..31] viables1 | [0..15] camí1
+        valors[i] = VALIDA | empaquetarCami(cami1) | ((long) viables1 << 16)
+                | (empaquetarCami(cami2) << 32) | ((long) viables2 << 48);
+    }
+
+    private static long empaquetarCami(int cami) {
+        return (cami == Integer.MAX_VALUE) ? INF_EMPAQUETAT : Math.min(cami, INF_EMPAQUETAT - 1);
+    }
+
+    private static int desempaquetarCami(long valor, int desplacament) {
+        int v = (int) ((valor >>> desplacament) & 0xFFFF);
+        return (v == INF_EMPAQUETAT) ? Integer.MAX_VALUE : v;
+    }
+
+    /**
+     * Buida la memòria cau i reinicia els comptadors.
+     */
+    public void clear() {
+        Arrays.fill(valors, 0L);
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return Nombre de consultes que han trobat l'entrada.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Nombre de consultes que no han trobat l'entrada.
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
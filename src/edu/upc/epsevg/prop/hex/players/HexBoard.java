@@ -0,0 +1,69 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+
+/**
+ * Tauler que llegeixen els avaluadors: l'estat de la partida, a través de {@link #of}, o la
+ * posició mutable de la cerca, {@link HexPosition}. Només té les consultes que els calen, de
+ * manera que la posició de la cerca no s'ha de fer passar per un {@link HexGameStatus}.
+ */
+public interface HexBoard {
+
+    /**
+     * @return Mida del tauler.
+     */
+    int getSize();
+
+    /**
+     * @param x Coordenada x de la casella.
+     * @param y Coordenada y de la casella.
+     * @return El color de la casella (0 si és buida).
+     */
+    int getPos(int x, int y);
+
+    /**
+     * @return El color del jugador que mou (1 o -1).
+     */
+    int getCurrentPlayerColor();
+
+    /**
+     * @param estat Estat de la partida.
+     * @return Un tauler nou que llegeix l'estat, sense copiar-lo. Els avaluadors, que es criden a
+     *         cada node, en fan servir un {@link Adaptador} propi per no reservar memòria.
+     */
+    static HexBoard of(HexGameStatus estat) {
+        return new Adaptador().llegir(estat);
+    }
+
+    /**
+     * Tauler que llegeix un estat de la partida sense copiar-lo. Es torna a apuntar a un altre
+     * estat a cada crida, de manera que n'hi ha prou amb un per instància. No és segur entre fils.
+     */
+    final class Adaptador implements HexBoard {
+        private HexGameStatus estat;
+
+        /**
+         * @param estat Estat de la partida.
+         * @return Aquest mateix tauler, que ara llegeix l'estat.
+         */
+        public HexBoard llegir(HexGameStatus estat) {
+            this.estat = estat;
+            return this;
+        }
+
+        @Override
+        public int getSize() {
+            return estat.getSize();
+        }
+
+        @Override
+        public int getPos(int x, int y) {
+            return estat.getPos(x, y);
+        }
+
+        @Override
+        public int getCurrentPlayerColor() {
+            return estat.getCurrentPlayerColor();
+        }
+    }
+}
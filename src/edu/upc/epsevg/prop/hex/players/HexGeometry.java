@@ -0,0 +1,251 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.MoveNode;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Geometria precalculada d'un tauler de Hex d'una mida donada.
+ *
+ * Les caselles s'indexen com x * mida + y i, després de les caselles, hi ha quatre nodes
+ * virtuals que representen les vores del tauler. Els veïns i els ponts de cada node es
+ * guarden en format CSR (vectors plans d'enters amb un vector d'inicis), de manera que els
+ * recorreguts no necessiten crear objectes ni comprovar límits. Com que la geometria no
+ * canvia durant la partida, hi ha una única instància compartida per mida.
+ */
+public final class HexGeometry {
+    /** Vora x == 0: inici del color 1. */
+    public static final int VORA_ESQUERRA = 0;
+    /** Vora x == mida - 1: final del color 1. */
+    public static final int VORA_DRETA = 1;
+    /** Vora y == 0: inici del color -1. */
+    public static final int VORA_SUPERIOR = 2;
+    /** Vora y == mida - 1: final del color -1. */
+    public static final int VORA_INFERIOR = 3;
+
+    /**
+     * Desplaçaments {deltaX, deltaY} dels sis veïns d'una casella, en el mateix ordre que
+     * {@link edu.upc.epsevg.prop.hex.HexGameStatus#getNeigh(java.awt.Point)}.
+     */
+    private static final int[][] VECINOS = {
+        {-1, 0}, {1, 0}, {0, -1}, {1, -1}, {0, 1}, {-1, 1}
+    };
+
+    /**
+     * Patrons de pont. Direcciones: {deltaX1, deltaY1, deltaX2, deltaY2, deltaX3, deltaY3},
+     * on les dues primeres són les caselles intermèdies i la tercera la casella final.
+     */
+    private static final int[][] DIRECCIONES = {
+        {0, -1, 1, -1, 1, -2}, // Arriba
+        {-1, 0, 0, -1, -1, -1}, // Arriba-Izquierda
+        {-1, 1, -1, 0, -2, 1}, // Abajo-Izquierda
+        {0, 1, -1, 1, -1, 2},  // Abajo
+        {1, 0, 0, 1, 1, 1},    // Abajo-Derecha
+        {1, -1, 1, 0, 2, -1}  // Arriba-Derecha
+    };
+
+    private static final ConcurrentHashMap<Integer, HexGeometry> CACHE = new ConcurrentHashMap<>();
+
+    /** Mida del tauler. */
+    final int midaTauler;
+    /** Nombre de caselles reals (mida * mida). */
+    final int numCaselles;
+    /** Nombre de nodes: caselles més les quatre vores virtuals. */
+    final int numNodes;
+
+    /** Veïns del node i: veins[iniciVeins[i] .. iniciVeins[i + 1]). Inclou les vores virtuals. */
+    final int[] iniciVeins;
+    final int[] veins;
+
+    /** Ponts de la casella i: posicions [iniciPonts[i] .. iniciPonts[i + 1]) dels tres vectors. */
+    final int[] iniciPonts;
+    final int[] pontDesti;
+    final int[] pontInter1;
+    final int[] pontInter2;
+
+    /** Distància de Manhattan de cada casella al centre del tauler. */
+    final int[] distanciaCentre;
+
+    /** Color propietari de cada node: 0 per a les caselles, el color de la vora per als virtuals. */
+    final int[] colorNode;
+
+    /**
+     * Retorna la geometria compartida per a una mida de tauler, creant-la el primer cop.
+     *
+     * @param midaTauler Mida del tauler.
+     * @return La geometria de la mida indicada.
+     */
+    public static HexGeometry of(int midaTauler) {
+        HexGeometry g = CACHE.get(midaTauler);
+        if (g == null) {
+            g = CACHE.computeIfAbsent(midaTauler, HexGeometry::new);
+        }
+        return g;
+    }
+
+    private HexGeometry(int midaTauler) {
+        this.midaTauler = midaTauler;
+        this.numCaselles = midaTauler * midaTauler;
+        this.numNodes = numCaselles + 4;
+
+        // Veïns: primer es compten, després s'omplen
+        int[] inici = new int[numNodes + 1];
+        int[] tmp = new int[numNodes * 8];
+        int[][] llistaVora = new int[4][midaTauler];
+        int[] midaVora = new int[4];
+        int n = 0;
+        for (int x = 0; x < midaTauler; x++) {
+            for (int y = 0; y < midaTauler; y++) {
+                int casella = index(x, y);
+                inici[casella] = n;
+                for (int[] d : VECINOS) {
+                    int v = indexSegur(x + d[0], y + d[1]);
+                    if (v >= 0) tmp[n++] = v;
+                }
+                if (x == 0) { tmp[n++] = numCaselles + VORA_ESQUERRA; llistaVora[VORA_ESQUERRA][midaVora[VORA_ESQUERRA]++] = casella; }
+                if (x == midaTauler - 1) { tmp[n++] = numCaselles + VORA_DRETA; llistaVora[VORA_DRETA][midaVora[VORA_DRETA]++] = casella; }
+                if (y == 0) { tmp[n++] = numCaselles + VORA_SUPERIOR; llistaVora[VORA_SUPERIOR][midaVora[VORA_SUPERIOR]++] = casella; }
+                if (y == midaTauler - 1) { tmp[n++] = numCaselles + VORA_INFERIOR; llistaVora[VORA_INFERIOR][midaVora[VORA_INFERIOR]++] = casella; }
+            }
+        }
+        for (int v = 0; v < 4; v++) {
+            inici[numCaselles + v] = n;
+            for (int i = 0; i < midaVora[v]; i++) tmp[n++] = llistaVora[v][i];
+        }
+        inici[numNodes] = n;
+        this.iniciVeins = inici;
+        this.veins = Arrays.copyOf(tmp, n);
+
+        // Ponts (només entre caselles reals)
+        int[] iniciP = new int[numCaselles + 1];
+        int[] desti = new int[numCaselles * 6];
+        int[] inter1 = new int[numCaselles * 6];
+        int[] inter2 = new int[numCaselles * 6];
+        n = 0;
+        for (int x = 0; x < midaTauler; x++) {
+            for (int y = 0; y < midaTauler; y++) {
+                iniciP[index(x, y)] = n;
+                for (int[] dir : DIRECCIONES) {
+                    int i1 = indexSegur(x + dir[0], y + dir[1]);
+                    int i2 = indexSegur(x + dir[2], y + dir[3]);
+                    int f = indexSegur(x + dir[4], y + dir[5]);
+                    if (i1 >= 0 && i2 >= 0 && f >= 0) {
+                        desti[n] = f;
+                        inter1[n] = i1;
+                        inter2[n] = i2;
+                        n++;
+                    }
+                }
+            }
+        }
+        iniciP[numCaselles] = n;
+        this.iniciPonts = iniciP;
+        this.pontDesti = Arrays.copyOf(desti, n);
+        this.pontInter1 = Arrays.copyOf(inter1, n);
+        this.pontInter2 = Arrays.copyOf(inter2, n);
+
+        this.distanciaCentre = new int[numCaselles];
+        for (int casella = 0; casella < numCaselles; casella++) {
+            distanciaCentre[casella] = Math.abs(x(casella) - midaTauler / 2) + Math.abs(y(casella) - midaTauler / 2);
+        }
+
+        this.colorNode = new int[numNodes];
+        colorNode[numCaselles + VORA_ESQUERRA] = 1;
+        colorNode[numCaselles + VORA_DRETA] = 1;
+        colorNode[numCaselles + VORA_SUPERIOR] = -1;
+        colorNode[numCaselles + VORA_INFERIOR] = -1;
+    }
+
+    private int indexSegur(int x, int y) {
+        if (x < 0 || x >= midaTauler || y < 0 || y >= midaTauler) return -1;
+        return index(x, y);
+    }
+
+    /**
+     * @return Mida del tauler.
+     */
+    public int getMidaTauler() {
+        return midaTauler;
+    }
+
+    /**
+     * @return Índex de la casella (x, y).
+     */
+    public int index(int x, int y) {
+        return x * midaTauler + y;
+    }
+
+    /**
+     * @return Coordenada x d'una casella.
+     */
+    public int x(int casella) {
+        return casella / midaTauler;
+    }
+
+    /**
+     * @return Coordenada y d'una casella.
+     */
+    public int y(int casella) {
+        return casella % midaTauler;
+    }
+
+    /**
+     * @return El punt (x, y) d'una casella.
+     */
+    public Point punt(int casella) {
+        return new Point(casella / midaTauler, casella % midaTauler);
+    }
+
+    /**
+     * @param moviments Llista de moviments.
+     * @return Els índexs de casella dels moviments, en el mateix ordre.
+     */
+    public int[] caselles(List<MoveNode> moviments) {
+        int[] caselles = new int[moviments.size()];
+        for (int i = 0; i < caselles.length; i++) {
+            Point punt = moviments.get(i).getPoint();
+            caselles[i] = punt.x * midaTauler + punt.y;
+        }
+        return caselles;
+    }
+
+    /**
+     * @param caselles Índexs de casella.
+     * @return Els moviments de les caselles, en el mateix ordre.
+     */
+    public List<MoveNode> moviments(int[] caselles) {
+        List<MoveNode> moviments = new ArrayList<>(caselles.length);
+        for (int casella : caselles) {
+            moviments.add(new MoveNode(punt(casella)));
+        }
+        return moviments;
+    }
+
+    /**
+     * @param color Color del jugador (1 o -1).
+     * @return Node virtual de la vora d'on surten els camins del color.
+     */
+    public int nodeInici(int color) {
+        return numCaselles + ((color == 1) ? VORA_ESQUERRA : VORA_SUPERIOR);
+    }
+
+    /**
+     * @param color Color del jugador (1 o -1).
+     * @return Node virtual de la vora on arriben els camins del color.
+     */
+    public int nodeFinal(int color) {
+        return numCaselles + ((color == 1) ? VORA_DRETA : VORA_INFERIOR);
+    }
+
+    /**
+     * @param casella Índex d'una casella real.
+     * @param color Color del jugador (1 o -1).
+     * @return Si la casella toca la vora d'inici del color.
+     */
+    public boolean esInici(int casella, int color) {
+        return (color == 1) ? x(casella) == 0 : y(casella) == 0;
+    }
+}
@@ -0,0 +1,266 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import edu.upc.epsevg.prop.hex.PlayerType;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Posició mutable per a la cerca. En lloc de copiar el tauler a cada node, la cerca juga els
+ * moviments amb {@link #play(Point)} i els desfà amb {@link #undo()} sobre una única posició.
+ * El hash Zobrist s'actualitza a cada jugada, i la victòria es detecta amb una unió-cerca de
+ * les pedres i les vores, sense compressió de camins perquè cada unió es pugui desfer.
+ *
+ * Els avaluadors la llegeixen com a {@link HexBoard}, igual que l'estat de la partida. No és un
+ * {@link HexGameStatus}: per passar-la a una altra posició cal fer servir {@link #carregar(HexBoard)}.
+ *
+ * No és segura entre fils: cal una instància per fil de cerca.
+ */
+public class HexPosition implements HexBoard {
+    private final HexGeometry geometria;
+    private final int mida;
+    private final byte[] caselles;
+    private int colorMou;
+    private int buides;
+    private long hash;
+    /** Color que ha connectat les seves vores (0 si no n'hi ha cap) i jugada on ho ha fet. */
+    private int guanyador;
+    private int jugadaGuanyadora;
+
+    /** Caselles jugades des de l'última càrrega, en ordre. */
+    private final int[] jugades;
+    private int nJugades;
+
+    /** Unió-cerca per mida sobre les caselles i les quatre vores virtuals. */
+    private final int[] pare;
+    private final int[] midaArbre;
+    /** Arrels que cada unió ha penjat d'una altra, i on comença la pila de cada jugada. */
+    private final int[] unions;
+    private int nUnions;
+    private final int[] iniciUnions;
+
+    private HexPosition(int mida) {
+        this.geometria = HexGeometry.of(mida);
+        this.mida = mida;
+        this.caselles = new byte[geometria.numCaselles];
+        this.jugades = new int[geometria.numCaselles];
+        this.iniciUnions = new int[geometria.numCaselles + 1];
+        this.pare = new int[geometria.numNodes];
+        this.midaArbre = new int[geometria.numNodes];
+        // Cada pedra uneix com a molt els seus sis veïns i dues vores
+        this.unions = new int[geometria.numCaselles * 8];
+    }
+
+    /**
+     * Crea una posició amb l'estat d'una altra.
+     *
+     * @param estat Estat de partida.
+     */
+    public HexPosition(HexGameStatus estat) {
+        this(HexBoard.of(estat));
+    }
+
+    /**
+     * Crea una posició amb l'estat d'un altre tauler.
+     *
+     * @param estat Tauler de partida.
+     */
+    public HexPosition(HexBoard estat) {
+        this(estat.getSize());
+        carregar(estat);
+    }
+
+    /**
+     * Copia l'estat d'un altre tauler i en buida l'historial de jugades.
+     *
+     * @param estat Tauler de partida, de la mateixa mida.
+     */
+    public void carregar(HexBoard estat) {
+        for (int x = 0; x < mida; x++) {
+            for (int y = 0; y < mida; y++) {
+                caselles[x * mida + y] = (byte) estat.getPos(x, y);
+            }
+        }
+        colorMou = estat.getCurrentPlayerColor();
+        buides = 0;
+        for (byte color : caselles) {
+            if (color == 0) buides++;
+        }
+        hash = ZobristHashing.calculateHash(this);
+        nJugades = 0;
+        reiniciarUnions();
+        for (int c = 0; c < geometria.numCaselles; c++) {
+            if (caselles[c] != 0) unir(c, caselles[c]);
+        }
+        nUnions = 0;
+        guanyador = connectat(1) ? 1 : connectat(-1) ? -1 : 0;
+        jugadaGuanyadora = 0;
+    }
+
+    /**
+     * Juga una pedra del color que mou.
+     *
+     * @param punt Casella buida.
+     */
+    public void play(Point punt) {
+        play(punt.x * mida + punt.y);
+    }
+
+    /**
+     * Juga una pedra del color que mou.
+     *
+     * @param casella Índex (x * mida + y) d'una casella buida.
+     */
+    public void play(int casella) {
+        int color = colorMou;
+        caselles[casella] = (byte) color;
+        buides--;
+        hash = ZobristHashing.updateHash(hash, casella / mida, casella % mida, 0, color);
+        iniciUnions[nJugades] = nUnions;
+        jugades[nJugades++] = casella;
+        unir(casella, color);
+        if (guanyador == 0 && connectat(color)) {
+            guanyador = color;
+            jugadaGuanyadora = nJugades;
+        }
+        colorMou = -color;
+    }
+
+    /**
+     * Desfà l'última jugada feta des de la càrrega.
+     */
+    public void undo() {
+        if (nJugades == 0) {
+            throw new IllegalStateException("No hi ha cap jugada per desfer");
+        }
+        if (jugadaGuanyadora == nJugades) {
+            guanyador = 0;
+            jugadaGuanyadora = 0;
+        }
+        int casella = jugades[--nJugades];
+        while (nUnions > iniciUnions[nJugades]) {
+            int fill = unions[--nUnions];
+            midaArbre[pare[fill]] -= midaArbre[fill];
+            pare[fill] = fill;
+        }
+        colorMou = -colorMou;
+        hash = ZobristHashing.updateHash(hash, casella / mida, casella % mida, 0, colorMou);
+        caselles[casella] = 0;
+        buides++;
+    }
+
+    /**
+     * @return El hash Zobrist de la posició.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return Nombre de jugades que es poden desfer.
+     */
+    public int getJugades() {
+        return nJugades;
+    }
+
+    @Override
+    public int getSize() {
+        return mida;
+    }
+
+    @Override
+    public int getPos(int x, int y) {
+        return caselles[x * mida + y];
+    }
+
+    /**
+     * @return Si algun color ja ha connectat les seves vores.
+     */
+    public boolean isGameOver() {
+        return guanyador != 0;
+    }
+
+    /**
+     * @return El jugador que ha connectat les seves vores, o null si encara no n'hi ha cap.
+     */
+    public PlayerType GetWinner() {
+        return (guanyador == 0) ? null : (guanyador == 1) ? PlayerType.PLAYER1 : PlayerType.PLAYER2;
+    }
+
+    @Override
+    public int getCurrentPlayerColor() {
+        return colorMou;
+    }
+
+    /**
+     * @param casella Índex (x * mida + y) d'una casella.
+     * @return El color de la casella (0 si és buida).
+     */
+    public int getCasella(int casella) {
+        return caselles[casella];
+    }
+
+    /**
+     * @return Els índexs de les caselles buides, en el mateix ordre que {@link #getMoves()}.
+     */
+    public int[] getCasellesBuides() {
+        int[] resultat = new int[buides];
+        int n = 0;
+        for (int c = 0; c < geometria.numCaselles; c++) {
+            if (caselles[c] == 0) resultat[n++] = c;
+        }
+        return resultat;
+    }
+
+    /**
+     * @return Les caselles buides en el mateix ordre que {@link HexGameStatus#getMoves()}.
+     */
+    public List<MoveNode> getMoves() {
+        List<MoveNode> moviments = new ArrayList<>(buides);
+        for (int c = 0; c < geometria.numCaselles; c++) {
+            if (caselles[c] == 0) moviments.add(new MoveNode(new Point(c / mida, c % mida)));
+        }
+        return moviments;
+    }
+
+    private void reiniciarUnions() {
+        for (int i = 0; i < geometria.numNodes; i++) {
+            pare[i] = i;
+            midaArbre[i] = 1;
+        }
+        nUnions = 0;
+    }
+
+    /**
+     * Uneix una pedra amb els veïns del seu color, vores incloses.
+     */
+    private void unir(int casella, int color) {
+        for (int k = geometria.iniciVeins[casella]; k < geometria.iniciVeins[casella + 1]; k++) {
+            int vei = geometria.veins[k];
+            int colorVei = (vei < geometria.numCaselles) ? caselles[vei] : geometria.colorNode[vei];
+            if (colorVei != color) continue;
+            int a = arrel(casella);
+            int b = arrel(vei);
+            if (a == b) continue;
+            if (midaArbre[a] < midaArbre[b]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            pare[b] = a;
+            midaArbre[a] += midaArbre[b];
+            unions[nUnions++] = b;
+        }
+    }
+
+    private int arrel(int node) {
+        while (pare[node] != node) node = pare[node];
+        return node;
+    }
+
+    private boolean connectat(int color) {
+        return arrel(geometria.nodeInici(color)) == arrel(geometria.nodeFinal(color));
+    }
+}
@@ -0,0 +1,553 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.awt.Point;
+import java.util.Arrays;
+
+/**
+ * Avaluador incremental de camins mínims per a la cerca.
+ *
+ * Manté els dos mapes de distàncies (un per color) amb el mateix graf que {@link Dijkstra}
+ * i els repara quan es col·loca una pedra, en lloc de recalcular-los sencers a cada fulla.
+ * Una pedra de color c només pot fer baixar les distàncies de c (propagació de millores des
+ * de la casella) i pujar les de -c (es reinicialitza la regió que depenia de la casella i es
+ * torna a calcular des de la seva frontera). Cada canvi queda apuntat en una pila de desfer,
+ * de manera que la cerca fa {@link #push(Point, int)} en baixar i {@link #pop()} en tornar.
+ *
+ * La reconstrucció del color contrari, que és la part cara, s'ajorna fins que algú necessita
+ * el seu mapa: si la pedra es desfà abans (el cas de les fulles), no es fa mai. Mentrestant,
+ * {@link #metriquesFitades(int, Dijkstra, Dijkstra)} dona les mètriques exactes quan la regió
+ * afectada no toca les caselles finals de distància mínima, o unes fites en cas contrari.
+ *
+ * No és segur entre fils: cal una instància per fil de cerca.
+ */
+public class IncrementalDijkstra {
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final int midaTauler;
+    private final int numCaselles;
+
+    // Geometria compartida del tauler (veïns en CSR, les vores virtuals s'ignoren)
+    private final int[] iniciVeins;
+    private final int[] vecinos;
+    private final int[] iniciPonts;
+    private final int[] pontDesti;
+    private final int[] pontInter1;
+    private final int[] pontInter2;
+
+    // Estat: color de cada casella i distàncies [0] per al color 1 i [1] per al color -1
+    private final int[] tauler;
+    private final int[][] distancias;
+
+    // Pila de desfer: cada entrada guarda (color, casella) i el valor anterior de la distància
+    private int[] pilaClau;
+    private int[] pilaValor;
+    private int midaPila;
+    private final int[] marques;
+    private final int[] casellesJugades;
+    private int profunditat;
+
+    // Vectors de treball de la reparació
+    private final int[] cua;
+    private final int[] afectades;
+    private final int[] marcaAfectada;
+    private int marcaActual;
+    private final int[] llavors;
+    private final int[] candidats;
+    private final int[] ordenades;
+    private final int[] comptador;
+    private final boolean[] expandida;
+    private final HexBoard.Adaptador adaptador = new HexBoard.Adaptador();
+
+    // Reconstrucció ajornada de l'última pedra: color afectat i mida de la regió a {@code afectades}
+    private boolean pendent;
+    private int colorPendent;
+    private int nPendents;
+
+    /**
+     * Crea un avaluador incremental per a una mida de tauler.
+     *
+     * @param midaTauler Mida del tauler.
+     */
+    public IncrementalDijkstra(int midaTauler) {
+        this.midaTauler = midaTauler;
+        this.numCaselles = midaTauler * midaTauler;
+        HexGeometry g = HexGeometry.of(midaTauler);
+        this.iniciVeins = g.iniciVeins;
+        this.vecinos = g.veins;
+        this.iniciPonts = g.iniciPonts;
+        this.pontDesti = g.pontDesti;
+        this.pontInter1 = g.pontInter1;
+        this.pontInter2 = g.pontInter2;
+        this.tauler = new int[numCaselles];
+        this.distancias = new int[2][numCaselles];
+        this.pilaClau = new int[numCaselles * 16];
+        this.pilaValor = new int[numCaselles * 16];
+        this.marques = new int[numCaselles + 1];
+        this.casellesJugades = new int[numCaselles + 1];
+        this.cua = new int[Integer.highestOneBit(2 * numCaselles + midaTauler) << 1];
+        this.afectades = new int[numCaselles];
+        this.marcaAfectada = new int[numCaselles];
+        this.llavors = new int[numCaselles];
+        this.candidats = new int[numCaselles];
+        this.ordenades = new int[numCaselles];
+        this.comptador = new int[numCaselles + 2];
+        this.expandida = new boolean[numCaselles];
+    }
+
+    /**
+     * Carrega un estat del tauler i calcula des de zero els dos mapes de distàncies.
+     * Buida la pila de desfer.
+     *
+     * @param estat Estat del tauler a carregar.
+     */
+    public void reiniciar(HexGameStatus estat) {
+        reiniciar(adaptador.llegir(estat));
+    }
+
+    /**
+     * Com {@link #reiniciar(HexGameStatus)}, a partir de qualsevol tauler (l'estat de la partida o una posició de la cerca).
+     */
+    public void reiniciar(HexBoard estat) {
+        for (int x = 0; x < midaTauler; x++) {
+            for (int y = 0; y < midaTauler; y++) {
+                tauler[x * midaTauler + y] = estat.getPos(x, y);
+            }
+        }
+        midaPila = 0;
+        profunditat = 0;
+        pendent = false;
+        for (int c = 0; c < 2; c++) {
+            int color = (c == 0) ? 1 : -1;
+            int[] dist = distancias[c];
+            Arrays.fill(dist, INF);
+            int nLlavors = 0;
+            for (int i = 0; i < numCaselles; i++) {
+                int valor = valorInicial(i, color);
+                if (valor != INF) {
+                    dist[i] = valor;
+                    llavors[nLlavors++] = i;
+                }
+            }
+            expandir(color, nLlavors, false);
+        }
+    }
+
+    /**
+     * Col·loca una pedra i repara els dos mapes de distàncies.
+     *
+     * @param punt Casella buida on es col·loca la pedra.
+     * @param color Color de la pedra (1 o -1).
+     */
+    public void push(Point punt, int color) {
+        push(punt.x * midaTauler + punt.y, color);
+    }
+
+    /**
+     * Col·loca una pedra i repara els dos mapes de distàncies (la reconstrucció del contrari
+     * s'ajorna fins que calgui).
+     *
+     * @param casella Índex (x * mida + y) de la casella buida.
+     * @param color Color de la pedra (1 o -1).
+     */
+    public void push(int casella, int color) {
+        sincronitzar();
+        marques[profunditat] = midaPila;
+        casellesJugades[profunditat] = casella;
+        profunditat++;
+        // L'augment es calcula sobre el graf antic, abans de modificar el tauler
+        int nAfectades = marcarAfectades(casella, -color);
+        tauler[casella] = color;
+        millorar(casella, color);
+        pendent = nAfectades > 0;
+        colorPendent = -color;
+        nPendents = nAfectades;
+    }
+
+    /**
+     * Desfà l'última pedra col·locada amb {@link #push(int, int)}.
+     */
+    public void pop() {
+        // Si la reconstrucció encara no s'havia fet, no hi ha res a desfer del color contrari
+        pendent = false;
+        profunditat--;
+        int marca = marques[profunditat];
+        while (midaPila > marca) {
+            midaPila--;
+            int clau = pilaClau[midaPila];
+            distancias[clau & 1][clau >>> 1] = pilaValor[midaPila];
+        }
+        tauler[casellesJugades[profunditat]] = 0;
+    }
+
+    /**
+     * @return Mida del tauler per a la qual s'ha creat l'avaluador.
+     */
+    public int getMidaTauler() {
+        return midaTauler;
+    }
+
+    /**
+     * @return Nombre de pedres apilades des de l'últim {@link #reiniciar(HexGameStatus)}.
+     */
+    public int getProfunditat() {
+        return profunditat;
+    }
+
+    /**
+     * Omple un contenidor amb les mateixes mètriques que {@link Dijkstra#calcular(HexGameStatus, int)}
+     * per a l'estat actual.
+     *
+     * @param color Color del jugador des del qual s'avalua (1 o -1).
+     * @param resultat Contenidor on es deixen les mètriques.
+     * @return El mateix contenidor.
+     */
+    public Dijkstra metriques(int color, Dijkstra resultat) {
+        sincronitzar();
+        int[] propies = distancias[color == 1 ? 0 : 1];
+        int[] enemigues = distancias[color == 1 ? 1 : 0];
+        resultat.shortestPath = minimFinal(propies, color);
+        resultat.enemyShortestPath = minimFinal(enemigues, -color);
+        resultat.viablePathsCount = viablesFinal(propies, color, resultat.shortestPath);
+        resultat.viableEnemyPathsCount = viablesFinal(enemigues, -color, resultat.enemyShortestPath);
+        return resultat;
+    }
+
+    /**
+     * Dona les mètriques de l'estat actual sense fer la reconstrucció ajornada, si pot.
+     *
+     * Les distàncies del color afectat per l'última pedra només poden pujar, i només a la regió
+     * marcada. Si cap casella final de distància mínima hi és, les mètriques són exactes. Si n'hi
+     * ha alguna fora, la distància no canvia i els camins viables queden entre les caselles no
+     * afectades i les de l'estat anterior. Si hi són totes, la distància anterior és una cota
+     * inferior (la superior és infinit) i els camins viables poden ser qualsevol valor entre 1 i
+     * la mida del tauler.
+     *
+     * @param color Color del jugador des del qual s'avalua (1 o -1).
+     * @param minim Contenidor per a les distàncies i els camins viables mínims.
+     * @param maxim Contenidor per a les distàncies (Integer.MAX_VALUE si no estan fitades) i els
+     *              camins viables màxims.
+     * @return Si les mètriques són exactes (llavors {@code minim} i {@code maxim} coincideixen).
+     */
+    public boolean metriquesFitades(int color, Dijkstra minim, Dijkstra maxim) {
+        int[] propies = distancias[color == 1 ? 0 : 1];
+        int[] enemigues = distancias[color == 1 ? 1 : 0];
+        minim.shortestPath = maxim.shortestPath = minimFinal(propies, color);
+        minim.enemyShortestPath = maxim.enemyShortestPath = minimFinal(enemigues, -color);
+        minim.viablePathsCount = maxim.viablePathsCount = viablesFinal(propies, color, minim.shortestPath);
+        minim.viableEnemyPathsCount = maxim.viableEnemyPathsCount = viablesFinal(enemigues, -color, minim.enemyShortestPath);
+        if (!pendent) return true;
+
+        int[] dist = distancias[colorPendent == 1 ? 0 : 1];
+        int minimAnterior = minimFinal(dist, colorPendent);
+        int noAfectades = 0;
+        int afectadesMinim = 0;
+        for (int i = 0; i < midaTauler; i++) {
+            int casella = indexFinal(colorPendent, i);
+            if (dist[casella] != minimAnterior) continue;
+            if (marcaAfectada[casella] == marcaActual) afectadesMinim++; else noAfectades++;
+        }
+        if (afectadesMinim == 0) return true;
+
+        int distMin = minimAnterior;
+        int distMax = (noAfectades > 0) ? minimAnterior : INF;
+        int viablesMin = (noAfectades > 0) ? noAfectades : 1;
+        int viablesMax = (noAfectades > 0) ? noAfectades + afectadesMinim : midaTauler;
+        if (colorPendent == color) {
+            minim.shortestPath = distMin;
+            maxim.shortestPath = distMax;
+            minim.viablePathsCount = viablesMin;
+            maxim.viablePathsCount = viablesMax;
+        } else {
+            minim.enemyShortestPath = distMin;
+            maxim.enemyShortestPath = distMax;
+            minim.viableEnemyPathsCount = viablesMin;
+            maxim.viableEnemyPathsCount = viablesMax;
+        }
+        return false;
+    }
+
+    /**
+     * Fa la reconstrucció ajornada de l'última pedra, si n'hi ha.
+     */
+    private void sincronitzar() {
+        if (!pendent) return;
+        pendent = false;
+        reconstruir(colorPendent, nPendents);
+    }
+
+    private int indexFinal(int color, int i) {
+        return (color == 1) ? (midaTauler - 1) * midaTauler + i : i * midaTauler + (midaTauler - 1);
+    }
+
+    private int minimFinal(int[] dist, int color) {
+        int minim = INF;
+        for (int i = 0; i < midaTauler; i++) {
+            minim = Math.min(minim, dist[indexFinal(color, i)]);
+        }
+        return minim;
+    }
+
+    private int viablesFinal(int[] dist, int color, int minim) {
+        int viables = 0;
+        for (int i = 0; i < midaTauler; i++) {
+            if (dist[indexFinal(color, i)] <= minim) viables++;
+        }
+        return viables;
+    }
+
+    /**
+     * @return Valor d'una casella de la vora inicial del color (0 pròpia, 1 buida), o INF.
+     */
+    private int valorInicial(int casella, int color) {
+        int x = casella / midaTauler;
+        int y = casella % midaTauler;
+        boolean inici = (color == 1) ? x == 0 : y == 0;
+        if (!inici || tauler[casella] == -color) return INF;
+        return (tauler[casella] == color) ? 0 : 1;
+    }
+
+    /**
+     * Recalcula la distància d'una casella a partir dels seus predecessors.
+     */
+    private int valor(int casella, int color, int[] dist) {
+        int colorCasella = tauler[casella];
+        if (colorCasella == -color) return INF;
+        int coste = (colorCasella == color) ? 0 : 1;
+        int millor = valorInicial(casella, color);
+        for (int k = iniciVeins[casella]; k < iniciVeins[casella + 1]; k++) {
+            int v = vecinos[k];
+            if (v < numCaselles && dist[v] != INF) {
+                millor = Math.min(millor, dist[v] + coste);
+            }
+        }
+        if (colorCasella == color) {
+            // Els ponts són simètrics: l'origen d'un pont cap a aquesta casella és el seu destí
+            for (int k = iniciPonts[casella]; k < iniciPonts[casella + 1]; k++) {
+                int origen = pontDesti[k];
+                if (dist[origen] != INF && tauler[pontInter1[k]] == 0 && tauler[pontInter2[k]] == 0) {
+                    millor = Math.min(millor, dist[origen]);
+                }
+            }
+        }
+        return millor;
+    }
+
+    private void apuntar(int c, int casella, int valorAnterior) {
+        if (midaPila == pilaClau.length) {
+            pilaClau = Arrays.copyOf(pilaClau, pilaClau.length * 2);
+            pilaValor = Arrays.copyOf(pilaValor, pilaValor.length * 2);
+        }
+        pilaClau[midaPila] = (casella << 1) | c;
+        pilaValor[midaPila] = valorAnterior;
+        midaPila++;
+    }
+
+    /**
+     * La casella s'ha convertit en pedra pròpia del color: la seva distància pot baixar
+     * i la millora es propaga amb un 0-1 BFS que només visita les caselles que milloren.
+     */
+    private void millorar(int casella, int color) {
+        int c = (color == 1) ? 0 : 1;
+        int[] dist = distancias[c];
+        int nou = valor(casella, color, dist);
+        if (nou >= dist[casella]) return;
+        apuntar(c, casella, dist[casella]);
+        dist[casella] = nou;
+
+        int mascara = cua.length - 1;
+        int cap = 0;
+        int cola = 1;
+        cua[0] = casella;
+        while (cap != cola) {
+            int actual = cua[cap];
+            cap = (cap + 1) & mascara;
+            int distActual = dist[actual];
+            for (int k = iniciVeins[actual]; k < iniciVeins[actual + 1]; k++) {
+                int v = vecinos[k];
+                if (v >= numCaselles || tauler[v] == -color) continue;
+                int coste = (tauler[v] == color) ? 0 : 1;
+                if (distActual + coste < dist[v]) {
+                    apuntar(c, v, dist[v]);
+                    dist[v] = distActual + coste;
+                    if (coste == 0) {
+                        cap = (cap - 1) & mascara;
+                        cua[cap] = v;
+                    } else {
+                        cua[cola] = v;
+                        cola = (cola + 1) & mascara;
+                    }
+                }
+            }
+            for (int k = iniciPonts[actual]; k < iniciPonts[actual + 1]; k++) {
+                int desti = pontDesti[k];
+                if (tauler[desti] == color && tauler[pontInter1[k]] == 0
+                        && tauler[pontInter2[k]] == 0 && distActual < dist[desti]) {
+                    apuntar(c, desti, dist[desti]);
+                    dist[desti] = distActual;
+                    cap = (cap - 1) & mascara;
+                    cua[cap] = desti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marca les caselles del color que poden empitjorar quan el contrari ocupa la casella:
+     * la pròpia casella, els destins dels ponts que la tenien com a intermèdia i tot el que
+     * n'és accessible per arestes ajustades (d(u) + cost = d(v)) del graf antic.
+     *
+     * @return Nombre de caselles afectades, deixades a {@code afectades}.
+     */
+    private int marcarAfectades(int casella, int color) {
+        int c = (color == 1) ? 0 : 1;
+        int[] dist = distancias[c];
+        marcaActual++;
+        int n = 0;
+        if (dist[casella] == INF) return 0;
+        afectades[n++] = casella;
+        marcaAfectada[casella] = marcaActual;
+
+        // Ponts del color que passaven per la casella
+        for (int j = iniciVeins[casella]; j < iniciVeins[casella + 1]; j++) {
+            int u = vecinos[j];
+            if (u >= numCaselles || dist[u] == INF) continue;
+            for (int k = iniciPonts[u]; k < iniciPonts[u + 1]; k++) {
+                int desti = pontDesti[k];
+                if (pontInter1[k] != casella && pontInter2[k] != casella) continue;
+                if (tauler[desti] == color && tauler[pontInter1[k]] == 0 && tauler[pontInter2[k]] == 0
+                        && dist[u] == dist[desti] && marcaAfectada[desti] != marcaActual) {
+                    marcaAfectada[desti] = marcaActual;
+                    afectades[n++] = desti;
+                }
+            }
+        }
+
+        // Tancament per arestes ajustades
+        for (int i = 0; i < n; i++) {
+            int actual = afectades[i];
+            int distActual = dist[actual];
+            for (int k = iniciVeins[actual]; k < iniciVeins[actual + 1]; k++) {
+                int v = vecinos[k];
+                if (v >= numCaselles || tauler[v] == -color || marcaAfectada[v] == marcaActual) continue;
+                int coste = (tauler[v] == color) ? 0 : 1;
+                if (distActual + coste == dist[v]) {
+                    marcaAfectada[v] = marcaActual;
+                    afectades[n++] = v;
+                }
+            }
+            for (int k = iniciPonts[actual]; k < iniciPonts[actual + 1]; k++) {
+                int desti = pontDesti[k];
+                if (tauler[desti] == color && marcaAfectada[desti] != marcaActual
+                        && tauler[pontInter1[k]] == 0 && tauler[pontInter2[k]] == 0
+                        && distActual == dist[desti]) {
+                    marcaAfectada[desti] = marcaActual;
+                    afectades[n++] = desti;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Torna a calcular les distàncies de les caselles afectades, ja amb el tauler nou,
+     * partint dels valors de la seva frontera (que no canvien).
+     */
+    private void reconstruir(int color, int nAfectades) {
+        if (nAfectades == 0) return;
+        int c = (color == 1) ? 0 : 1;
+        int[] dist = distancias[c];
+        for (int i = 0; i < nAfectades; i++) {
+            int casella = afectades[i];
+            apuntar(c, casella, dist[casella]);
+            dist[casella] = INF;
+        }
+        int nLlavors = 0;
+        for (int i = 0; i < nAfectades; i++) {
+            int casella = afectades[i];
+            int nou = valor(casella, color, dist);
+            if (nou != INF) {
+                // No s'escriu encara perquè no influeixi en el valor de la resta de la regió
+                candidats[nLlavors] = nou;
+                llavors[nLlavors++] = casella;
+            }
+        }
+        for (int i = 0; i < nLlavors; i++) {
+            dist[llavors[i]] = candidats[i];
+        }
+        expandir(color, nLlavors, true);
+    }
+
+    /**
+     * Dijkstra des de diverses llavors amb distàncies diferents: s'ordenen per comptatge i es
+     * fusionen amb la cua doble del 0-1 BFS, de manera que cada casella s'expandeix una sola vegada.
+     *
+     * @param color Color del mapa de distàncies.
+     * @param nLlavors Nombre de llavors a {@code llavors}, ja amb la distància assignada.
+     * @param apuntarCanvis Si cal apuntar els canvis a la pila de desfer.
+     */
+    private void expandir(int color, int nLlavors, boolean apuntarCanvis) {
+        int c = (color == 1) ? 0 : 1;
+        int[] dist = distancias[c];
+
+        // Ordenació per comptatge de les llavors segons la seva distància (sempre < numCaselles + 1)
+        int maxim = 0;
+        for (int i = 0; i < nLlavors; i++) maxim = Math.max(maxim, dist[llavors[i]]);
+        Arrays.fill(comptador, 0, maxim + 2, 0);
+        for (int i = 0; i < nLlavors; i++) comptador[dist[llavors[i]] + 1]++;
+        for (int d = 1; d <= maxim + 1; d++) comptador[d] += comptador[d - 1];
+        for (int i = 0; i < nLlavors; i++) {
+            int casella = llavors[i];
+            ordenades[comptador[dist[casella]]++] = casella;
+        }
+        for (int i = 0; i < nLlavors; i++) {
+            expandida[ordenades[i]] = false;
+        }
+
+        int mascara = cua.length - 1;
+        int cap = 0;
+        int cola = 0;
+        int seguent = 0;
+        while (cap != cola || seguent < nLlavors) {
+            int actual;
+            if (cap == cola || (seguent < nLlavors && dist[ordenades[seguent]] <= dist[cua[cap]])) {
+                actual = ordenades[seguent++];
+            } else {
+                actual = cua[cap];
+                cap = (cap + 1) & mascara;
+            }
+            if (expandida[actual]) continue;
+            expandida[actual] = true;
+
+            int distActual = dist[actual];
+            for (int k = iniciVeins[actual]; k < iniciVeins[actual + 1]; k++) {
+                int v = vecinos[k];
+                if (v >= numCaselles || tauler[v] == -color) continue;
+                int coste = (tauler[v] == color) ? 0 : 1;
+                if (distActual + coste < dist[v]) {
+                    if (apuntarCanvis) apuntar(c, v, dist[v]);
+                    dist[v] = distActual + coste;
+                    expandida[v] = false;
+                    if (coste == 0) {
+                        cap = (cap - 1) & mascara;
+                        cua[cap] = v;
+                    } else {
+                        cua[cola] = v;
+                        cola = (cola + 1) & mascara;
+                    }
+                }
+            }
+            for (int k = iniciPonts[actual]; k < iniciPonts[actual + 1]; k++) {
+                int desti = pontDesti[k];
+                if (tauler[desti] == color && tauler[pontInter1[k]] == 0
+                        && tauler[pontInter2[k]] == 0 && distActual < dist[desti]) {
+                    if (apuntarCanvis) apuntar(c, desti, dist[desti]);
+                    dist[desti] = distActual;
+                    expandida[desti] = false;
+                    cap = (cap - 1) & mascara;
+                    cua[cap] = desti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Anàlisi de caselles inferiors amb patrons locals sobre l'anell dels sis veïns de cada casella.
+ *
+ * Una casella buida és morta si el seu anell conté quatre veïns consecutius d'un mateix color, o
+ * tres d'un color seguits de dos de l'altre: cap dels dos colors hi guanya res, perquè tots els
+ * veïns que podria unir ja es toquen entre ells. Les vores compten com a pedres del seu color.
+ * Dues caselles buides veïnes estan capturades per un color si cadascuna queda morta quan l'altra
+ * és d'aquest color: si el contrari en juga una, n'hi ha prou de respondre a l'altra.
+ *
+ * Les caselles mortes i capturades s'omplen (les mortes amb qualsevol color, les capturades amb
+ * el del color que les captura) fins que no n'apareixen més. Cap d'elles no és mai millor que
+ * una altra jugada: jugar a una casella morta o a una de pròpia capturada equival a passar, i
+ * ficar-se en una de capturada pel contrari, a passar després de la seva resposta.
+ *
+ * No és segura entre fils: cal una instància per fil de cerca.
+ */
+public class InferiorCells {
+    /** La casella no és inferior. */
+    public static final byte NORMAL = 0;
+    /** La casella és morta: no serveix a cap dels dos colors. */
+    public static final byte MORTA = 1;
+    /** La casella forma part d'una parella capturada. */
+    public static final byte CAPTURADA = 2;
+
+    /**
+     * Desplaçaments dels sis veïns en ordre circular: dos veïns consecutius també són veïns
+     * entre ells.
+     */
+    private static final int[][] ANELL = {
+        {1, 0}, {1, -1}, {0, -1}, {-1, 0}, {-1, 1}, {0, 1}
+    };
+
+    // Codis dels veïns de fora del tauler
+    private static final int VORA_X = -1;
+    private static final int VORA_Y = -2;
+    private static final int CANTO = -3;
+
+    private final int midaTauler;
+    private final int numCaselles;
+    /** Veí k de la casella c a anell[c * 6 + k]: índex de casella o codi de vora. */
+    private final int[] anell;
+    private final int[] tauler;
+    private final byte[] tipus;
+    private final int[] colors = new int[6];
+    private final HexBoard.Adaptador adaptador = new HexBoard.Adaptador();
+    private int nInferiors;
+
+    /**
+     * Crea l'analitzador per a una mida de tauler.
+     *
+     * @param midaTauler Mida del tauler.
+     */
+    public InferiorCells(int midaTauler) {
+        this.midaTauler = midaTauler;
+        this.numCaselles = midaTauler * midaTauler;
+        this.anell = new int[numCaselles * 6];
+        this.tauler = new int[numCaselles];
+        this.tipus = new byte[numCaselles];
+        for (int x = 0; x < midaTauler; x++) {
+            for (int y = 0; y < midaTauler; y++) {
+                for (int k = 0; k < 6; k++) {
+                    int vx = x + ANELL[k][0];
+                    int vy = y + ANELL[k][1];
+                    boolean foraX = vx < 0 || vx >= midaTauler;
+                    boolean foraY = vy < 0 || vy >= midaTauler;
+                    int v;
+                    if (foraX && foraY) v = CANTO;
+                    else if (foraX) v = VORA_X;
+                    else if (foraY) v = VORA_Y;
+                    else v = vx * midaTauler + vy;
+                    anell[(x * midaTauler + y) * 6 + k] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Mida del tauler.
+     */
+    public int getMidaTauler() {
+        return midaTauler;
+    }
+
+    /**
+     * Troba les caselles mortes i capturades d'una posició i les omple fins que no n'apareixen més.
+     *
+     * @param estat Posició.
+     * @return Nombre de caselles buides inferiors.
+     */
+    public int analitzar(HexGameStatus estat) {
+        return analitzar(adaptador.llegir(estat));
+    }
+
+    /**
+     * Com {@link #analitzar(HexGameStatus)}, sobre un tauler qualsevol.
+     */
+    public int analitzar(HexBoard estat) {
+        for (int x = 0; x < midaTauler; x++) {
+            for (int y = 0; y < midaTauler; y++) {
+                tauler[x * midaTauler + y] = estat.getPos(x, y);
+            }
+        }
+        Arrays.fill(tipus, NORMAL);
+        nInferiors = 0;
+
+        boolean canvis = true;
+        while (canvis) {
+            canvis = false;
+            for (int c = 0; c < numCaselles; c++) {
+                if (tauler[c] != 0) continue;
+                int color = morta(c);
+                if (color != 0) {
+                    tauler[c] = color;
+                    tipus[c] = MORTA;
+                    nInferiors++;
+                    canvis = true;
+                    continue;
+                }
+                for (int k = 0; k < 6; k++) {
+                    int q = anell[c * 6 + k];
+                    if (q > c && tauler[q] == 0 && capturar(c, q)) {
+                        canvis = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return nInferiors;
+    }
+
+    /**
+     * @param casella Índex (x * mida + y) d'una casella.
+     * @return El tipus de la casella segons l'última anàlisi: {@link #NORMAL}, {@link #MORTA} o
+     *         {@link #CAPTURADA}.
+     */
+    public byte getTipus(int casella) {
+        return tipus[casella];
+    }
+
+    /**
+     * @param casella Índex (x * mida + y) d'una casella.
+     * @return El color de la casella al tauler omplert de l'última anàlisi.
+     */
+    public int getColorOmplert(int casella) {
+        return tauler[casella];
+    }
+
+    /**
+     * Treu d'una llista de moviments les caselles inferiors de la posició. Si totes ho són, la
+     * partida ja està decidida i es retorna la llista sencera.
+     *
+     * @param estat Posició.
+     * @param moviments Moviments candidats de la posició.
+     * @return Els moviments que no són inferiors, en el mateix ordre.
+     */
+    public List<MoveNode> podar(HexGameStatus estat, List<MoveNode> moviments) {
+        HexGeometry geometria = HexGeometry.of(midaTauler);
+        int[] caselles = geometria.caselles(moviments);
+        int[] podats = podar(estat, caselles);
+        return (podats == caselles) ? moviments : geometria.moviments(podats);
+    }
+
+    /**
+     * Com {@link #podar(HexGameStatus, List)}, sobre índexs de casella (x * mida + y).
+     *
+     * @param estat Posició.
+     * @param caselles Caselles candidates de la posició.
+     * @return Les caselles que no són inferiors, en el mateix ordre, o el mateix vector si no
+     *         se'n treu cap o no en queda cap.
+     */
+    public int[] podar(HexGameStatus estat, int[] caselles) {
+        return podar(adaptador.llegir(estat), caselles);
+    }
+
+    /**
+     * Com {@link #podar(HexGameStatus, int[])}, sobre un tauler qualsevol.
+     */
+    public int[] podar(HexBoard estat, int[] caselles) {
+        if (analitzar(estat) == 0) return caselles;
+        int[] podats = new int[caselles.length];
+        int n = 0;
+        for (int casella : caselles) {
+            if (tipus[casella] == NORMAL) podats[n++] = casella;
+        }
+        return (n == 0 || n == caselles.length) ? caselles : Arrays.copyOf(podats, n);
+    }
+
+    /**
+     * Comprova si les caselles buides veïnes c i q estan capturades per algun color i, si ho
+     * estan, les omple.
+     */
+    private boolean capturar(int c, int q) {
+        // Cada casella necessita almenys quatre veïns ocupats un cop l'altra és plena
+        if (veinsOcupats(c) < 3 || veinsOcupats(q) < 3) return false;
+        for (int color = 1; color >= -1; color -= 2) {
+            tauler[q] = color;
+            boolean mortaC = morta(c) != 0;
+            tauler[q] = 0;
+            if (!mortaC) continue;
+            tauler[c] = color;
+            boolean mortaQ = morta(q) != 0;
+            if (mortaQ) {
+                tauler[q] = color;
+                tipus[c] = CAPTURADA;
+                tipus[q] = CAPTURADA;
+                nInferiors += 2;
+                return true;
+            }
+            tauler[c] = 0;
+        }
+        return false;
+    }
+
+    private int veinsOcupats(int c) {
+        int n = 0;
+        for (int k = 0; k < 6; k++) {
+            if (colorVei(anell[c * 6 + k]) != 0) n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return El color d'un patró de casella morta a l'anell de la casella c (el color amb què
+     *         es pot omplir), o 0 si no n'hi ha cap.
+     */
+    private int morta(int c) {
+        int ocupats = 0;
+        for (int k = 0; k < 6; k++) {
+            colors[k] = colorVei(anell[c * 6 + k]);
+            if (colors[k] != 0) ocupats++;
+        }
+        if (ocupats < 4) return 0;
+        for (int k = 0; k < 6; k++) {
+            int color = colors[k];
+            if (color == 0 || colors[(k + 1) % 6] != color || colors[(k + 2) % 6] != color) continue;
+            // Quatre consecutius del mateix color
+            if (colors[(k + 3) % 6] == color) return color;
+            // Tres d'un color i dos de l'altre a continuació, per qualsevol dels dos costats
+            if (colors[(k + 3) % 6] == -color && colors[(k + 4) % 6] == -color) return color;
+            if (colors[(k + 5) % 6] == -color && colors[(k + 4) % 6] == -color) return color;
+        }
+        return 0;
+    }
+
+    private int colorVei(int v) {
+        if (v >= 0) return tauler[v];
+        if (v == VORA_X) return 1;
+        if (v == VORA_Y) return -1;
+        return 0;
+    }
+}
@@ -0,0 +1,162 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Taula de transposició projectada sobre un fitxer, perquè el que ha après la cerca sobrevisqui
+ * a un reinici. Les entrades es llegeixen i s'escriuen directament sobre la projecció del fitxer:
+ * carregar-la no en copia res, i els canvis de la cerca hi arriben sense cap pas més (el sistema
+ * els escriu al disc quan vol, o en acabar el procés; {@link #desar()} els hi força).
+ *
+ * El fitxer comença amb una capçalera (identificador, versió, mida del tauler, llavor Zobrist,
+ * mida de la taula i generació actual) i les entrades, en el format de {@link TranspositionTable},
+ * comencen a la primera pàgina següent. Un fitxer d'una altra mida de tauler o d'una altra
+ * llavor es rebutja, perquè els seus hash no corresponen a les mateixes posicions. Les claus ja
+ * inclouen el color del jugador que cerca, de manera que el mateix fitxer serveix per als dos
+ * colors sense que els valors de l'un es trobin des de l'altre.
+ */
+public class MappedTranspositionTable extends OffHeapTranspositionTable {
+    private static final long IDENTIFICADOR = 0x4845582D54540000L; // "HEX-TT"
+    /** Versió del format. La 2 desa les claus amb el color que cerca ({@link ZobristHashing#perspectiva}). */
+    private static final int VERSIO = 2;
+    /** Bytes reservats per a la capçalera: les entrades comencen a la pàgina següent. */
+    private static final int BYTES_CAPCALERA = 4096;
+    /** Posició de la generació actual dins la capçalera. */
+    private static final int POSICIO_GENERACIO = 28;
+
+    private final Path fitxer;
+    private final MappedByteBuffer capcalera;
+    private final MappedByteBuffer[] projeccions;
+
+    private MappedTranspositionTable(int megabytes, Path fitxer, FileChannel canal, long longs) throws IOException {
+        this(megabytes, fitxer, canal.map(FileChannel.MapMode.READ_WRITE, 0, BYTES_CAPCALERA),
+                projectar(canal, longs));
+    }
+
+    private MappedTranspositionTable(int megabytes, Path fitxer, MappedByteBuffer capcalera,
+            MappedByteBuffer[] projeccions) {
+        super(megabytes, projeccions);
+        this.fitxer = fitxer;
+        this.capcalera = capcalera;
+        this.projeccions = projeccions;
+        capcalera.order(ByteOrder.LITTLE_ENDIAN);
+        super.setGeneracio(capcalera.getInt(POSICIO_GENERACIO));
+    }
+
+    /**
+     * Projecta una taula desada amb {@link #crear} o {@link TranspositionTable#desar}.
+     *
+     * @param fitxer Fitxer de la taula.
+     * @param midaTauler Mida del tauler de les posicions que s'hi buscaran.
+     * @return La taula, o null si el fitxer no existeix o és d'una altra mida de tauler, d'una
+     *         altra llavor Zobrist o d'un altre format.
+     * @throws IOException Si el fitxer no es pot llegir.
+     */
+    public static MappedTranspositionTable carregar(Path fitxer, int midaTauler) throws IOException {
+        if (!Files.isRegularFile(fitxer) || Files.size(fitxer) < BYTES_CAPCALERA) return null;
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer capcalera = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+            canal.read(capcalera, 0);
+            capcalera.flip();
+            if (capcalera.getLong() != IDENTIFICADOR || capcalera.getInt() != VERSIO
+                    || capcalera.getInt() != midaTauler || capcalera.getLong() != ZobristHashing.LLAVOR) {
+                return null;
+            }
+            int megabytes = capcalera.getInt();
+            if (megabytes <= 0) return null;
+            long longs = 4L * nombreCubetes(megabytes);
+            if (canal.size() != BYTES_CAPCALERA + longs * Long.BYTES) return null;
+            return new MappedTranspositionTable(megabytes, fitxer, canal, longs);
+        }
+    }
+
+    /**
+     * Crea un fitxer amb una taula buida, i el projecta. Si el fitxer ja existeix, se sobreescriu.
+     *
+     * @param fitxer Fitxer de la taula.
+     * @param midaTauler Mida del tauler de les posicions que s'hi desaran.
+     * @param megabytes Memòria de la taula en MB.
+     * @return La taula buida.
+     * @throws IOException Si el fitxer no es pot escriure.
+     */
+    public static MappedTranspositionTable crear(Path fitxer, int midaTauler, int megabytes) throws IOException {
+        megabytes = Math.max(1, megabytes);
+        long longs = 4L * nombreCubetes(megabytes);
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer capcalera = ByteBuffer.allocate(BYTES_CAPCALERA).order(ByteOrder.LITTLE_ENDIAN);
+            capcalera.putLong(IDENTIFICADOR).putInt(VERSIO).putInt(midaTauler)
+                    .putLong(ZobristHashing.LLAVOR).putInt(megabytes);
+            capcalera.clear();
+            canal.write(capcalera, 0);
+            // Allargar el fitxer el deixa a zero, que és una taula buida
+            canal.write(ByteBuffer.allocate(1), BYTES_CAPCALERA + longs * Long.BYTES - 1);
+            return new MappedTranspositionTable(megabytes, fitxer, canal, longs);
+        }
+    }
+
+    private static MappedByteBuffer[] projectar(FileChannel canal, long longs) throws IOException {
+        MappedByteBuffer[] projeccions = new MappedByteBuffer[nombreTrossos(longs)];
+        long posicio = BYTES_CAPCALERA;
+        for (int i = 0; i < projeccions.length; i++) {
+            int bytes = bytesTros(longs, i);
+            projeccions[i] = canal.map(FileChannel.MapMode.READ_WRITE, posicio, bytes);
+            projeccions[i].order(ByteOrder.LITTLE_ENDIAN);
+            posicio += bytes;
+        }
+        return projeccions;
+    }
+
+    /**
+     * @return El fitxer on es guarda la taula.
+     */
+    public Path getFitxer() {
+        return fitxer;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public void novaGeneracio() {
+        super.novaGeneracio();
+        capcalera.putInt(POSICIO_GENERACIO, getGeneracio());
+    }
+
+    @Override
+    void setGeneracio(int generacio) {
+        super.setGeneracio(generacio);
+        capcalera.putInt(POSICIO_GENERACIO, getGeneracio());
+    }
+
+    /**
+     * Si el fitxer és el de la taula, només hi força els canvis.
+     */
+    @Override
+    public void desar(Path fitxer, int midaTauler) throws IOException {
+        if (Files.exists(fitxer) && Files.isSameFile(fitxer, this.fitxer)) {
+            desar();
+        } else {
+            super.desar(fitxer, midaTauler);
+        }
+    }
+
+    /**
+     * Força al disc els canvis fets a la taula.
+     */
+    public void desar() {
+        capcalera.force();
+        for (MappedByteBuffer projeccio : projeccions) {
+            projeccio.force();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Regió obligada del color que mou quan el contrari amenaça de connectar.
+ *
+ * Si el contrari està a distància {@link #DISTANCIA_AMENACA} o menys (comptant els ponts amb les
+ * dues caselles intermèdies buides com a connexions segures, igual que el {@link Dijkstra}), cada
+ * camí d'aquesta longitud, amb les caselles intermèdies dels seus ponts, li dona la partida si pot
+ * jugar primer. Les úniques jugades que no perden són les que toquen tots aquests camins: les
+ * caselles que, ocupades pel color que mou, deixen el contrari a més distància. La regió es calcula
+ * posant la pedra a cada candidata i repetint la cerca dirigida del contrari sobre el mateix tauler.
+ *
+ * No és segura entre fils: cal una instància per fil de cerca.
+ */
+public class MustPlayRegion {
+    /** Distància del contrari a partir de la qual es restringeixen els candidats. */
+    public static final int DISTANCIA_AMENACA = 1;
+
+    private final Dijkstra dijkstra = new Dijkstra();
+    private final HexBoard.Adaptador adaptador = new HexBoard.Adaptador();
+    private long aplicacions;
+    private long candidats;
+    private long obligats;
+
+    /**
+     * Restringeix una llista de moviments a la regió obligada, si el contrari amenaça de
+     * connectar. Si cap moviment no atura l'amenaça, la partida ja està perduda i es retorna la
+     * llista sencera.
+     *
+     * @param estat Posició.
+     * @param moviments Moviments candidats del color que mou.
+     * @return Els moviments de la regió obligada, en el mateix ordre, o la llista original si no
+     *         hi ha amenaça.
+     */
+    public List<MoveNode> podar(HexGameStatus estat, List<MoveNode> moviments) {
+        HexGeometry geometria = HexGeometry.of(estat.getSize());
+        int[] caselles = geometria.caselles(moviments);
+        int[] regio = podar(estat, caselles);
+        return (regio == caselles) ? moviments : geometria.moviments(regio);
+    }
+
+    /**
+     * Com {@link #podar(HexGameStatus, List)}, sobre índexs de casella (x * mida + y).
+     *
+     * @param estat Posició.
+     * @param caselles Caselles candidates del color que mou.
+     * @return Les caselles de la regió obligada, en el mateix ordre, o el mateix vector si no hi
+     *         ha amenaça o cap casella no l'atura.
+     */
+    public int[] podar(HexGameStatus estat, int[] caselles) {
+        return podar(adaptador.llegir(estat), caselles);
+    }
+
+    /**
+     * Com {@link #podar(HexGameStatus, int[])}, sobre un tauler qualsevol.
+     */
+    public int[] podar(HexBoard estat, int[] caselles) {
+        int contrari = -estat.getCurrentPlayerColor();
+        if (dijkstra.camiMinim(estat, contrari) > DISTANCIA_AMENACA) return caselles;
+
+        int[] regio = new int[caselles.length];
+        int n = 0;
+        for (int casella : caselles) {
+            if (dijkstra.camiMinimAmbPedra(casella, contrari) > DISTANCIA_AMENACA) {
+                regio[n++] = casella;
+            }
+        }
+        aplicacions++;
+        candidats += caselles.length;
+        obligats += n;
+        return (n == 0) ? caselles : Arrays.copyOf(regio, n);
+    }
+
+    /**
+     * @return Nombre de posicions on el contrari amenaçava i s'ha calculat la regió.
+     */
+    public long getAplicacions() {
+        return aplicacions;
+    }
+
+    /**
+     * @return Nombre total de candidats de les posicions on s'ha calculat la regió.
+     */
+    public long getCandidats() {
+        return candidats;
+    }
+
+    /**
+     * @return Nombre total de candidats que han quedat dins la regió obligada.
+     */
+    public long getObligats() {
+        return obligats;
+    }
+}
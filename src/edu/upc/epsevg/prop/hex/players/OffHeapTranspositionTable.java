@@ -0,0 +1,85 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Taula de transposició amb les dades fora del heap, en memòria directa. Té el mateix format,
+ * la mateixa política de substitució i la mateixa verificació sense bloquejos que
+ * {@link TranspositionTable}, però els long es guarden en trossos de {@link ByteBuffer}
+ * directes d'1 GB com a molt (un sol buffer no pot passar de 2 GB). Així una taula de diversos
+ * GB no fa créixer el heap ni allarga les pauses del recol·lector, que no la recorre mai.
+ *
+ * La memòria directa està limitada per {@code -XX:MaxDirectMemorySize} (per defecte, la mida
+ * màxima del heap) i s'allibera quan la taula deixa de ser accessible; per això els jugadors
+ * la reaprofiten d'una partida a l'altra en lloc de crear-ne una de nova.
+ */
+public class OffHeapTranspositionTable extends TranspositionTable {
+    /** Long de cada tros (2^27 long = 1 GB). */
+    private static final int BITS_TROS = 27;
+    private static final int MASCARA_TROS = (1 << BITS_TROS) - 1;
+
+    private final ByteBuffer[] trossos;
+
+    /**
+     * Crea una taula de transposició fora del heap.
+     *
+     * @param megabytes Memòria de la taula en MB; el nombre de cubetes s'arrodoneix a la
+     *                  potència de dos que hi cap.
+     */
+    public OffHeapTranspositionTable(int megabytes) {
+        super(megabytes, false);
+        this.trossos = new ByteBuffer[nombreTrossos(2L * capacitat())];
+        for (int i = 0; i < trossos.length; i++) {
+            // allocateDirect ja torna la memòria a zero
+            trossos[i] = ByteBuffer.allocateDirect(bytesTros(2L * capacitat(), i)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Crea una taula sobre uns trossos ja reservats, amb les mides de {@link #bytesTros}.
+     */
+    OffHeapTranspositionTable(int megabytes, ByteBuffer[] trossos) {
+        super(megabytes, false);
+        this.trossos = trossos;
+    }
+
+    /**
+     * @param longs Long de la taula.
+     * @return Nombre de trossos on es reparteixen.
+     */
+    static int nombreTrossos(long longs) {
+        return (int) ((longs + MASCARA_TROS) >>> BITS_TROS);
+    }
+
+    /**
+     * @param longs Long de la taula.
+     * @param tros Índex del tros.
+     * @return Bytes del tros.
+     */
+    static int bytesTros(long longs, int tros) {
+        return (int) (Math.min(longs - ((long) tros << BITS_TROS), 1L << BITS_TROS) * Long.BYTES);
+    }
+
+    @Override
+    public void clear() {
+        byte[] zeros = new byte[1 << 16];
+        for (ByteBuffer tros : trossos) {
+            ByteBuffer b = tros.duplicate();
+            b.clear();
+            while (b.hasRemaining()) {
+                b.put(zeros, 0, Math.min(zeros.length, b.remaining()));
+            }
+        }
+    }
+
+    @Override
+    long llegir(int i) {
+        return trossos[i >>> BITS_TROS].getLong((i & MASCARA_TROS) << 3);
+    }
+
+    @Override
+    void escriure(int i, long valor) {
+        trossos[i >>> BITS_TROS].putLong((i & MASCARA_TROS) << 3, valor);
+    }
+}
@@ -9,7 +9,18 @@ import edu.upc.epsevg.prop.hex.PlayerType;
 import edu.upc.epsevg.prop.hex.SearchType;
 
 import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 /**
  * Classe que implementa un jugador amb Iterative-Deepening (ID) i mecanisme
@@ -28,14 +39,44 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     private int _profActual; //Profunditat actual
     private int _nMoves; // Nombre de moviments realitzats
     private int _timeout; // Temps límit per al timeout
-    private long _hashTableroVacio; // Hash del tauler buit
+    private int _pedresAnteriors; // Pedres al tauler a l'última jugada, per detectar una partida nova
     private int _totalTime; //Temps total acumulat en mil·lisegons per a calcular tots els moviments realitzats pel jugador.
     private int _nNodes; // Nombre de nodes explorats en la cerca actual
     private Dijkstra _dijkstra; // Instància del càlcul de camins més curts
-    private long timeoutLimit; // Temps límit calculat per al timeout
+    private IncrementalDijkstra _incremental; // Mapes de distàncies mantinguts al llarg del camí de la cerca
+    private EvaluationCache _cacheAvaluacio; // Memòria cau de mètriques indexada pel hash Zobrist
+    private int _entradesCache = EvaluationCache.ENTRADES_PER_DEFECTE; // Entrades de la memòria cau (0 la desactiva)
+    private int _megasTaula = TranspositionTable.MEGABYTES_PER_DEFECTE; // Memòria de la taula de transposició, en MB
+    private boolean _conservarTaula = true; // Conservar la taula de transposició d'una partida a l'altra
+    private long _consultesTaula, _encertsTaula; // Consultes a la taula de transposició d'aquest jugador, i encerts
+    private boolean _ordenacioPerMapes = false; // Ordenar l'arrel amb els mapes de distàncies de les dues vores
+    private boolean _avaluacioPerezosa = true; // Resoldre amb fites les fulles fora de la finestra alfa-beta
+    private Dijkstra _fites; // Fites superiors de les mètriques d'una fulla
+    private long _nFulles; // Nombre de fulles avaluades des de la creació del jugador
+    private VirtualConnections _connexions; // Connexions virtuals (H-search) per demostrar victòries
+    private boolean _connexionsVirtuals = true; // Si l'arrel fa servir les connexions virtuals
+    private InferiorCells _inferiors; // Anàlisi de caselles mortes i capturades
+    private boolean _podaInferiors = true; // Si els generadors de moviments descarten les caselles inferiors
+    private MustPlayRegion _obligada; // Regió obligada quan el contrari amenaça de connectar
+    private boolean _regioObligada = true; // Si els generadors de moviments es limiten a la regió obligada
+    private RelevanceZone _zona = new RelevanceZone(); // Caselles a prop d'un camí mínim d'algun dels dos colors
+    private boolean _zonaRellevant = false; // Si els generadors de moviments es limiten a la zona rellevant
+    private ForkJoinPool _pool; // Grup de fils per a l'ordenació i els fills de l'arrel (null: tot al fil que crida)
+    private final ConcurrentLinkedQueue<PlayerIDHexCalculators> _treballadors = new ConcurrentLinkedQueue<>(); // Jugadors auxiliars lliures per als fils del grup
+    private int _fils = 1; // Fils de la cerca Lazy SMP, comptant el principal
+    private ForkJoinPool _poolAjudants; // Fils on corren els ajudants de la cerca Lazy SMP
+    private final List<PlayerIDHexCalculators> _ajudants = new ArrayList<>(); // Ajudants de la cerca Lazy SMP, amb els seus propis avaluadors
+    private int _desplacament; // Ajudant: fill de l'arrel que s'avança al davant de l'ordenació (0: cap)
+    private int _profCompletada; // Ajudant: última profunditat completada
+    private int _millorCompletat; // Ajudant: casella del millor moviment de l'última profunditat completada
+    private volatile long timeoutLimit; // Temps límit calculat per al timeout (el principal l'avança per aturar els ajudants)
     private boolean timeoutTriggered; // Indicador si el timeout ha estat activat
     private TranspositionTable transpositionTable; // Taula de transposició per millorar la cerca
+    private final TranspositionTable.TableEntry _entradaTT = new TranspositionTable.TableEntry(); // Entrada on es deixen les consultes a la taula
+    private long _perspectiva; // Es combina amb el hash a la taula segons el color que cerca, perquè els valors de l'altre color no es barregin
     private int profundidadMaxima; // Guardem la profunditat maxima arribada
+    private HexPosition _posicio; // Posició mutable on la cerca juga i desfà els moviments
+    private final HexBoard.Adaptador _adaptador = new HexBoard.Adaptador(); // Tauler que llegeix l'estat de les crides amb HexGameStatus
 
     /**
      * Constructor per inicialitzar el jugador amb un nom, mida de tauler i límit de temps.
@@ -62,11 +103,75 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
         this._timeout = timeout*1000;
         this._nMoves = 0;
         this.profundidadMaxima = 0;
-        this._dijkstra = new Dijkstra();
-        this.transpositionTable = new TranspositionTable();
-        HexGameStatus s = new HexGameStatus(boardSize);
+        crearAvaluadors(boardSize);
+        reiniciarTaula();
         ZobristHashing.setBoardSize(boardSize);
-        this._hashTableroVacio = ZobristHashing.calculateHash(s);
+    }
+
+    /**
+     * @param s Estat del tauler.
+     * @return Nombre de pedres al tauler.
+     */
+    private static int comptarPedres(HexGameStatus s) {
+        int pedres = 0;
+        for (int x = 0; x < s.getSize(); x++) {
+            for (int y = 0; y < s.getSize(); y++) {
+                if (s.getPos(x, y) != 0) pedres++;
+            }
+        }
+        return pedres;
+    }
+
+    /**
+     * Crea els avaluadors d'una mida de tauler.
+     *
+     * @param boardSize La mida del tauler.
+     */
+    private void crearAvaluadors(int boardSize) {
+        this._dijkstra = new Dijkstra();
+        this._fites = new Dijkstra();
+        this._connexions = new VirtualConnections(boardSize);
+        this._inferiors = new InferiorCells(boardSize);
+        this._obligada = new MustPlayRegion();
+        this._incremental = new IncrementalDijkstra(boardSize);
+        this._cacheAvaluacio = new EvaluationCache(_entradesCache);
+    }
+
+    /**
+     * Prepara la taula de transposició per a una partida nova, o la crea si encara no n'hi ha cap
+     * de la mida demanada. Si s'ha de conservar, només en comença una generació nova:
+     * les obertures es repeteixen d'una partida a l'altra, i les entrades de partides anteriors
+     * es continuen trobant fins que les d'aquesta les substitueixen. Si no, es buida (excepte la
+     * carregada d'un fitxer, que sempre es conserva).
+     * Les entrades d'una partida amb l'altre color no es troben, perquè la clau inclou el color que
+     * cerca ({@link ZobristHashing#perspectiva}).
+     */
+    private void reiniciarTaula() {
+        if (transpositionTable != null && (transpositionTable.isPersistent()
+                || transpositionTable.getMegabytes() == _megasTaula)) {
+            if (_conservarTaula) {
+                transpositionTable.novaGeneracio();
+            } else if (!transpositionTable.isPersistent()) {
+                transpositionTable.clear();
+            }
+        } else {
+            transpositionTable = TranspositionTable.crear(_megasTaula);
+        }
+    }
+
+    /**
+     * Crea un jugador auxiliar per a un fil de la cerca en paral·lel, amb els seus propis
+     * avaluadors. No torna a generar la taula Zobrist, que és compartida. La configuració del
+     * jugador principal i la taula de transposició les posa {@link #prepararTreballador}, que
+     * s'ha de cridar abans de fer-lo servir.
+     *
+     * @param principal Jugador principal.
+     */
+    private PlayerIDHexCalculators(PlayerIDHexCalculators principal) {
+        this._name = principal._name;
+        this._timeout = principal._timeout;
+        this._entradesCache = principal._entradesCache;
+        crearAvaluadors(principal._incremental.getMidaTauler());
     }
     
     /**
@@ -84,17 +189,21 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
         _profActual = 1;
         _Player = s.getCurrentPlayer();
         _colorPlayer = s.getCurrentPlayerColor();
+        _perspectiva = ZobristHashing.perspectiva(_colorPlayer);
 
         // Configurar timeout
         long initialTime = System.currentTimeMillis();
         timeoutTriggered = false;
         timeoutLimit = System.currentTimeMillis() + _timeout; 
 
-        Point mejorMovimiento = null;
+        int mejorMovimiento = TranspositionTable.SENSE_JUGADA;
 
         // Calcular el hash inicial per l'estat actual del tauler
         long hash = ZobristHashing.calculateHash(s);
-        if(_hashTableroVacio==hash && _nMoves!=1){
+        // Hi ha menys pedres que a la jugada anterior, o menys de dues (el segon jugador no veu
+        // mai el tauler buit): és una partida nova
+        int pedres = comptarPedres(s);
+        if((pedres < 2 || pedres < _pedresAnteriors) && _nMoves!=1){
             /*System.out.println("======== IDS =========");
             double estadistica = (double)_profTotal/_nMoves;
             System.out.println("Profundidad conseguida con exito: " + _profTotal);
@@ -107,14 +216,32 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
             init(_name, s.getSize(), _timeout/1000);
             _nMoves++;
         }
+        _pedresAnteriors = pedres;
+
+        // Si les connexions virtuals ja demostren la victòria, es juga la jugada que la conserva
+        if (_connexionsVirtuals) {
+            if (_connexions.getMidaTauler() != s.getSize()) {
+                _connexions = new VirtualConnections(s.getSize());
+            }
+            int guanyadora = _connexions.jugadaGuanyadora(s, hash);
+            if (guanyadora >= 0) {
+                _totalTime += System.currentTimeMillis() - initialTime;
+                return new PlayerMove(HexGeometry.of(s.getSize()).punt(guanyadora),
+                        _nNodes, 0, SearchType.MINIMAX_IDS);
+            }
+        }
+
+        // Lazy SMP: els ajudants fan la mateixa cerca en paral·lel i només es comuniquen per la
+        // taula de transposició compartida
+        List<ForkJoinTask<?>> ajudes = (_fils > 1) ? llancarAjudants(s, hash) : null;
 
         // Iterative Deepening
         int contadorRepetidas = 0; // Contador de elecciones iguales consecutivas
         for (_profActual = 1; !timeoutTriggered; _profActual++) {
             try {
                 // Realitzar la cerca amb la profunditat actual
-                Point movimientoActual = realizarBusqueda(s, hash, _profActual);
-                if(movimientoActual.equals(mejorMovimiento)){
+                int movimientoActual = realizarBusqueda(s, hash, _profActual);
+                if(movimientoActual == mejorMovimiento){
                     contadorRepetidas++;
                 } else {
                     contadorRepetidas = 0;
@@ -128,6 +255,9 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
                 break;
             }
         }
+        if (ajudes != null) {
+            mejorMovimiento = recollirAjudants(ajudes, mejorMovimiento);
+        }
         profundidadMaxima = Math.max(profundidadMaxima, _profActual-1);
         // Actualitzar les estadístiques de profunditat
         _profTotal += _profActual-1;
@@ -141,7 +271,8 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
             System.out.println("Tiempo total del juego en ms: " + _totalTime);
             System.out.println("Estadistica ProfundidadTotal/Moves: " + estadistica);*/
         // Retornar el millor moviment trobat
-        return new PlayerMove(mejorMovimiento, _nNodes, _profActual, SearchType.MINIMAX_IDS);
+        Point punto = (mejorMovimiento == TranspositionTable.SENSE_JUGADA) ? null : HexGeometry.of(s.getSize()).punt(mejorMovimiento);
+        return new PlayerMove(punto, _nNodes, _profActual, SearchType.MINIMAX_IDS);
     }
 
     /**
@@ -150,28 +281,46 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     * @param s L'estat actual del tauler.
     * @param hash El hash corresponent a l'estat actual del tauler.
     * @param profundidad La profunditat màxima de la cerca.
-    * @return Point El millor moviment trobat fins al moment.
+    * @return La casella del millor moviment trobat fins al moment.
     * @throws TimeoutException Si es detecta que el límit de temps s'ha superat.
     */
-    private Point realizarBusqueda(HexGameStatus s, long hash, int profundidad) throws TimeoutException {
+    private int realizarBusqueda(HexGameStatus s, long hash, int profundidad) throws TimeoutException {
+       // Carregar l'estat arrel a la posició de la cerca (un timeout hi pot haver deixat pedres)
+       HexPosition posicio = carregarPosicio(s);
+
        // Determinar la llista de moviments a avaluar
-       List<MoveNode> movimientos;
+       int[] movimientos;
        if (_nMoves < 3) {
-           movimientos = ordenarMovimientosRapido(s); // Heurística ràpida per als primers moviments
+           movimientos = ordenarMovimientosRapido(posicio, candidats(posicio)); // Heurística ràpida per als primers moviments
        } else {
-           movimientos = ordenarMovimientos(s); // Heurística més completa per la resta
+           movimientos = ordenarMovimientos(posicio, candidats(posicio)); // Heurística més completa per la resta
        }
 
+       // Cada ajudant de la cerca Lazy SMP comença per un fill diferent per no repetir l'arbre del principal
+       if (_desplacament > 0 && movimientos.length > 1) {
+           int k = _desplacament % movimientos.length;
+           int avancat = movimientos[k];
+           System.arraycopy(movimientos, 0, movimientos, 1, k);
+           movimientos[0] = avancat;
+       }
+
+       // Carregar l'estat arrel a l'avaluador incremental (un timeout pot haver deixat la pila a mitges)
+       if (_incremental.getMidaTauler() != s.getSize()) {
+           _incremental = new IncrementalDijkstra(s.getSize());
+       }
+       _incremental.reiniciar(s);
+
        // Inicialitzar el millor moviment i el seu valor associat
-       Point mejorMovimiento = movimientos.get(0).getPoint();
+       int mejorMovimiento = movimientos[0];
        int mejorValor = MENYS_INFINIT;
 
        // Limitar el nombre de moviments a avaluar
-       int numMovimientosEvaluar = Math.min(movimientos.size(), (200/_profActual));
+       int numMovimientosEvaluar = Math.min(movimientos.length, (200/_profActual));
 
-       // Avaluar cada moviment seleccionat
+       // Jugar els moviments en ordre i comprovar si algun guanya sense haver de cercar
+       boolean[] perduts = new boolean[numMovimientosEvaluar];
        for (int i = 0; i < numMovimientosEvaluar; i++) {
-           MoveNode movimiento = movimientos.get(i);
+           int casella = movimientos[i];
 
            // Verificar si s'ha superat el límit de temps
            if (System.currentTimeMillis() >= timeoutLimit) {
@@ -182,28 +331,33 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
            // Incrementar el comptador de nodes explorats
            _nNodes++;
 
-           // Generar un nou estat per al moviment actual
-           Point punto = movimiento.getPoint();
-           HexGameStatus estadoAux = new HexGameStatus(s);
-           long newHash = ZobristHashing.updateHash(hash, punto, s.getPos(punto.x, punto.y), estadoAux.getCurrentPlayerColor());
-           estadoAux.placeStone(punto);
+           // Jugar el moviment actual sobre la posició
+           posicio.play(casella);
+           boolean guanya = posicio.isGameOver() && posicio.GetWinner() == _Player;
+           int guanyador = 0;
+           if (!guanya && _connexionsVirtuals) {
+               // Les connexions virtuals poden decidir el fill sense haver-lo d'explorar
+               guanyador = _connexions.guanyador(posicio, posicio.getHash(), hash, casella, _colorPlayer);
+           }
+           posicio.undo();
 
            // Comprovar si el moviment actual guanya la partida
-           if (estadoAux.isGameOver() && estadoAux.GetWinner() == _Player) {
-               return punto;
+           if (guanya || guanyador == _colorPlayer) {
+               return casella;
            }
+           perduts[i] = guanyador != 0;
+       }
 
-           // Avaluar el valor del moviment utilitzant la funció MIN
-           int valor = MIN(estadoAux, profundidad - 1, MENYS_INFINIT, INFINIT, newHash);
-
-           // Actualitzar el millor moviment si el valor és superior
-           if (valor > mejorValor) {
-               mejorValor = valor;
-               mejorMovimiento = punto;
+       // Avaluar els moviments amb la funció MIN; els valors que no superen la cota amb què s'han
+       // cercat només són fites i no poden ser el millor
+       int[] valors = new int[numMovimientosEvaluar];
+       boolean[] exactes = new boolean[numMovimientosEvaluar];
+       cercarFills(posicio, profundidad, movimientos, perduts, valors, exactes);
+       for (int i = 0; i < numMovimientosEvaluar; i++) {
+           if (exactes[i] && valors[i] > mejorValor) {
+               mejorValor = valors[i];
+               mejorMovimiento = movimientos[i];
            }
-           /*if(mejorValor == INFINIT){
-               timeoutTriggered = true;
-           }*/
        }
 
        // Retornar el millor moviment trobat fins al moment
@@ -211,10 +365,232 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     }
 
 
+    /**
+    * Posa en marxa els ajudants de la cerca Lazy SMP. Cada ajudant repeteix l'Iterative Deepening
+    * del principal amb els seus propis avaluadors i la taula de transposició compartida; els
+    * senars comencen una profunditat més avall i cadascun avança un fill diferent al davant de
+    * l'ordenació de l'arrel, de manera que els arbres divergeixen i omplen la taula per al principal.
+    *
+    * @param s L'estat actual del tauler.
+    * @param hash El hash de l'estat.
+    * @return Les tasques dels ajudants.
+    */
+    private List<ForkJoinTask<?>> llancarAjudants(HexGameStatus s, long hash) {
+       if (_poolAjudants == null || _poolAjudants.getParallelism() != _fils - 1) {
+           if (_poolAjudants != null) _poolAjudants.shutdown();
+           _poolAjudants = new ForkJoinPool(_fils - 1);
+       }
+       while (_ajudants.size() < _fils - 1) {
+           PlayerIDHexCalculators ajudant = new PlayerIDHexCalculators(this);
+           ajudant._desplacament = _ajudants.size() + 1;
+           _ajudants.add(ajudant);
+       }
+       List<ForkJoinTask<?>> ajudes = new ArrayList<>(_fils - 1);
+       for (int k = 0; k < _fils - 1; k++) {
+           PlayerIDHexCalculators ajudant = _ajudants.get(k);
+           ajudant.prepararTreballador(this);
+           ajudes.add(_poolAjudants.submit(() -> ajudant.cercaAjudant(new HexGameStatus(s), hash)));
+       }
+       return ajudes;
+    }
+
+    /**
+    * Iterative Deepening d'un ajudant, fins que s'esgota el temps o el principal l'atura.
+    */
+    private void cercaAjudant(HexGameStatus s, long hash) {
+       _profCompletada = 0;
+       _millorCompletat = TranspositionTable.SENSE_JUGADA;
+       int buides = s.getMoves().size();
+       for (int prof = 1 + (_desplacament & 1); prof <= buides; prof++) {
+           _profActual = prof;
+           try {
+               _millorCompletat = realizarBusqueda(s, hash, prof);
+               _profCompletada = prof;
+           } catch (TimeoutException e) {
+               return;
+           }
+       }
+    }
+
+    /**
+    * Atura els ajudants i es queda amb el moviment de la profunditat completada més gran.
+    *
+    * @param ajudes Les tasques dels ajudants.
+    * @param mejorMovimiento La casella del millor moviment del principal.
+    * @return El millor moviment del principal, o el d'un ajudant que hagi completat una
+    *         profunditat més gran.
+    */
+    private int recollirAjudants(List<ForkJoinTask<?>> ajudes, int mejorMovimiento) {
+       for (PlayerIDHexCalculators ajudant : _ajudants) {
+           ajudant.timeoutLimit = 0;
+       }
+       int profCompletada = _profActual - 1;
+       for (int k = 0; k < ajudes.size(); k++) {
+           ajudes.get(k).join();
+           PlayerIDHexCalculators ajudant = _ajudants.get(k);
+           _nNodes += ajudant._nNodes;
+           if (ajudant._profCompletada > profCompletada && ajudant._millorCompletat != TranspositionTable.SENSE_JUGADA) {
+               profCompletada = ajudant._profCompletada;
+               mejorMovimiento = ajudant._millorCompletat;
+           }
+       }
+       _profActual = profCompletada + 1;
+       return mejorMovimiento;
+    }
+
+    /**
+    * Cerca els fills de l'arrel amb una cota alfa compartida: cada fill es cerca amb la millor
+    * puntuació exacta trobada fins aleshores. Sense grup de fils (o amb un de sol) els fills es
+    * cerquen en ordre al fil que crida, de manera que el resultat és determinista. Amb més fils,
+    * el primer fill fixa la cota i la resta es reparteix entre els fils del grup, cadascun amb un
+    * jugador auxiliar amb els seus propis avaluadors. Si algun fil esgota el temps, la iteració
+    * sencera es descarta.
+    *
+    * @param arrel La posició de l'arrel.
+    * @param profundidad La profunditat de la iteració.
+    * @param movimientos Els moviments ordenats de l'arrel.
+    * @param perduts Els fills que les connexions virtuals ja donen per perduts.
+    * @param valors On es deixa el valor de cada fill.
+    * @param exactes On es deixa si el valor de cada fill és exacte o només una fita superior.
+    * @throws TimeoutException Si s'ha assolit el límit de temps en algun dels fills.
+    */
+    private void cercarFills(HexPosition arrel, int profundidad, int[] movimientos, boolean[] perduts,
+            int[] valors, boolean[] exactes) throws TimeoutException {
+       AtomicInteger alfa = new AtomicInteger(MENYS_INFINIT);
+       if (!enParalel() || valors.length <= 1) {
+           for (int i = 0; i < valors.length; i++) {
+               cercarFill(this, i, profundidad, movimientos, perduts, valors, exactes, alfa);
+           }
+           return;
+       }
+       cercarFill(this, 0, profundidad, movimientos, perduts, valors, exactes, alfa);
+       AtomicLong nodes = new AtomicLong();
+       AtomicBoolean esgotat = new AtomicBoolean();
+       _pool.submit(() -> IntStream.range(1, valors.length).parallel().forEach(i -> {
+           if (esgotat.get()) return;
+           PlayerIDHexCalculators treballador = agafarTreballador();
+           try {
+               treballador.prepararTreballador(this);
+               treballador.carregarPosicio(arrel);
+               treballador._incremental.reiniciar(arrel);
+               cercarFill(treballador, i, profundidad, movimientos, perduts, valors, exactes, alfa);
+           } catch (TimeoutException e) {
+               esgotat.set(true);
+           } finally {
+               nodes.addAndGet(treballador._nNodes);
+               _treballadors.offer(treballador);
+           }
+       })).join();
+       _nNodes += nodes.get();
+       if (esgotat.get()) {
+           timeoutTriggered = true;
+           throw new TimeoutException("S'ha assolit el límit de temps durant la cerca en paral·lel.");
+       }
+    }
+
+    /**
+    * Cerca un fill de l'arrel amb el jugador indicat i, si el valor és exacte, apuja la cota compartida.
+    */
+    private void cercarFill(PlayerIDHexCalculators jugador, int i, int profundidad, int[] movimientos,
+            boolean[] perduts, int[] valors, boolean[] exactes, AtomicInteger alfa) throws TimeoutException {
+       if (perduts[i]) {
+           valors[i] = MENYS_INFINIT;
+           return;
+       }
+       // La finestra comença just per sota de la cota perquè els empats també siguin exactes i
+       // es desfacin per l'ordre dels fills, com a la cerca seqüencial
+       int cota = alfa.get();
+       int finestra = (cota == MENYS_INFINIT) ? cota : cota - 1;
+       // Si salta el timeout la posició queda a mitges: la següent iteració la torna a carregar
+       int casella = movimientos[i];
+       HexPosition posicio = jugador._posicio;
+       posicio.play(casella);
+       jugador._incremental.push(casella, _colorPlayer);
+       int valor = jugador.MIN(posicio, profundidad - 1, finestra, INFINIT, posicio.getHash());
+       jugador._incremental.pop();
+       posicio.undo();
+       valors[i] = valor;
+       exactes[i] = valor > finestra;
+       if (exactes[i]) {
+           alfa.accumulateAndGet(valor, Math::max);
+       }
+    }
+
+    /**
+    * Carrega un estat a la posició de la cerca. Si la posició ja el conté sense cap jugada
+    * pendent (el mateix hash), no es torna a llegir el tauler.
+    *
+    * @param estat L'estat a carregar.
+    * @return La posició de la cerca.
+    */
+    private HexPosition carregarPosicio(HexGameStatus estat) {
+       return carregarPosicio(_adaptador.llegir(estat));
+    }
+
+    /**
+    * Com {@link #carregarPosicio(HexGameStatus)}, a partir d'un tauler qualsevol: si és la mateixa
+    * posició d'un altre fil, se'n copia l'estat.
+    */
+    private HexPosition carregarPosicio(HexBoard estat) {
+       if (_posicio == null || _posicio.getSize() != estat.getSize()) {
+           _posicio = new HexPosition(estat);
+       } else if (!(estat instanceof HexPosition) || _posicio.getHash() != ((HexPosition) estat).getHash()) {
+           _posicio.carregar(estat);
+       }
+       return _posicio;
+    }
+
+    /**
+    * @return Si l'arrel es reparteix entre més d'un fil.
+    */
+    private boolean enParalel() {
+       return _pool != null && _pool.getParallelism() > 1;
+    }
+
+    /**
+    * @return Un jugador auxiliar lliure, o un de nou si no n'hi ha cap.
+    */
+    private PlayerIDHexCalculators agafarTreballador() {
+       PlayerIDHexCalculators treballador = _treballadors.poll();
+       return (treballador != null) ? treballador : new PlayerIDHexCalculators(this);
+    }
+
+    /**
+    * Copia del jugador principal l'estat de la iteració i la configuració que fa servir la cerca.
+    *
+    * @param principal Jugador principal.
+    */
+    private void prepararTreballador(PlayerIDHexCalculators principal) {
+       _Player = principal._Player;
+       _colorPlayer = principal._colorPlayer;
+       _perspectiva = principal._perspectiva;
+       _nMoves = principal._nMoves;
+       _profActual = principal._profActual;
+       timeoutLimit = principal.timeoutLimit;
+       timeoutTriggered = false;
+       _avaluacioPerezosa = principal._avaluacioPerezosa;
+       _ordenacioPerMapes = principal._ordenacioPerMapes;
+       _connexionsVirtuals = principal._connexionsVirtuals;
+       _podaInferiors = principal._podaInferiors;
+       _regioObligada = principal._regioObligada;
+       _zonaRellevant = principal._zonaRellevant;
+       _zona.setFolga(principal._zona.getFolga());
+       if (_entradesCache != principal._entradesCache) {
+           setMidaCacheAvaluacio(principal._entradesCache);
+       }
+       // La taula no fa servir bloquejos: treballadors i ajudants comparteixen la del principal
+       transpositionTable = principal.transpositionTable;
+       int mida = principal._incremental.getMidaTauler();
+       if (_incremental.getMidaTauler() != mida) {
+           crearAvaluadors(mida);
+       }
+       _nNodes = 0;
+    }
+
     /**
     * Implementa la funció MIN de l'algorisme Minimax amb poda Alfa-Beta.
     *
-    * @param estado L'estat actual del tauler.
+    * @param estado La posició de la cerca, que es modifica i es restaura en cada fill.
     * @param profundidad La profunditat actual de la recerca.
     * @param alfa El valor d'alfa (cota inferior) per a la poda.
     * @param beta El valor de beta (cota superior) per a la poda.
@@ -222,7 +598,7 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     * @return El valor heurístic mínim calculat en aquesta branca.
     * @throws TimeoutException Si s'ha assolit el límit de temps durant la recerca.
     */
-    private int MIN(HexGameStatus estado, int profundidad, int alfa, int beta, long hash) throws TimeoutException {
+    private int MIN(HexPosition estado, int profundidad, int alfa, int beta, long hash) throws TimeoutException {
        // Verifica si s'ha superat el límit de temps
        if (System.currentTimeMillis() >= timeoutLimit) {
            timeoutTriggered = true;
@@ -238,20 +614,22 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
        }
 
        // Consultar la taula de transposició
-       TranspositionTable.TableEntry entry = transpositionTable.lookup(hash);
-       Point mejorPunto = null;
+       TranspositionTable.TableEntry entry = transpositionTable.lookup(hash ^ _perspectiva, _entradaTT) ? _entradaTT : null;
+       _consultesTaula++;
+       if (entry != null) _encertsTaula++;
+       int mejorJugada = TranspositionTable.SENSE_JUGADA;
        if (entry != null) {
            switch (entry.flag) {
                case TranspositionTable.alfa:
                    if (entry.value > alfa) {
                        alfa = entry.value;
-                       mejorPunto = entry.bestMove;
+                       mejorJugada = entry.bestMove;
                    }
                    break;
                case TranspositionTable.beta:
                    if (entry.value < beta) {
                        beta = entry.value;
-                       mejorPunto = entry.bestMove;
+                       mejorJugada = entry.bestMove;
                    }
                    break;
                default:
@@ -266,33 +644,34 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
 
        // Si s'ha arribat a la profunditat màxima o a un estat terminal
        if (profundidad == 0 || estado.isGameOver()) {
-           return heuristica(estado, _colorPlayer); // Calcula la heurística
+           return heuristicaIncremental(estado, _colorPlayer, hash, alfa, beta); // Calcula la heurística
        }
 
        int mejorValor = INFINIT;
 
        // Ordenar moviments basant-se en una heurística
-       List<MoveNode> movimientos = ordenarMovimientosRapido(estado);
-       int numMovimientosEvaluar = Math.min(movimientos.size(), 200/_profActual);
+       int[] movimientos = ordenarMovimientosRapido(estado, candidats(estado));
+       int numMovimientosEvaluar = Math.min(movimientos.length, 200/_profActual);
 
        // Explorar cada moviment ordenat
        for (int i = 0; i < numMovimientosEvaluar; i++) {
-           MoveNode movimiento = movimientos.get(i);
-           Point punto = movimiento.getPoint();
+           int casella = movimientos[i];
 
-           // Crear un nou estat per al moviment actual
-           HexGameStatus estadoAux = new HexGameStatus(estado);
-           long newHash = ZobristHashing.updateHash(hash, punto, estado.getPos(punto.x, punto.y), estado.getCurrentPlayerColor());
-           estadoAux.placeStone(punto);
+           // Jugar el moviment actual sobre la posició
+           int color = estado.getCurrentPlayerColor();
+           estado.play(casella);
+           _incremental.push(casella, color);
 
            // Calcular el valor de MAX per al moviment actual
-           int valor = MAX(estadoAux, profundidad - 1, alfa, beta, newHash);
+           int valor = MAX(estado, profundidad - 1, alfa, beta, estado.getHash());
+           _incremental.pop();
+           estado.undo();
            mejorValor = Math.min(mejorValor, valor);
            beta = Math.min(beta, mejorValor);
 
            // Poda si beta és menor o igual que alfa
            if (beta <= alfa) {
-               transpositionTable.store(hash, profundidad, beta, TranspositionTable.beta, mejorPunto);
+               transpositionTable.store(hash ^ _perspectiva, profundidad, beta, TranspositionTable.beta, mejorJugada);
                return mejorValor; // Retorna immediatament
            }
        }
@@ -304,7 +683,7 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     /**
      * Implementa la funció MAX de l'algorisme Minimax amb poda Alfa-Beta.
      *
-     * @param estado L'estat actual del tauler.
+     * @param estado La posició de la cerca, que es modifica i es restaura en cada fill.
      * @param profundidad La profunditat actual de la recerca.
      * @param alfa El valor d'alfa (cota inferior) per a la poda.
      * @param beta El valor de beta (cota superior) per a la poda.
@@ -312,7 +691,7 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
      * @return El valor heurístic màxim calculat en aquesta branca.
      * @throws TimeoutException Si s'ha assolit el límit de temps durant la recerca.
      */
-    private int MAX(HexGameStatus estado, int profundidad, int alfa, int beta, long hash) throws TimeoutException {
+    private int MAX(HexPosition estado, int profundidad, int alfa, int beta, long hash) throws TimeoutException {
         // Comprovar si s'ha superat el límit de temps
         if (System.currentTimeMillis() >= timeoutLimit) {
             timeoutTriggered = true;
@@ -328,17 +707,19 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
         }
 
         // Consultar la taula de transposició
-        TranspositionTable.TableEntry entry = transpositionTable.lookup(hash);
-        Point mejorPunto = null;
+        TranspositionTable.TableEntry entry = transpositionTable.lookup(hash ^ _perspectiva, _entradaTT) ? _entradaTT : null;
+        _consultesTaula++;
+        if (entry != null) _encertsTaula++;
+        int mejorJugada = TranspositionTable.SENSE_JUGADA;
         if (entry != null) {
             switch (entry.flag) {
                 case TranspositionTable.alfa:
                     alfa = Math.max(alfa, entry.value);
-                    mejorPunto = entry.bestMove;
+                    mejorJugada = entry.bestMove;
                     break;
                 case TranspositionTable.beta:
                     beta = Math.min(beta, entry.value);
-                    mejorPunto = entry.bestMove;
+                    mejorJugada = entry.bestMove;
                     break;
                 default:
                     break;
@@ -352,33 +733,34 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
 
         // Si s'ha arribat a la profunditat màxima o a un estat terminal
         if (profundidad == 0 || estado.isGameOver()) {
-            return heuristica(estado, _colorPlayer); // Calcula la heurística
+            return heuristicaIncremental(estado, _colorPlayer, hash, alfa, beta); // Calcula la heurística
         }
 
         int mejorValor = MENYS_INFINIT;
 
         // Ordenar moviments basant-se en una heurística
-        List<MoveNode> movimientos = ordenarMovimientosRapido(estado);
-        int numMovimientosEvaluar = Math.min(movimientos.size(), 200/_profActual);
+        int[] movimientos = ordenarMovimientosRapido(estado, candidats(estado));
+        int numMovimientosEvaluar = Math.min(movimientos.length, 200/_profActual);
 
         // Explorar cada moviment ordenat
         for (int i = 0; i < numMovimientosEvaluar; i++) {
-            MoveNode movimiento = movimientos.get(i);
-            Point punto = movimiento.getPoint();
+            int casella = movimientos[i];
 
-            // Crear un nou estat per al moviment actual
-            HexGameStatus estadoAux = new HexGameStatus(estado);
-            long newHash = ZobristHashing.updateHash(hash, punto, estado.getPos(punto.x, punto.y), estado.getCurrentPlayerColor());
-            estadoAux.placeStone(punto);
+            // Jugar el moviment actual sobre la posició
+            int color = estado.getCurrentPlayerColor();
+            estado.play(casella);
+            _incremental.push(casella, color);
 
             // Calcular el valor de MIN per al moviment actual
-            int valor = MIN(estadoAux, profundidad - 1, alfa, beta, newHash);
+            int valor = MIN(estado, profundidad - 1, alfa, beta, estado.getHash());
+            _incremental.pop();
+            estado.undo();
             mejorValor = Math.max(mejorValor, valor);
             alfa = Math.max(alfa, mejorValor);
 
             // Poda si beta és menor o igual que alfa
             if (beta <= alfa) {
-                transpositionTable.store(hash, profundidad, alfa, TranspositionTable.alfa, mejorPunto);
+                transpositionTable.store(hash ^ _perspectiva, profundidad, alfa, TranspositionTable.alfa, mejorJugada);
                 return mejorValor; // Retorna immediatament
             }
         }
@@ -389,35 +771,72 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
 
 
     /**
-    * Ordena els moviments disponibles en funció d'una heurística calculada per cada moviment.
+    * Genera els moviments candidats d'un estat, sense les caselles mortes i capturades si la
+    * poda de caselles inferiors està activada. Si el contrari amenaça de connectar, es limiten
+    * a la regió obligada; si no, a la zona rellevant, quan està activada.
     *
     * @param estado L'estat actual del tauler de joc.
-    * @return Una llista de moviments ordenats segons la seva puntuació heurística, de major a menor.
+    * @return Les caselles candidates, en l'ordre de {@link HexGameStatus#getMoves()}.
+    */
+    private int[] candidats(HexPosition estado) {
+        int[] movimientos = estado.getCasellesBuides();
+        if (_podaInferiors) {
+            if (_inferiors.getMidaTauler() != estado.getSize()) {
+                _inferiors = new InferiorCells(estado.getSize());
+            }
+            movimientos = _inferiors.podar(estado, movimientos);
+        }
+        if (_regioObligada) {
+            int[] obligats = _obligada.podar(estado, movimientos);
+            if (obligats != movimientos) {
+                return obligats;
+            }
+        }
+        if (_zonaRellevant) {
+            movimientos = _zona.podar(estado, movimientos);
+        }
+        return movimientos;
+    }
+
+    /**
+    * Ordena una llista de moviments candidats en funció d'una heurística calculada per cada moviment.
+    *
+    * @param estado La posició actual, que es modifica i es restaura per puntuar cada fill.
+    * @param movimientos Caselles candidates de l'estat.
+    * @return Les caselles ordenades segons la seva puntuació heurística, de major a menor.
     */
-    private List<MoveNode> ordenarMovimientos(HexGameStatus estado) {
-       // Obtenir la llista inicial de moviments disponibles
-       List<MoveNode> movimientos = estado.getMoves();
-
-       // Ordenar la llista de moviments segons la seva puntuació heurística
-       movimientos.sort((a, b) -> {
-           // Crear còpies independents de l'estat per simular moviments
-           HexGameStatus estadoA = new HexGameStatus(estado);
-           HexGameStatus estadoB = new HexGameStatus(estado);
-
-           // Aplicar els moviments simulats als estats temporals
-           estadoA.placeStone(a.getPoint());
-           estadoB.placeStone(b.getPoint());
-           
-           // Calcular les heurístiques per als estats resultants
-           int valorA = heuristica(estadoA, _colorPlayer);
-           int valorB = heuristica(estadoB, _colorPlayer);
-           
-           // Comparar els valors heurístics per determinar l'ordre (de major a menor)
-           return Integer.compare(valorB, valorA); 
-       });
-       
-       // Retornar la llista ordenada de moviments
-       return movimientos;
+    private int[] ordenarMovimientos(HexPosition estado, int[] movimientos) {
+
+       // Avaluar cada moviment un sol cop. La clau porta la puntuació complementada (~valor) a la part
+       // alta i la posició original a la baixa, de manera que ordenar les claus equival a una ordenació
+       // estable de major a menor puntuació
+       long[] claus = new long[movimientos.length];
+       if (_ordenacioPerMapes) {
+           // Quatre cerques puntuen totes les caselles alhora, sense simular cap moviment
+           int[] puntuaciones = _dijkstra.puntuarCaselles(estado, _colorPlayer);
+           for (int i = 0; i < claus.length; i++) {
+               int valor = puntuaciones[movimientos[i]];
+               claus[i] = ((long) ~valor << 32) | i;
+           }
+       } else if (enParalel()) {
+           // Cada fil puntua els seus moviments amb els avaluadors d'un jugador auxiliar
+           _pool.submit(() -> IntStream.range(0, claus.length).parallel().forEach(i -> {
+               PlayerIDHexCalculators treballador = agafarTreballador();
+               try {
+                   treballador.prepararTreballador(this);
+                   int valor = treballador.heuristicaFill(treballador.carregarPosicio(estado), movimientos[i], _colorPlayer);
+                   claus[i] = ((long) ~valor << 32) | i;
+               } finally {
+                   _treballadors.offer(treballador);
+               }
+           })).join();
+       } else {
+           for (int i = 0; i < claus.length; i++) {
+               int valor = heuristicaFill(estado, movimientos[i], _colorPlayer);
+               claus[i] = ((long) ~valor << 32) | i;
+           }
+       }
+       return ordenarPerClaus(movimientos, claus);
     }
 
     /**
@@ -430,8 +849,91 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     */
     public int heuristica(HexGameStatus estado, int color) {
         // Obtenir els resultats del Dijkstra per al jugador actual
-        Dijkstra result = _dijkstra.shortestPathWithVirtualNodes(estado, color);
+        Dijkstra result = _dijkstra.calcular(estado, color);
+
+        return valorar(result, estado.getSize());
+    }
 
+    /**
+    * Calcula la mateixa heurística que {@link #heuristica(HexGameStatus, int)} a partir dels
+    * mapes de distàncies de l'avaluador incremental, que ja reflecteixen l'estat de la fulla.
+    * Les mètriques es consulten primer a la memòria cau d'avaluacions.
+    *
+    * Amb l'avaluació mandrosa, si la reparació dels mapes que ha deixat pendent l'últim moviment
+    * no pot canviar el resultat respecte de la finestra, no es fa: a partir de les fites de les
+    * mètriques es calcula l'interval del valor i, si queda tot per sota d'alfa o per sobre de
+    * beta, es retorna l'extrem corresponent (fail-soft). Només es desen a la memòria cau les
+    * mètriques exactes.
+    *
+    * @param estado L'estat actual del tauler de joc (ha de coincidir amb l'avaluador incremental).
+    * @param color El color del jugador que avaluarà l'estat (1 o -1).
+    * @param hash El hash Zobrist de l'estat.
+    * @param alfa El valor alfa de la finestra del node.
+    * @param beta El valor beta de la finestra del node.
+    * @return El valor heurístic de l'estat, o una fita d'aquest fora de la finestra.
+    */
+    private int heuristicaIncremental(HexBoard estado, int color, long hash, int alfa, int beta) {
+        _nFulles++;
+        int midaTauler = estado.getSize();
+        if (_cacheAvaluacio.lookup(hash, color, _dijkstra)) {
+            return valorar(_dijkstra, midaTauler);
+        }
+        if (!_avaluacioPerezosa) {
+            _incremental.metriques(color, _dijkstra);
+        } else if (!_incremental.metriquesFitades(color, _dijkstra, _fites)) {
+            // El valor creix amb el camí enemic i els camins viables propis i decreix amb els altres dos
+            int maxim = valorarFita(_dijkstra.shortestPath, _fites.viablePathsCount,
+                    _fites.enemyShortestPath, _dijkstra.viableEnemyPathsCount, midaTauler);
+            if (maxim <= alfa) return maxim;
+            int minim = valorarFita(_fites.shortestPath, _dijkstra.viablePathsCount,
+                    _dijkstra.enemyShortestPath, _fites.viableEnemyPathsCount, midaTauler);
+            if (minim >= beta) return minim;
+            _incremental.metriques(color, _dijkstra);
+        }
+        _cacheAvaluacio.store(hash, color, _dijkstra);
+        return valorar(_dijkstra, midaTauler);
+    }
+
+    /**
+    * Valora una combinació de fites de les mètriques amb els pesos de {@link #valorar(Dijkstra, int)}.
+    * Una distància no fitada (Integer.MAX_VALUE) es tracta com un camí tallat: si és l'enemic,
+    * el valor no té fita superior; si és el propi, no en té d'inferior.
+    */
+    private int valorarFita(int caminoPropio, int caminosViables, int caminoEnemigo, int caminosViablesEnemigo, int midaTauler) {
+        if (caminoPropio == 0 || caminoEnemigo == Integer.MAX_VALUE) return INFINIT;
+        if (caminoEnemigo == 0 || caminoPropio == Integer.MAX_VALUE) return MENYS_INFINIT;
+        return (10 * (midaTauler - caminoPropio)) + (3 * caminosViables)
+             - (7 * (midaTauler - caminoEnemigo)) - (3 * caminosViablesEnemigo);
+    }
+
+    /**
+    * Calcula la heurística de l'estat que resulta de jugar un moviment. El moviment es juga i es
+    * desfà sobre la posició, i el Dijkstra només s'executa si les mètriques del fill no són a la
+    * memòria cau.
+    *
+    * @param estado La posició actual.
+    * @param casella La casella a simular.
+    * @param color El color del jugador que avaluarà l'estat (1 o -1).
+    * @return El valor heurístic de l'estat resultant per al jugador especificat.
+    */
+    private int heuristicaFill(HexPosition estado, int casella, int color) {
+        estado.play(casella);
+        if (!_cacheAvaluacio.lookup(estado.getHash(), color, _dijkstra)) {
+            _dijkstra.calcular(estado, color);
+            _cacheAvaluacio.store(estado.getHash(), color, _dijkstra);
+        }
+        estado.undo();
+        return valorar(_dijkstra, estado.getSize());
+    }
+
+    /**
+    * Combina les mètriques del Dijkstra en el valor heurístic.
+    *
+    * @param result Mètriques calculades per al jugador que avalua.
+    * @param midaTauler Mida del tauler.
+    * @return Un valor heurístic; els valors més alts són favorables.
+    */
+    private int valorar(Dijkstra result, int midaTauler) {
         // Variables que descriuen els camins rellevants
         int caminoPropio = result.shortestPath; // Camí més curt cap a la victòria del jugador
         int caminosViables = result.viablePathsCount; // Nombre de camins viables del jugador
@@ -449,9 +951,9 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
         if (caminoEnemigo == 0) return MENYS_INFINIT;
 
         // Càlcul de la puntuació heurística basada en diferents factors
-        return (10 * (estado.getSize() - caminoPropio)) 
+        return (10 * (midaTauler - caminoPropio)) 
              + (3 * caminosViables) 
-             - (7 * (estado.getSize() - caminoEnemigo))
+             - (7 * (midaTauler - caminoEnemigo))
              - (3 * caminosViablesEnemigo);
         //return 3*(caminoEnemigo - caminoPropio) + (caminosViables - caminosViablesEnemigo);
     }
@@ -467,20 +969,44 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     * @return Una llista de moviments ordenats de millor a pitjor segons la heurística ràpida.
     */
     public List<MoveNode> ordenarMovimientosRapido(HexGameStatus estado) {
-        // Obtenir la llista de moviments possibles
-        List<MoveNode> movimientos = estado.getMoves();
+        HexGeometry geometria = HexGeometry.of(estado.getSize());
+        return geometria.moviments(ordenarMovimientosRapido(_adaptador.llegir(estado), geometria.caselles(estado.getMoves())));
+    }
 
-        // Ordenar els moviments en funció de la heurística ràpida
-        movimientos.sort((a, b) -> {
-            // Calcular la heurística ràpida per a cada moviment
-            int valorA = heuristicaRapida(estado, a.getPoint());
-            int valorB = heuristicaRapida(estado, b.getPoint());
-            
-            // Comparar els valors heurístics per ordenar de major a menor
-            return Integer.compare(valorB, valorA);
-        });
+    /**
+    * Ordena unes caselles candidates segons la heurística ràpida.
+    *
+    * @param estado L'estat actual del joc.
+    * @param movimientos Caselles candidates de l'estat.
+    * @return Les caselles ordenades de millor a pitjor segons la heurística ràpida.
+    */
+    private int[] ordenarMovimientosRapido(HexBoard estado, int[] movimientos) {
+        // Cada casella es puntua un sol cop; les claus ordenen de major a menor i, en cas d'empat,
+        // mantenen l'ordre original
+        HexGeometry geometria = HexGeometry.of(estado.getSize());
+        long[] claus = new long[movimientos.length];
+        for (int i = 0; i < claus.length; i++) {
+            int valor = heuristicaRapida(estado, geometria, movimientos[i]);
+            claus[i] = ((long) ~valor << 32) | i;
+        }
+        return ordenarPerClaus(movimientos, claus);
+    }
 
-        return movimientos; // Retornar els moviments ordenats
+    /**
+    * Ordena unes caselles per les seves claus, que porten la puntuació complementada a la part
+    * alta i la posició original a la baixa.
+    *
+    * @param movimientos Caselles a ordenar.
+    * @param claus Clau de cada casella (es modifica).
+    * @return Les caselles ordenades de major a menor puntuació.
+    */
+    private static int[] ordenarPerClaus(int[] movimientos, long[] claus) {
+        Arrays.sort(claus);
+        int[] ordenados = new int[claus.length];
+        for (int i = 0; i < claus.length; i++) {
+            ordenados[i] = movimientos[(int) claus[i]];
+        }
+        return ordenados;
     }
 
     /**
@@ -495,12 +1021,22 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
     *         caselles més favorables.
     */
     public int heuristicaRapida(HexGameStatus estado, Point punto) {
+        HexGeometry geometria = HexGeometry.of(estado.getSize());
+        return heuristicaRapida(_adaptador.llegir(estado), geometria, geometria.index(punto.x, punto.y));
+    }
+
+    /**
+    * La heurística ràpida de {@link #heuristicaRapida(HexGameStatus, Point)} per a un índex de casella.
+    */
+    private int heuristicaRapida(HexBoard estado, HexGeometry geometria, int casella) {
         // Calcular la distància al centre del tauler (desavantatge per a caselles lluny del centre)
-        int distanciaCentro = Math.abs(punto.x - estado.getSize() / 2) + Math.abs(punto.y - estado.getSize() / 2);
-        // Avaluar els veïns de la casella
+        int distanciaCentro = geometria.distanciaCentre[casella];
+        // Avaluar els veïns de la casella (les vores virtuals no compten)
         int puntuacionVecinos = 0;
-        for (Point vecino : estado.getNeigh(punto)) {
-            int estadoVecino = estado.getPos(vecino.x, vecino.y);
+        for (int k = geometria.iniciVeins[casella]; k < geometria.iniciVeins[casella + 1]; k++) {
+            int vecino = geometria.veins[k];
+            if (vecino >= geometria.numCaselles) continue;
+            int estadoVecino = estado.getPos(geometria.x(vecino), geometria.y(vecino));
             if (estadoVecino == 0) { // Vecino vacío
                 puntuacionVecinos += 1;
             } else if (estadoVecino == estado.getCurrentPlayerColor()) { // Vecino nuestro
@@ -514,6 +1050,210 @@ public class PlayerIDHexCalculators implements IPlayer, IAuto {
         return -distanciaCentro + puntuacionVecinos;
     }
     
+    /**
+     * Canvia la mida de la memòria cau d'avaluacions. Es buida en fer-ho.
+     *
+     * @param entrades Nombre d'entrades (s'arrodoneix a potència de dos, fins a 2^28); 0 la desactiva.
+     */
+    public void setMidaCacheAvaluacio(int entrades) {
+        this._entradesCache = entrades;
+        this._cacheAvaluacio = new EvaluationCache(entrades);
+    }
+
+    /**
+     * Canvia la mida de la taula de transposició. Es buida en fer-ho.
+     *
+     * @param megabytes Memòria de la taula en MB; a partir de
+     *                  {@link TranspositionTable#MEGABYTES_FORA_HEAP} es guarda fora del heap.
+     */
+    public void setMidaTaulaTransposicio(int megabytes) {
+        this._megasTaula = megabytes;
+        this.transpositionTable = TranspositionTable.crear(megabytes);
+    }
+
+    /**
+     * Carrega la taula de transposició d'un fitxer desat amb
+     * {@link #desarTaulaTransposicio(Path)}. El fitxer es projecta a memòria sense copiar-lo: la
+     * cerca hi llegeix i hi escriu directament, i la taula es conserva d'una partida a l'altra.
+     *
+     * @param fitxer Fitxer de la taula.
+     * @return Si s'ha carregat; si el fitxer no hi és o és d'una altra mida de tauler o d'una altra
+     *         llavor Zobrist o d'un format anterior, es conserva la taula actual.
+     * @throws IOException Si el fitxer no es pot llegir.
+     */
+    public boolean carregarTaulaTransposicio(Path fitxer) throws IOException {
+        MappedTranspositionTable taula = MappedTranspositionTable.carregar(fitxer, _incremental.getMidaTauler());
+        if (taula == null) return false;
+        this.transpositionTable = taula;
+        this._megasTaula = taula.getMegabytes();
+        return true;
+    }
+
+    /**
+     * Desa la taula de transposició en un fitxer. Si la taula ja és la d'aquest fitxer, només hi
+     * força els canvis.
+     *
+     * @param fitxer Fitxer on es desa.
+     * @throws IOException Si el fitxer no es pot escriure.
+     */
+    public void desarTaulaTransposicio(Path fitxer) throws IOException {
+        transpositionTable.desar(fitxer, _incremental.getMidaTauler());
+    }
+
+    /**
+     * Indica si la taula de transposició es conserva d'una partida a l'altra, envellint les
+     * entrades per generacions, o es buida en començar-ne una.
+     *
+     * @param conservar Si s'ha de conservar; per defecte, sí.
+     */
+    public void setConservarTaula(boolean conservar) {
+        this._conservarTaula = conservar;
+    }
+
+    /**
+     * @return Consultes a la taula de transposició fetes per aquest jugador des que es va crear
+     *         (no hi compten les dels ajudants Lazy SMP).
+     */
+    public long getConsultesTaula() {
+        return _consultesTaula;
+    }
+
+    /**
+     * @return Consultes de {@link #getConsultesTaula()} que han trobat la posició a la taula.
+     */
+    public long getEncertsTaula() {
+        return _encertsTaula;
+    }
+
+    /**
+     * @return La taula de transposició del jugador (la compartida amb els ajudants Lazy SMP).
+     */
+    public TranspositionTable getTaulaTransposicio() {
+        return transpositionTable;
+    }
+
+    /**
+     * Tria com es puntuen els moviments de l'arrel: simulant cada moviment i avaluant-lo amb el
+     * Dijkstra (per defecte) o amb els mapes de distàncies de les dues vores, que puntuen totes
+     * les caselles amb quatre cerques.
+     *
+     * @param perMapes Si s'han de fer servir els mapes de distàncies.
+     */
+    public void setOrdenacioPerMapes(boolean perMapes) {
+        this._ordenacioPerMapes = perMapes;
+    }
+
+    /**
+     * Activa o desactiva l'avaluació mandrosa de les fulles fora de la finestra alfa-beta.
+     *
+     * @param perezosa Si les fulles es poden resoldre amb fites del seu valor.
+     */
+    public void setAvaluacioPerezosa(boolean perezosa) {
+        this._avaluacioPerezosa = perezosa;
+    }
+
+    /**
+     * Activa o desactiva les connexions virtuals a l'arrel: jugar directament una victòria
+     * demostrada i descartar sense explorar els fills que el contrari té guanyats.
+     *
+     * @param connexions Si s'han de fer servir les connexions virtuals.
+     */
+    public void setConnexionsVirtuals(boolean connexions) {
+        this._connexionsVirtuals = connexions;
+    }
+
+    /**
+     * Activa o desactiva la poda de caselles mortes i capturades als generadors de moviments.
+     *
+     * @param poda Si s'han de descartar les caselles inferiors.
+     */
+    public void setPodaInferiors(boolean poda) {
+        this._podaInferiors = poda;
+    }
+
+    /**
+     * Activa o desactiva la restricció dels candidats a la regió obligada quan el contrari
+     * amenaça de connectar.
+     *
+     * @param obligada Si s'han de descartar les jugades que no aturen l'amenaça.
+     */
+    public void setRegioObligada(boolean obligada) {
+        this._regioObligada = obligada;
+    }
+
+    /**
+     * @return La regió obligada, amb els seus comptadors de posicions i candidats.
+     */
+    public MustPlayRegion getRegioObligada() {
+        return _obligada;
+    }
+
+    /**
+     * Activa o desactiva la restricció dels candidats a la zona rellevant (les caselles a prop
+     * d'un camí mínim d'algun dels dos colors). La folga es canvia a {@link #getZonaRellevant()}.
+     *
+     * @param zona Si s'han de descartar les caselles de fora de la zona.
+     */
+    public void setZonaRellevant(boolean zona) {
+        this._zonaRellevant = zona;
+    }
+
+    /**
+     * @return La zona rellevant, amb la seva folga i els seus comptadors de candidats.
+     */
+    public RelevanceZone getZonaRellevant() {
+        return _zona;
+    }
+
+    /**
+     * Fixa el nombre de fils de la cerca Lazy SMP, comptant el principal. Amb més d'un fil, els
+     * ajudants repeteixen l'Iterative Deepening dins el mateix temps límit i comparteixen la taula
+     * de transposició del principal, que no fa servir bloquejos.
+     *
+     * @param fils Nombre de fils (1: només el principal, i s'aturen els dels ajudants).
+     */
+    public void setFils(int fils) {
+        this._fils = Math.max(1, fils);
+        if (_fils == 1) tancar();
+    }
+
+    /**
+     * Atura els fils dels ajudants de la cerca Lazy SMP i els deixa anar. El jugador es pot
+     * continuar fent servir: si té més d'un fil, els torna a crear a la jugada següent. El grup
+     * fixat amb {@link #setForkJoinPool} és de qui el crida i no es toca.
+     */
+    public void tancar() {
+        if (_poolAjudants != null) {
+            _poolAjudants.shutdown();
+            _poolAjudants = null;
+        }
+        _ajudants.clear();
+    }
+
+    /**
+     * Fixa el grup de fils on es reparteixen l'ordenació i la cerca dels fills de l'arrel. Amb
+     * null o amb un grup d'un sol fil, tot es fa al fil que crida i el resultat és determinista.
+     *
+     * @param pool Grup de fils, o null.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this._pool = pool;
+    }
+
+    /**
+     * @return Nombre de fulles avaluades des de la creació del jugador.
+     */
+    public long getFullesAvaluades() {
+        return _nFulles;
+    }
+
+    /**
+     * @return La memòria cau d'avaluacions, amb els seus comptadors d'encerts i fallades.
+     */
+    public EvaluationCache getCacheAvaluacio() {
+        return _cacheAvaluacio;
+    }
+
     @Override
     public String getName() {
         return _name;
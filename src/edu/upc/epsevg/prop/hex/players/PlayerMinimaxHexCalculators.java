@@ -9,10 +9,15 @@ import edu.upc.epsevg.prop.hex.PlayerType;
 import edu.upc.epsevg.prop.hex.SearchType;
 
 import java.awt.Point;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 /**
  * Classe que implementa un jugador utilitzant l'algoritme Minimax amb millores com taules de transposició i heurístiques personalitzades.
@@ -47,9 +52,10 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
      */
     private int _nMoves;
     /**
-     * Hash inicial del tauler buit, per poder detectar quan comença una partida continuada.
+     * Pedres que hi havia al tauler a l'última jugada, per poder detectar quan comença una
+     * partida nova.
      */
-    private long _hashTableroVacio;
+    private int _pedresAnteriors;
     /**
      * Nombre de nodes explorats durant l'execució de l'algoritme Minimax per al moviment actual.
      */
@@ -62,6 +68,111 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
      * Algoritme de Dijkstra utilitzat per calcular camins més curts i heurístiques.
      */
     private Dijkstra _dijkstra;
+    /**
+     * Mapes de distàncies mantinguts incrementalment al llarg del camí de la cerca.
+     */
+    private IncrementalDijkstra _incremental;
+    /**
+     * Memòria cau de les mètriques del Dijkstra indexada pel hash Zobrist de la posició.
+     */
+    private EvaluationCache _cacheAvaluacio;
+    /**
+     * Nombre d'entrades de la memòria cau d'avaluacions (0 la desactiva).
+     */
+    private int _entradesCache = EvaluationCache.ENTRADES_PER_DEFECTE;
+    /**
+     * Memòria de la taula de transposició, en MB.
+     */
+    private int _megasTaula = TranspositionTable.MEGABYTES_PER_DEFECTE;
+    /**
+     * Si la taula de transposició es conserva d'una partida a l'altra.
+     */
+    private boolean _conservarTaula = true;
+    /**
+     * Consultes a la taula de transposició d'aquest jugador, i les que hi han trobat la posició.
+     */
+    private long _consultesTaula, _encertsTaula;
+    /**
+     * Si l'ordenació de l'arrel puntua els moviments amb els mapes de distàncies de les dues vores.
+     */
+    private boolean _ordenacioPerMapes = false;
+    /**
+     * Si les fulles fora de la finestra alfa-beta es resolen amb fites en lloc del valor exacte.
+     */
+    private boolean _avaluacioPerezosa = true;
+    /**
+     * Fites superiors de les mètriques d'una fulla (les inferiors es deixen a {@link #_dijkstra}).
+     */
+    private Dijkstra _fites;
+    /**
+     * Nombre de fulles avaluades des de la creació del jugador.
+     */
+    private long _nFulles;
+    /**
+     * Connexions virtuals (H-search) per demostrar victòries abans que acabi la partida.
+     */
+    private VirtualConnections _connexions;
+    /**
+     * Si l'arrel fa servir les connexions virtuals.
+     */
+    private boolean _connexionsVirtuals = true;
+    /**
+     * Anàlisi de caselles mortes i capturades per podar els moviments candidats.
+     */
+    private InferiorCells _inferiors;
+    /**
+     * Si els generadors de moviments descarten les caselles inferiors.
+     */
+    private boolean _podaInferiors = true;
+    /**
+     * Regió obligada quan el contrari amenaça de connectar.
+     */
+    private MustPlayRegion _obligada;
+    /**
+     * Si els generadors de moviments es limiten a la regió obligada.
+     */
+    private boolean _regioObligada = true;
+    /**
+     * Zona rellevant: caselles a prop d'un camí mínim d'algun dels dos colors.
+     */
+    private RelevanceZone _zona = new RelevanceZone();
+    /**
+     * Si els generadors de moviments es limiten a la zona rellevant.
+     */
+    private boolean _zonaRellevant = false;
+    /**
+     * Grup de fils on es reparteixen l'ordenació i la cerca dels fills de l'arrel (null: tot al fil que crida).
+     */
+    private ForkJoinPool _pool;
+    /**
+     * Jugadors auxiliars lliures, amb els seus propis avaluadors, per als fils del grup (els
+     * auxiliars comparteixen la del jugador principal).
+     */
+    private ConcurrentLinkedQueue<PlayerMinimaxHexCalculators> _treballadors = new ConcurrentLinkedQueue<>();
+    /**
+     * Si els nodes interiors es parteixen entre els fils del grup (Young Brothers Wait).
+     */
+    private boolean _puntsParticio = false;
+    /**
+     * Profunditat restant mínima d'un punt de partició: per sota, els germans són massa petits.
+     */
+    private static final int PROF_MIN_PARTICIO = 2;
+    /**
+     * Jugador auxiliar: punt de partició on cerca, o null per al jugador principal.
+     */
+    private Particio _particio;
+    /**
+     * Valor Minimax de l'última jugada.
+     */
+    private int _ultimValor;
+    /**
+     * Posició mutable on la cerca juga i desfà els moviments.
+     */
+    private HexPosition _posicio;
+    /**
+     * Tauler que llegeix l'estat de les crides amb HexGameStatus.
+     */
+    private final HexBoard.Adaptador _adaptador = new HexBoard.Adaptador();
     /**
      * Profunditat explorada durant la recerca actual amb l'algoritme Minimax.
      */
@@ -70,6 +181,15 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
      * Taula de transposició utilitzada per guardar i reutilitzar resultats d'estats ja explorats.
      */
     private TranspositionTable transpositionTable;
+    /**
+     * Entrada on es deixen les consultes a la taula de transposició.
+     */
+    private final TranspositionTable.TableEntry _entradaTT = new TranspositionTable.TableEntry();
+    /**
+     * Valor que es combina amb el hash a la taula de transposició segons el color que cerca, perquè
+     * els valors d'una partida amb l'altre color no es barregin.
+     */
+    private long _perspectiva;
 
     /**
     * Constructor de la classe PlayerMinimaxHexCalculators.
@@ -104,20 +224,79 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
         this._nNodes = 0;
         this._totalTime = 0;
 
-        // Inicialització de l'algoritme de Dijkstra
-        this._dijkstra = new Dijkstra();
-
-        // Inicialització de la taula de transposició per optimitzar càlculs
-        this.transpositionTable = new TranspositionTable();
-
-        // Creació d'un estat inicial buit del tauler
-        HexGameStatus s = new HexGameStatus(boardSize);
+        // Inicialització dels avaluadors i de la taula de transposició
+        crearAvaluadors(boardSize);
+        reiniciarTaula();
 
         // Configuració del hashing Zobrist segons la mida del tauler
         ZobristHashing.setBoardSize(boardSize);
+    }
+
+    /**
+    * @param s Estat del tauler.
+    * @return Nombre de pedres al tauler.
+    */
+    private static int comptarPedres(HexGameStatus s) {
+        int pedres = 0;
+        for (int x = 0; x < s.getSize(); x++) {
+            for (int y = 0; y < s.getSize(); y++) {
+                if (s.getPos(x, y) != 0) pedres++;
+            }
+        }
+        return pedres;
+    }
+
+    /**
+    * Crea els avaluadors d'una mida de tauler.
+    *
+    * @param boardSize Mida del tauler.
+    */
+    private void crearAvaluadors(int boardSize) {
+        // Inicialització de l'algoritme de Dijkstra
+        this._dijkstra = new Dijkstra();
+        this._fites = new Dijkstra();
+        this._connexions = new VirtualConnections(boardSize);
+        this._inferiors = new InferiorCells(boardSize);
+        this._obligada = new MustPlayRegion();
+        this._incremental = new IncrementalDijkstra(boardSize);
+        this._cacheAvaluacio = new EvaluationCache(_entradesCache);
+    }
+
+    /**
+    * Prepara la taula de transposició per a una partida nova, o la crea si encara no n'hi ha cap
+    * de la mida demanada. Si s'ha de conservar, només en comença una generació nova:
+    * les obertures es repeteixen d'una partida a l'altra, i les entrades de partides anteriors
+    * es continuen trobant fins que les d'aquesta les substitueixen. Si no, es buida (excepte la
+    * carregada d'un fitxer, que sempre es conserva).
+    * Les entrades d'una partida amb l'altre color no es troben, perquè la clau inclou el color que
+    * cerca ({@link ZobristHashing#perspectiva}).
+    */
+    private void reiniciarTaula() {
+        if (transpositionTable != null && (transpositionTable.isPersistent()
+                || transpositionTable.getMegabytes() == _megasTaula)) {
+            if (_conservarTaula) {
+                transpositionTable.novaGeneracio();
+            } else if (!transpositionTable.isPersistent()) {
+                transpositionTable.clear();
+            }
+        } else {
+            transpositionTable = TranspositionTable.crear(_megasTaula);
+        }
+    }
 
-        // Càlcul del hash inicial del tauler buit
-        this._hashTableroVacio = ZobristHashing.calculateHash(s);
+    /**
+    * Crea un jugador auxiliar per a un fil de la cerca en paral·lel, amb els seus propis
+    * avaluadors. No torna a generar la taula Zobrist, que és compartida. La configuració del
+    * jugador principal i la taula de transposició les posa {@link #prepararTreballador}, que
+    * s'ha de cridar abans de fer-lo servir.
+    *
+    * @param principal Jugador principal.
+    */
+    private PlayerMinimaxHexCalculators(PlayerMinimaxHexCalculators principal) {
+        this._name = principal._name;
+        this._entradesCache = principal._entradesCache;
+        this._treballadors = principal._treballadors;
+        crearAvaluadors(principal._incremental.getMidaTauler());
     }
 
     /**
@@ -134,14 +313,17 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
         _nMoves++;
         _Player = s.getCurrentPlayer();
         _colorPlayer = s.getCurrentPlayerColor();
+        _perspectiva = ZobristHashing.perspectiva(_colorPlayer);
         long initialTime = System.currentTimeMillis();
         
         
         // Calcula el hash inicial de l'estat del tauler
         long hash = ZobristHashing.calculateHash(s);
         
-        // Comprova si el tauler ha estat reiniciat (nova partida)
-        if(_hashTableroVacio==hash && _nMoves!=1){
+        // Comprova si el tauler ha estat reiniciat (nova partida): hi ha menys pedres que a la
+        // jugada anterior, o menys de dues (el segon jugador no veu mai el tauler buit)
+        int pedres = comptarPedres(s);
+        if((pedres < 2 || pedres < _pedresAnteriors) && _nMoves!=1){
             /*double estadistica = (double)_totalTime/_nMoves;
             System.out.println("Tiempo total del juego en ms: " + _totalTime);
             System.out.println("Numero total de movimientos: " + _nMoves);
@@ -149,34 +331,61 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
             init(_name, _profMax, s.getSize());
             _nMoves++;
         }
+        _pedresAnteriors = pedres;
              
+        // Carrega l'estat arrel a la posició de la cerca i a l'avaluador incremental
+        HexPosition posicio = carregarPosicio(s);
+        HexGeometry geometria = HexGeometry.of(s.getSize());
+        if (_incremental.getMidaTauler() != s.getSize()) {
+            _incremental = new IncrementalDijkstra(s.getSize());
+        }
+        _incremental.reiniciar(s);
+
+        // Si les connexions virtuals ja demostren la victòria, es juga la jugada que la conserva
+        if (_connexionsVirtuals) {
+            if (_connexions.getMidaTauler() != s.getSize()) {
+                _connexions = new VirtualConnections(s.getSize());
+            }
+            int guanyadora = _connexions.jugadaGuanyadora(s, hash);
+            if (guanyadora >= 0) {
+                _totalTime += System.currentTimeMillis() - initialTime;
+                _ultimValor = INFINIT;
+                return new PlayerMove(geometria.punt(guanyadora),
+                        _nNodes, 0, SearchType.MINIMAX);
+            }
+        }
+
         // Ordena els moviments segons la heurística apropiada
-        List<MoveNode> movimientos;
+        int[] movimientos;
         if(_nMoves < 3){
-            movimientos = ordenarMovimientosRapido(s); // Utilitza una heurística ràpida al començament
+            movimientos = ordenarMovimientosRapido(posicio, candidats(posicio)); // Utilitza una heurística ràpida al començament
         } else {
-            movimientos = ordenarMovimientos(s); // Utilitza una heurística més precisa després
+            movimientos = ordenarMovimientos(posicio, candidats(posicio)); // Utilitza una heurística més precisa després
         }
         
         // Determina el número màxim de moviments a avaluar
-        int numMovimientosEvaluar = Math.min(movimientos.size(), (150/_profMax));
-        Point mejorMovimiento = movimientos.get(movimientos.size()/2).getPoint();
+        int numMovimientosEvaluar = Math.min(movimientos.length, (150/_profMax));
+        int mejorMovimiento = movimientos[movimientos.length/2];
         int mejorValor = MENYS_INFINIT;
-        int profExpl = 0;
 
-        // Itera pels moviments ordenats per trobar el millor
+        // Juga els moviments ordenats i comprova, en ordre, si algun guanya sense haver de cercar
+        boolean[] perduts = new boolean[numMovimientosEvaluar];
         for (int i = 0; i < numMovimientosEvaluar; i++) {
             _nNodes++;
-            MoveNode movimiento = movimientos.get(i);
-            Point punto = movimiento.getPoint();
+            int casella = movimientos[i];
             
-            // Simula el moviment al tauler auxiliar
-            HexGameStatus estadoAux = new HexGameStatus(s);
-            long newHash = ZobristHashing.updateHash(hash, punto, s.getPos(punto.x, punto.y), _colorPlayer);
-            estadoAux.placeStone(punto);
+            // Juga el moviment sobre la posició de la cerca
+            posicio.play(casella);
+            boolean guanya = posicio.isGameOver() && posicio.GetWinner() == _Player;
+            int guanyador = 0;
+            if (!guanya && _connexionsVirtuals) {
+                // Les connexions virtuals poden decidir el fill sense haver-lo d'explorar
+                guanyador = _connexions.guanyador(posicio, posicio.getHash(), hash, casella, _colorPlayer);
+            }
+            posicio.undo();
             
             // Comprova si el moviment actual és guanyador
-            if (estadoAux.isGameOver() && estadoAux.GetWinner() == _Player) {
+            if (guanya) {
                 long finalTime = System.currentTimeMillis();
                 long realTime = finalTime - initialTime;
                 _totalTime += realTime;
@@ -186,19 +395,33 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
                 System.out.println("Tiempo total del juego en ms: " + _totalTime);
                 System.out.println("Numero total de movimientos: " + _nMoves);
                 System.out.println("Estadistica ms/moves: " + estadistica);*/
-                return new PlayerMove(punto, _nNodes, _profExpl, SearchType.MINIMAX);
+                _ultimValor = INFINIT;
+                return new PlayerMove(geometria.punt(casella), _nNodes, _profExpl, SearchType.MINIMAX);
             }
             
-            // Avalua el moviment amb l'algoritme Minimax
-            int valor = MIN(estadoAux, _profMax - 1, profExpl+1, MENYS_INFINIT, INFINIT, newHash);
-            if (valor > mejorValor) {
-                mejorValor = valor;
-                mejorMovimiento = punto;
+            if (guanyador == _colorPlayer) {
+                _totalTime += System.currentTimeMillis() - initialTime;
+                _ultimValor = INFINIT;
+                return new PlayerMove(geometria.punt(casella), _nNodes, _profExpl, SearchType.MINIMAX);
+            }
+            perduts[i] = guanyador != 0;
+        }
+
+        // Avalua els moviments amb l'algoritme Minimax; els valors que no superen la cota amb què
+        // s'han cercat només són fites i no poden ser el millor
+        int[] valors = new int[numMovimientosEvaluar];
+        boolean[] exactes = new boolean[numMovimientosEvaluar];
+        cercarFills(posicio, movimientos, perduts, valors, exactes);
+        for (int i = 0; i < numMovimientosEvaluar; i++) {
+            if (exactes[i] && valors[i] > mejorValor) {
+                mejorValor = valors[i];
+                mejorMovimiento = movimientos[i];
             }
         }
 
         // Desa el millor resultat a la taula de transposició
-        transpositionTable.store(hash, profExpl, mejorValor, TranspositionTable.beta, mejorMovimiento);
+        transpositionTable.store(hash ^ _perspectiva, _profMax, mejorValor, TranspositionTable.beta, mejorMovimiento);
+        _ultimValor = mejorValor;
         long finalTime = System.currentTimeMillis();
         long realTime = finalTime - initialTime;
         _totalTime += realTime;
@@ -208,14 +431,228 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
                 System.out.println("Tiempo total del juego en ms: " + _totalTime);
                 System.out.println("Numero total de movimientos: " + _nMoves);
                 System.out.println("Estadistica ms/moves: " + estadistica);*/
-        return new PlayerMove(mejorMovimiento, _nNodes, _profExpl, SearchType.MINIMAX);
+        return new PlayerMove(geometria.punt(mejorMovimiento), _nNodes, _profExpl, SearchType.MINIMAX);
+    }
+
+    /**
+    * Cerca els fills de l'arrel amb una cota alfa compartida: cada fill es cerca amb la millor
+    * puntuació exacta trobada fins aleshores. Sense grup de fils (o amb un de sol) els fills es
+    * cerquen en ordre al fil que crida, de manera que el resultat és determinista. Amb més fils,
+    * el primer fill (el millor segons l'ordenació) fixa la cota i la resta es reparteix entre
+    * els fils del grup, cadascun amb un jugador auxiliar amb els seus propis avaluadors.
+    *
+    * @param arrel La posició de l'arrel.
+    * @param movimientos Els moviments ordenats de l'arrel.
+    * @param perduts Els fills que les connexions virtuals ja donen per perduts.
+    * @param valors On es deixa el valor de cada fill.
+    * @param exactes On es deixa si el valor de cada fill és exacte o només una fita superior.
+    */
+    private void cercarFills(HexPosition arrel, int[] movimientos, boolean[] perduts, int[] valors,
+            boolean[] exactes) {
+        AtomicInteger alfa = new AtomicInteger(MENYS_INFINIT);
+        if (!enParalel() || valors.length <= 1) {
+            for (int i = 0; i < valors.length; i++) {
+                cercarFill(this, i, movimientos, perduts, valors, exactes, alfa);
+            }
+            return;
+        }
+        cercarFill(this, 0, movimientos, perduts, valors, exactes, alfa);
+        AtomicLong nodes = new AtomicLong();
+        AtomicInteger profExpl = new AtomicInteger(_profExpl);
+        _pool.submit(() -> IntStream.range(1, valors.length).parallel().forEach(i -> {
+            PlayerMinimaxHexCalculators treballador = agafarTreballador();
+            try {
+                treballador.prepararTreballador(this);
+                treballador.carregarPosicio(arrel);
+                treballador._incremental.reiniciar(arrel);
+                cercarFill(treballador, i, movimientos, perduts, valors, exactes, alfa);
+            } finally {
+                nodes.addAndGet(treballador._nNodes);
+                profExpl.accumulateAndGet(treballador._profExpl, Math::max);
+                _treballadors.offer(treballador);
+            }
+        })).join();
+        _nNodes += nodes.get();
+        _profExpl = profExpl.get();
+    }
+
+    /**
+    * Cerca un fill de l'arrel amb el jugador indicat i, si el valor és exacte, apuja la cota compartida.
+    */
+    private void cercarFill(PlayerMinimaxHexCalculators jugador, int i, int[] movimientos,
+            boolean[] perduts, int[] valors, boolean[] exactes, AtomicInteger alfa) {
+        if (perduts[i]) {
+            valors[i] = MENYS_INFINIT;
+            return;
+        }
+        // La finestra comença just per sota de la cota perquè els empats també siguin exactes i
+        // es desfacin per l'ordre dels fills, com a la cerca seqüencial
+        int cota = alfa.get();
+        int finestra = (cota == MENYS_INFINIT) ? cota : cota - 1;
+        int casella = movimientos[i];
+        HexPosition posicio = jugador._posicio;
+        posicio.play(casella);
+        jugador._incremental.push(casella, _colorPlayer);
+        int valor = jugador.MIN(posicio, _profMax - 1, 1, finestra, INFINIT, posicio.getHash());
+        jugador._incremental.pop();
+        posicio.undo();
+        valors[i] = valor;
+        exactes[i] = valor > finestra;
+        if (exactes[i]) {
+            alfa.accumulateAndGet(valor, Math::max);
+        }
+    }
+
+    /**
+    * Punt de partició d'un node interior (Young Brothers Wait). El primer fill ja s'ha cercat al
+    * fil que crida; la resta de germans es reparteixen entre els fils del grup, cadascun amb un
+    * jugador auxiliar. Els germans comparteixen la cota del node (beta si minimitza, alfa si
+    * maximitza), que s'estreny a mesura que acaben, i quan un d'ells provoca la poda la resta es
+    * cancel·la. Com que cada fill es cerca amb una finestra que conté la de la cerca seqüencial,
+    * el valor del node és el mateix que el seqüencial sempre que és dins la finestra.
+    *
+    * @param estado La posició del node.
+    * @param movimientos Els moviments ordenats del node.
+    * @param numMovimientos Nombre de moviments a avaluar.
+    * @param profundidad La profunditat que queda al node.
+    * @param nivelesExplorados Nombre de nivells explorats fins al node.
+    * @param alfa La cota alfa del node després del primer fill.
+    * @param beta La cota beta del node després del primer fill.
+    * @param minimitza Si el node és MIN.
+    * @return El millor valor dels germans (mínim o màxim segons el node).
+    */
+    private int partir(HexPosition estado, int[] movimientos, int numMovimientos, int profundidad,
+            int nivelesExplorados, int alfa, int beta, boolean minimitza) {
+        Particio particio = new Particio(_particio);
+        AtomicInteger cota = new AtomicInteger(minimitza ? beta : alfa);
+        AtomicInteger mejor = new AtomicInteger(minimitza ? INFINIT : MENYS_INFINIT);
+        AtomicLong nodes = new AtomicLong();
+        AtomicInteger profExpl = new AtomicInteger(_profExpl);
+        int color = estado.getCurrentPlayerColor();
+        _pool.submit(() -> IntStream.range(1, numMovimientos).parallel().forEach(i -> {
+            if (particio.cancelat()) return;
+            PlayerMinimaxHexCalculators treballador = agafarTreballador();
+            try {
+                treballador.prepararTreballador(this);
+                treballador._particio = particio;
+                HexPosition posicio = treballador.carregarPosicio(estado);
+                treballador._incremental.reiniciar(estado);
+                int casella = movimientos[i];
+                posicio.play(casella);
+                treballador._incremental.push(casella, color);
+                int valor = minimitza
+                        ? treballador.MAX(posicio, profundidad - 1, nivelesExplorados + 1, alfa, cota.get(), posicio.getHash())
+                        : treballador.MIN(posicio, profundidad - 1, nivelesExplorados + 1, cota.get(), beta, posicio.getHash());
+                treballador._incremental.pop();
+                posicio.undo();
+                if (particio.cancelat()) return;
+                if (minimitza) {
+                    mejor.accumulateAndGet(valor, Math::min);
+                    if (cota.accumulateAndGet(valor, Math::min) <= alfa) particio.tallat = true;
+                } else {
+                    mejor.accumulateAndGet(valor, Math::max);
+                    if (cota.accumulateAndGet(valor, Math::max) >= beta) particio.tallat = true;
+                }
+            } finally {
+                nodes.addAndGet(treballador._nNodes);
+                profExpl.accumulateAndGet(treballador._profExpl, Math::max);
+                treballador._particio = null;
+                _treballadors.offer(treballador);
+            }
+        })).join();
+        _nNodes += nodes.get();
+        _profExpl = profExpl.get();
+        return mejor.get();
+    }
+
+    /**
+    * Carrega un estat a la posició de la cerca. Si la posició ja el conté (el mateix hash), no
+    * es torna a llegir el tauler.
+    *
+    * @param estat L'estat a carregar.
+    * @return La posició de la cerca.
+    */
+    private HexPosition carregarPosicio(HexGameStatus estat) {
+        return carregarPosicio(_adaptador.llegir(estat));
+    }
+
+    /**
+    * Com {@link #carregarPosicio(HexGameStatus)}, a partir d'un tauler qualsevol: si és la mateixa
+    * posició d'un altre fil, se'n copia l'estat.
+    */
+    private HexPosition carregarPosicio(HexBoard estat) {
+        if (_posicio == null || _posicio.getSize() != estat.getSize()) {
+            _posicio = new HexPosition(estat);
+        } else if (!(estat instanceof HexPosition) || _posicio.getHash() != ((HexPosition) estat).getHash()) {
+            _posicio.carregar(estat);
+        }
+        return _posicio;
+    }
+
+    /**
+    * @return Si un node amb aquesta profunditat restant és punt de partició.
+    */
+    private boolean partirNode(int profundidad) {
+        return _puntsParticio && profundidad >= PROF_MIN_PARTICIO && enParalel();
+    }
+
+    /**
+    * @return Si algun punt de partició per on passa la cerca d'aquest jugador ja ha podat.
+    */
+    private boolean cancelat() {
+        return _particio != null && _particio.cancelat();
+    }
+
+    /**
+    * @return Si l'arrel es reparteix entre més d'un fil.
+    */
+    private boolean enParalel() {
+        return _pool != null && _pool.getParallelism() > 1;
+    }
+
+    /**
+    * @return Un jugador auxiliar lliure, o un de nou si no n'hi ha cap.
+    */
+    private PlayerMinimaxHexCalculators agafarTreballador() {
+        PlayerMinimaxHexCalculators treballador = _treballadors.poll();
+        return (treballador != null) ? treballador : new PlayerMinimaxHexCalculators(this);
+    }
+
+    /**
+    * Copia del jugador principal l'estat de la jugada i la configuració que fa servir la cerca.
+    *
+    * @param principal Jugador principal.
+    */
+    private void prepararTreballador(PlayerMinimaxHexCalculators principal) {
+        _Player = principal._Player;
+        _colorPlayer = principal._colorPlayer;
+        _perspectiva = principal._perspectiva;
+        _profMax = principal._profMax;
+        _avaluacioPerezosa = principal._avaluacioPerezosa;
+        _podaInferiors = principal._podaInferiors;
+        _regioObligada = principal._regioObligada;
+        _zonaRellevant = principal._zonaRellevant;
+        _puntsParticio = principal._puntsParticio;
+        _pool = principal._pool;
+        _zona.setFolga(principal._zona.getFolga());
+        if (_entradesCache != principal._entradesCache) {
+            setMidaCacheAvaluacio(principal._entradesCache);
+        }
+        // La taula no fa servir bloquejos: tots els treballadors comparteixen la del principal
+        transpositionTable = principal.transpositionTable;
+        int mida = principal._incremental.getMidaTauler();
+        if (_incremental.getMidaTauler() != mida) {
+            crearAvaluadors(mida);
+        }
+        _nNodes = 0;
+        _profExpl = 0;
     }
 
     /**
     * Mètode MIN de l'algoritme Minimax amb poda alfa-beta.
     * Avalua el moviment del jugador oponent per trobar el valor mínim possible per al jugador actual.
     *
-    * @param estado L'estat actual del tauler del joc.
+    * @param estado La posició de la cerca, que es modifica i es restaura en cada fill.
     * @param profundidad La profunditat actual del Minimax.
     * @param nivelesExplorados Nombre de nivells explorats fins ara.
     * @param alfa El valor actual d'alfa (la millor opció garantida per al jugador Max).
@@ -223,16 +660,21 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     * @param hash El hash Zobrist de l'estat actual del tauler.
     * @return El valor mínim calculat en aquest ramal de l'arbre Minimax.
     */
-    private int MIN(HexGameStatus estado, int profundidad, int nivelesExplorados,int alfa, int beta, long hash) {  
+    private int MIN(HexPosition estado, int profundidad, int nivelesExplorados,int alfa, int beta, long hash) {  
         _nNodes++; // Incrementa el nombre de nodes explorats  
+        if (cancelat()) {
+            return beta; // El node pare ja ha podat: el valor es descarta
+        }
         
         // Si el joc ha acabat i el jugador actual és el guanyador
         if (estado.isGameOver() && estado.GetWinner() == _Player) {
             return INFINIT;
         }
         // Consulta a la taula de transposició
-        TranspositionTable.TableEntry entry = transpositionTable.lookup(hash);
-        Point mejorPunto = null;
+        TranspositionTable.TableEntry entry = transpositionTable.lookup(hash ^ _perspectiva, _entradaTT) ? _entradaTT : null;
+        _consultesTaula++;
+        if (entry != null) _encertsTaula++;
+        int mejorJugada = TranspositionTable.SENSE_JUGADA;
         if (entry != null) {
             switch (entry.flag) {
                 case TranspositionTable.EXACT:
@@ -242,15 +684,15 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
                         break;
                     }                    
                 case TranspositionTable.alfa:
-                    if(entry.value > alfa){
+                    if(entry.depth == profundidad && entry.value > alfa){
                         alfa = entry.value;
-                        mejorPunto = entry.bestMove;
+                        mejorJugada = entry.bestMove;
                     }                    
                     break;
                 case TranspositionTable.beta:
-                    if(entry.value < beta){
+                    if(entry.depth == profundidad && entry.value < beta){
                         beta = entry.value;
-                        mejorPunto = entry.bestMove;
+                        mejorJugada = entry.bestMove;
                     }
                     break;
                 default:
@@ -264,34 +706,48 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
 
         if (profundidad == 0) {
             _profExpl = nivelesExplorados;
-            return heuristica(estado, _colorPlayer);
+            return heuristicaIncremental(estado, _colorPlayer, hash, alfa, beta);
         }
 
         int mejorValor = INFINIT;
         
         // Ordena els moviments per heurística ràpida 
-        List<MoveNode> movimientos;
-        movimientos = ordenarMovimientosRapido(estado);
-        int numMovimientosEvaluar = Math.min(movimientos.size(), (150/_profMax)); // Limita el nombre de moviments a avaluar
+        int[] movimientos;
+        movimientos = ordenarMovimientosRapido(estado, candidats(estado));
+        int numMovimientosEvaluar = Math.min(movimientos.length, (150/_profMax)); // Limita el nombre de moviments a avaluar
         
         // Itera pels moviments seleccionats
         for (int i = 0; i < numMovimientosEvaluar; i++) {
-            MoveNode movimiento = movimientos.get(i);
-            Point punto = movimiento.getPoint();
+            // Young Brothers Wait: un cop cercat el primer fill, els germans es reparteixen entre els fils
+            if (i == 1 && partirNode(profundidad)) {
+                mejorValor = Math.min(mejorValor, partir(estado, movimientos, numMovimientosEvaluar, profundidad,
+                        nivelesExplorados, alfa, beta, true));
+                beta = Math.min(beta, mejorValor);
+                if (beta <= alfa && !cancelat()) {
+                    transpositionTable.store(hash ^ _perspectiva, profundidad, beta, TranspositionTable.beta, mejorJugada);
+                }
+                return mejorValor;
+            }
+
+            int casella = movimientos[i];
 
-            // Crea un nou estat per al moviment actual
-            HexGameStatus estadoAux = new HexGameStatus(estado);
-            long newHash = ZobristHashing.updateHash(hash, punto, estado.getPos(punto.x, punto.y), estado.getCurrentPlayerColor());
-            estadoAux.placeStone(punto);
+            // Juga el moviment actual sobre la posició
+            int color = estado.getCurrentPlayerColor();
+            estado.play(casella);
+            _incremental.push(casella, color);
 
             // Avalua el valor amb MAX
-            int valor = MAX(estadoAux, profundidad - 1, nivelesExplorados + 1, alfa, beta, newHash);
+            int valor = MAX(estado, profundidad - 1, nivelesExplorados + 1, alfa, beta, estado.getHash());
+            _incremental.pop();
+            estado.undo();
             mejorValor = Math.min(mejorValor, valor);
             beta = Math.min(beta, mejorValor);
             
             // Si beta és menor o igual a alfa, poda
             if (beta <= alfa) {
-                transpositionTable.store(hash, profundidad, beta, TranspositionTable.beta, mejorPunto);
+                if (!cancelat()) {
+                    transpositionTable.store(hash ^ _perspectiva, profundidad, beta, TranspositionTable.beta, mejorJugada);
+                }
                 return mejorValor; // Poda
             }
         }
@@ -302,7 +758,7 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     * Mètode MAX de l'algoritme Minimax amb poda alfa-beta.
     * Avalua el moviment del jugador actual per trobar el valor màxim possible.
     *
-    * @param estado L'estat actual del tauler del joc.
+    * @param estado La posició de la cerca, que es modifica i es restaura en cada fill.
     * @param profundidad La profunditat actual del Minimax.
     * @param nivelesExplorados Nombre de nivells explorats fins ara.
     * @param alfa El valor actual d'alfa (la millor opció garantida per al jugador Max).
@@ -310,8 +766,11 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     * @param hash El hash Zobrist de l'estat actual del tauler.
     * @return El valor màxim calculat en aquest ramal de l'arbre Minimax.
     */
-    private int MAX(HexGameStatus estado, int profundidad, int nivelesExplorados, int alfa, int beta, long hash){
+    private int MAX(HexPosition estado, int profundidad, int nivelesExplorados, int alfa, int beta, long hash){
         _nNodes++; // Incrementa el nombre de nodes explorats
+        if (cancelat()) {
+            return alfa; // El node pare ja ha podat: el valor es descarta
+        }
         
         // Si el joc ha acabat i el jugador actual és el guanyador
         if (estado.isGameOver() && estado.GetWinner() == _Player) {
@@ -319,8 +778,10 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
         } 
         
         // Consulta a la taula de transposició
-        TranspositionTable.TableEntry entry = transpositionTable.lookup(hash);
-        Point mejorPunto = null;
+        TranspositionTable.TableEntry entry = transpositionTable.lookup(hash ^ _perspectiva, _entradaTT) ? _entradaTT : null;
+        _consultesTaula++;
+        if (entry != null) _encertsTaula++;
+        int mejorJugada = TranspositionTable.SENSE_JUGADA;
         if (entry != null) {
             switch (entry.flag) {
                 case TranspositionTable.EXACT:
@@ -330,12 +791,16 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
                         break;
                     }
                 case TranspositionTable.alfa:
-                    alfa = Math.max(alfa, entry.value);
-                    mejorPunto = entry.bestMove;
+                    if (entry.depth == profundidad) {
+                        alfa = Math.max(alfa, entry.value);
+                        mejorJugada = entry.bestMove;
+                    }
                     break;
                 case TranspositionTable.beta:
-                    beta = Math.min(beta, entry.value);
-                    mejorPunto = entry.bestMove;
+                    if (entry.depth == profundidad) {
+                        beta = Math.min(beta, entry.value);
+                        mejorJugada = entry.bestMove;
+                    }
                     break;
                 default:
                     break;
@@ -349,40 +814,82 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
         // Si hem arribat a la profunditat màxima, calcula la heurística
         if (profundidad == 0){
             _profExpl = nivelesExplorados;
-            return heuristica(estado, _colorPlayer);
+            return heuristicaIncremental(estado, _colorPlayer, hash, alfa, beta);
         }
         
         int mejorValor = MENYS_INFINIT;
         
         // Ordenar moviments per heurística ràpida
-        List<MoveNode> movimientos;
-        movimientos = ordenarMovimientosRapido(estado);
-        int numMovimientosEvaluar = Math.min(movimientos.size(), (150/_profMax)); // Limita el nombre de moviments a avaluar
+        int[] movimientos;
+        movimientos = ordenarMovimientosRapido(estado, candidats(estado));
+        int numMovimientosEvaluar = Math.min(movimientos.length, (150/_profMax)); // Limita el nombre de moviments a avaluar
         
         // Itera pels moviments seleccionats
         for (int i = 0; i < numMovimientosEvaluar; i++) {
-            MoveNode movimiento = movimientos.get(i);
-            Point punto = movimiento.getPoint();
+            // Young Brothers Wait: un cop cercat el primer fill, els germans es reparteixen entre els fils
+            if (i == 1 && partirNode(profundidad)) {
+                mejorValor = Math.max(mejorValor, partir(estado, movimientos, numMovimientosEvaluar, profundidad,
+                        nivelesExplorados, alfa, beta, false));
+                alfa = Math.max(alfa, mejorValor);
+                if (beta <= alfa && !cancelat()) {
+                    transpositionTable.store(hash ^ _perspectiva, profundidad, alfa, TranspositionTable.alfa, mejorJugada);
+                }
+                return mejorValor;
+            }
+
+            int casella = movimientos[i];
 
-            // Crea un nou estat per al moviment actual
-            HexGameStatus estadoAux = new HexGameStatus(estado);
-            long newHash = ZobristHashing.updateHash(hash, punto, estado.getPos(punto.x, punto.y), estado.getCurrentPlayerColor());
-            estadoAux.placeStone(punto);
+            // Juga el moviment actual sobre la posició
+            int color = estado.getCurrentPlayerColor();
+            estado.play(casella);
+            _incremental.push(casella, color);
 
             // Avalua el valor amb MIN
-            int valor = MIN(estadoAux, profundidad - 1, nivelesExplorados + 1, alfa, beta, newHash);
+            int valor = MIN(estado, profundidad - 1, nivelesExplorados + 1, alfa, beta, estado.getHash());
+            _incremental.pop();
+            estado.undo();
             mejorValor = Math.max(mejorValor, valor);
             alfa = Math.max(alfa, mejorValor);
             
             // Si beta és menor o igual a alfa, poda
             if (beta <= alfa) {
-                transpositionTable.store(hash, profundidad, alfa, TranspositionTable.alfa, mejorPunto);
+                if (!cancelat()) {
+                    transpositionTable.store(hash ^ _perspectiva, profundidad, alfa, TranspositionTable.alfa, mejorJugada);
+                }
                 return mejorValor; // Poda
             }
         }
         return mejorValor; // Retorna el millor valor trobat
     }
 
+    /**
+    * Genera els moviments candidats d'un estat, sense les caselles mortes i capturades si la
+    * poda de caselles inferiors està activada. Si el contrari amenaça de connectar, es limiten
+    * a la regió obligada; si no, a la zona rellevant, quan està activada.
+    *
+    * @param estado L'estat actual del tauler de joc.
+    * @return Les caselles candidates, en l'ordre de {@link HexGameStatus#getMoves()}.
+    */
+    private int[] candidats(HexPosition estado) {
+        int[] movimientos = estado.getCasellesBuides();
+        if (_podaInferiors) {
+            if (_inferiors.getMidaTauler() != estado.getSize()) {
+                _inferiors = new InferiorCells(estado.getSize());
+            }
+            movimientos = _inferiors.podar(estado, movimientos);
+        }
+        if (_regioObligada) {
+            int[] obligats = _obligada.podar(estado, movimientos);
+            if (obligats != movimientos) {
+                return obligats;
+            }
+        }
+        if (_zonaRellevant) {
+            movimientos = _zona.podar(estado, movimientos);
+        }
+        return movimientos;
+    }
+
     /**
     * Ordena els moviments disponibles en funció d'una heurística calculada per cada moviment.
     *
@@ -390,29 +897,49 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     * @return Una llista de moviments ordenats segons la seva puntuació heurística, de major a menor.
     */
     public List<MoveNode> ordenarMovimientos(HexGameStatus estado) {
-       // Obtenir la llista inicial de moviments disponibles
-       List<MoveNode> movimientos = estado.getMoves();
-
-       // Ordenar la llista de moviments segons la seva puntuació heurística
-       movimientos.sort((a, b) -> {
-           // Crear còpies independents de l'estat per simular moviments
-           HexGameStatus estadoA = new HexGameStatus(estado);
-           HexGameStatus estadoB = new HexGameStatus(estado);
-
-           // Aplicar els moviments simulats als estats temporals
-           estadoA.placeStone(a.getPoint());
-           estadoB.placeStone(b.getPoint());
-           
-           // Calcular les heurístiques per als estats resultants
-           int valorA = heuristica(estadoA, _colorPlayer);
-           int valorB = heuristica(estadoB, _colorPlayer);
-           
-           // Comparar els valors heurístics per determinar l'ordre (de major a menor)
-           return Integer.compare(valorB, valorA); 
-       });
-       
-       // Retornar la llista ordenada de moviments
-       return movimientos;
+       HexPosition posicio = new HexPosition(estado);
+       return HexGeometry.of(estado.getSize()).moviments(ordenarMovimientos(posicio, posicio.getCasellesBuides()));
+    }
+
+    /**
+    * Ordena una llista de moviments candidats en funció d'una heurística calculada per cada moviment.
+    *
+    * @param estado La posició actual, que es modifica i es restaura per puntuar cada fill.
+    * @param movimientos Caselles candidates de l'estat.
+    * @return Les caselles ordenades segons la seva puntuació heurística, de major a menor.
+    */
+    private int[] ordenarMovimientos(HexPosition estado, int[] movimientos) {
+
+       // Avaluar cada moviment un sol cop. La clau porta la puntuació complementada (~valor) a la part
+       // alta i la posició original a la baixa, de manera que ordenar les claus equival a una ordenació
+       // estable de major a menor puntuació
+       long[] claus = new long[movimientos.length];
+       if (_ordenacioPerMapes) {
+           // Quatre cerques puntuen totes les caselles alhora, sense simular cap moviment
+           int[] puntuaciones = _dijkstra.puntuarCaselles(estado, _colorPlayer);
+           for (int i = 0; i < claus.length; i++) {
+               int valor = puntuaciones[movimientos[i]];
+               claus[i] = ((long) ~valor << 32) | i;
+           }
+       } else if (enParalel()) {
+           // Cada fil puntua els seus moviments amb els avaluadors d'un jugador auxiliar
+           _pool.submit(() -> IntStream.range(0, claus.length).parallel().forEach(i -> {
+               PlayerMinimaxHexCalculators treballador = agafarTreballador();
+               try {
+                   treballador.prepararTreballador(this);
+                   int valor = treballador.heuristicaFill(treballador.carregarPosicio(estado), movimientos[i], _colorPlayer);
+                   claus[i] = ((long) ~valor << 32) | i;
+               } finally {
+                   _treballadors.offer(treballador);
+               }
+           })).join();
+       } else {
+           for (int i = 0; i < claus.length; i++) {
+               int valor = heuristicaFill(estado, movimientos[i], _colorPlayer);
+               claus[i] = ((long) ~valor << 32) | i;
+           }
+       }
+       return ordenarPerClaus(movimientos, claus);
     }
 
     /**
@@ -425,8 +952,91 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     */
     public int heuristica(HexGameStatus estado, int color) {
         // Obtenir els resultats del Dijkstra per al jugador actual
-        Dijkstra result = _dijkstra.shortestPathWithVirtualNodes(estado, color);
+        Dijkstra result = _dijkstra.calcular(estado, color);
+
+        return valorar(result, estado.getSize());
+    }
+
+    /**
+    * Calcula la mateixa heurística que {@link #heuristica(HexGameStatus, int)} a partir dels
+    * mapes de distàncies de l'avaluador incremental, que ja reflecteixen l'estat de la fulla.
+    * Les mètriques es consulten primer a la memòria cau d'avaluacions.
+    *
+    * Amb l'avaluació mandrosa, si la reparació dels mapes que ha deixat pendent l'últim moviment
+    * no pot canviar el resultat respecte de la finestra, no es fa: a partir de les fites de les
+    * mètriques es calcula l'interval del valor i, si queda tot per sota d'alfa o per sobre de
+    * beta, es retorna l'extrem corresponent (fail-soft). Només es desen a la memòria cau les
+    * mètriques exactes.
+    *
+    * @param estado L'estat actual del tauler de joc (ha de coincidir amb l'avaluador incremental).
+    * @param color El color del jugador que avaluarà l'estat (1 o -1).
+    * @param hash El hash Zobrist de l'estat.
+    * @param alfa El valor alfa de la finestra del node.
+    * @param beta El valor beta de la finestra del node.
+    * @return El valor heurístic de l'estat, o una fita d'aquest fora de la finestra.
+    */
+    private int heuristicaIncremental(HexBoard estado, int color, long hash, int alfa, int beta) {
+        _nFulles++;
+        int midaTauler = estado.getSize();
+        if (_cacheAvaluacio.lookup(hash, color, _dijkstra)) {
+            return valorar(_dijkstra, midaTauler);
+        }
+        if (!_avaluacioPerezosa) {
+            _incremental.metriques(color, _dijkstra);
+        } else if (!_incremental.metriquesFitades(color, _dijkstra, _fites)) {
+            // El valor creix amb el camí enemic i els camins viables propis i decreix amb els altres dos
+            int maxim = valorarFita(_dijkstra.shortestPath, _fites.viablePathsCount,
+                    _fites.enemyShortestPath, _dijkstra.viableEnemyPathsCount, midaTauler);
+            if (maxim <= alfa) return maxim;
+            int minim = valorarFita(_fites.shortestPath, _dijkstra.viablePathsCount,
+                    _dijkstra.enemyShortestPath, _fites.viableEnemyPathsCount, midaTauler);
+            if (minim >= beta) return minim;
+            _incremental.metriques(color, _dijkstra);
+        }
+        _cacheAvaluacio.store(hash, color, _dijkstra);
+        return valorar(_dijkstra, midaTauler);
+    }
+
+    /**
+    * Valora una combinació de fites de les mètriques amb els pesos de {@link #valorar(Dijkstra, int)}.
+    * Una distància no fitada (Integer.MAX_VALUE) es tracta com un camí tallat: si és l'enemic,
+    * el valor no té fita superior; si és el propi, no en té d'inferior.
+    */
+    private int valorarFita(int caminoPropio, int caminosViables, int caminoEnemigo, int caminosViablesEnemigo, int midaTauler) {
+        if (caminoPropio == 0 || caminoEnemigo == Integer.MAX_VALUE) return INFINIT;
+        if (caminoEnemigo == 0 || caminoPropio == Integer.MAX_VALUE) return MENYS_INFINIT;
+        return (10 * (midaTauler - caminoPropio)) + (3 * caminosViables)
+             - (7 * (midaTauler - caminoEnemigo)) - (3 * caminosViablesEnemigo);
+    }
+
+    /**
+    * Calcula la heurística de l'estat que resulta de jugar un moviment. El moviment es juga i es
+    * desfà sobre la posició, i el Dijkstra només s'executa si les mètriques del fill no són a la
+    * memòria cau.
+    *
+    * @param estado La posició actual.
+    * @param casella La casella a simular.
+    * @param color El color del jugador que avaluarà l'estat (1 o -1).
+    * @return El valor heurístic de l'estat resultant per al jugador especificat.
+    */
+    private int heuristicaFill(HexPosition estado, int casella, int color) {
+        estado.play(casella);
+        if (!_cacheAvaluacio.lookup(estado.getHash(), color, _dijkstra)) {
+            _dijkstra.calcular(estado, color);
+            _cacheAvaluacio.store(estado.getHash(), color, _dijkstra);
+        }
+        estado.undo();
+        return valorar(_dijkstra, estado.getSize());
+    }
 
+    /**
+    * Combina les mètriques del Dijkstra en el valor heurístic.
+    *
+    * @param result Mètriques calculades per al jugador que avalua.
+    * @param midaTauler Mida del tauler.
+    * @return Un valor heurístic; els valors més alts són favorables.
+    */
+    private int valorar(Dijkstra result, int midaTauler) {
         // Variables que descriuen els camins rellevants
         int caminoPropio = result.shortestPath; // Camí més curt cap a la victòria del jugador
         int caminosViables = result.viablePathsCount; // Nombre de camins viables del jugador
@@ -444,9 +1054,9 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
         if (caminoEnemigo == 0) return MENYS_INFINIT; // Derrota 
 
         // Càlcul de la puntuació heurística basada en diferents factors
-        return (10 * (estado.getSize() - caminoPropio))  // Prioritzar camins curts cap a la victòria
+        return (10 * (midaTauler - caminoPropio))        // Prioritzar camins curts cap a la victòria
              + (3 * caminosViables)                      // Valorar la quantitat de camins viables propis
-             - (7 * (estado.getSize() - caminoEnemigo))  // Penalitzar camins curts de l'enemic
+             - (7 * (midaTauler - caminoEnemigo))        // Penalitzar camins curts de l'enemic
              - (3 * caminosViablesEnemigo);              // Penalitzar la quantitat de camins viables de l'enemic
         //return 3*(caminoEnemigo - caminoPropio) + (caminosViables - caminosViablesEnemigo);
     }
@@ -462,20 +1072,44 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     * @return Una llista de moviments ordenats de millor a pitjor segons la heurística ràpida.
     */
     public List<MoveNode> ordenarMovimientosRapido(HexGameStatus estado) {
-        // Obtenir la llista de moviments possibles
-        List<MoveNode> movimientos = estado.getMoves();
-
-        // Ordenar els moviments en funció de la heurística ràpida
-        movimientos.sort((a, b) -> {
-            // Calcular la heurística ràpida per a cada moviment
-            int valorA = heuristicaRapida(estado, a.getPoint());
-            int valorB = heuristicaRapida(estado, b.getPoint());
-            
-            // Comparar els valors heurístics per ordenar de major a menor
-            return Integer.compare(valorB, valorA);
-        });
+        HexGeometry geometria = HexGeometry.of(estado.getSize());
+        return geometria.moviments(ordenarMovimientosRapido(_adaptador.llegir(estado), geometria.caselles(estado.getMoves())));
+    }
+
+    /**
+    * Ordena unes caselles candidates segons la heurística ràpida.
+    *
+    * @param estado L'estat actual del joc.
+    * @param movimientos Caselles candidates de l'estat.
+    * @return Les caselles ordenades de millor a pitjor segons la heurística ràpida.
+    */
+    private int[] ordenarMovimientosRapido(HexBoard estado, int[] movimientos) {
+        // Cada casella es puntua un sol cop; les claus ordenen de major a menor i, en cas d'empat,
+        // mantenen l'ordre original
+        HexGeometry geometria = HexGeometry.of(estado.getSize());
+        long[] claus = new long[movimientos.length];
+        for (int i = 0; i < claus.length; i++) {
+            int valor = heuristicaRapida(estado, geometria, movimientos[i]);
+            claus[i] = ((long) ~valor << 32) | i;
+        }
+        return ordenarPerClaus(movimientos, claus);
+    }
 
-        return movimientos; // Retornar els moviments ordenats
+    /**
+    * Ordena unes caselles per les seves claus, que porten la puntuació complementada a la part
+    * alta i la posició original a la baixa.
+    *
+    * @param movimientos Caselles a ordenar.
+    * @param claus Clau de cada casella (es modifica).
+    * @return Les caselles ordenades de major a menor puntuació.
+    */
+    private static int[] ordenarPerClaus(int[] movimientos, long[] claus) {
+        Arrays.sort(claus);
+        int[] ordenados = new int[claus.length];
+        for (int i = 0; i < claus.length; i++) {
+            ordenados[i] = movimientos[(int) claus[i]];
+        }
+        return ordenados;
     }
 
     /**
@@ -490,12 +1124,22 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     *         caselles més favorables.
     */
     public int heuristicaRapida(HexGameStatus estado, Point punto) {
+        HexGeometry geometria = HexGeometry.of(estado.getSize());
+        return heuristicaRapida(_adaptador.llegir(estado), geometria, geometria.index(punto.x, punto.y));
+    }
+
+    /**
+    * La heurística ràpida de {@link #heuristicaRapida(HexGameStatus, Point)} per a un índex de casella.
+    */
+    private int heuristicaRapida(HexBoard estado, HexGeometry geometria, int casella) {
         // Calcular la distància al centre del tauler (desavantatge per a caselles lluny del centre)
-        int distanciaCentro = Math.abs(punto.x - estado.getSize() / 2) + Math.abs(punto.y - estado.getSize() / 2);
-        // Avaluar els veïns de la casella
+        int distanciaCentro = geometria.distanciaCentre[casella];
+        // Avaluar els veïns de la casella (les vores virtuals no compten)
         int puntuacionVecinos = 0;
-        for (Point vecino : estado.getNeigh(punto)) {
-            int estadoVecino = estado.getPos(vecino.x, vecino.y);
+        for (int k = geometria.iniciVeins[casella]; k < geometria.iniciVeins[casella + 1]; k++) {
+            int vecino = geometria.veins[k];
+            if (vecino >= geometria.numCaselles) continue;
+            int estadoVecino = estado.getPos(geometria.x(vecino), geometria.y(vecino));
             if (estadoVecino == 0) { // Vecino vacío
                 puntuacionVecinos += 1;
             } else if (estadoVecino == estado.getCurrentPlayerColor()) { // Vecino nuestro
@@ -510,6 +1154,204 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
     }
 
 
+    /**
+     * Canvia la mida de la memòria cau d'avaluacions. Es buida en fer-ho.
+     *
+     * @param entrades Nombre d'entrades (s'arrodoneix a potència de dos, fins a 2^28); 0 la desactiva.
+     */
+    public void setMidaCacheAvaluacio(int entrades) {
+        this._entradesCache = entrades;
+        this._cacheAvaluacio = new EvaluationCache(entrades);
+    }
+
+    /**
+     * Canvia la mida de la taula de transposició. Es buida en fer-ho.
+     *
+     * @param megabytes Memòria de la taula en MB; a partir de
+     *                  {@link TranspositionTable#MEGABYTES_FORA_HEAP} es guarda fora del heap.
+     */
+    public void setMidaTaulaTransposicio(int megabytes) {
+        this._megasTaula = megabytes;
+        this.transpositionTable = TranspositionTable.crear(megabytes);
+    }
+
+    /**
+     * Carrega la taula de transposició d'un fitxer desat amb
+     * {@link #desarTaulaTransposicio(Path)}. El fitxer es projecta a memòria sense copiar-lo: la
+     * cerca hi llegeix i hi escriu directament, i la taula es conserva d'una partida a l'altra.
+     *
+     * @param fitxer Fitxer de la taula.
+     * @return Si s'ha carregat; si el fitxer no hi és o és d'una altra mida de tauler o d'una altra
+     *         llavor Zobrist o d'un format anterior, es conserva la taula actual.
+     * @throws IOException Si el fitxer no es pot llegir.
+     */
+    public boolean carregarTaulaTransposicio(Path fitxer) throws IOException {
+        MappedTranspositionTable taula = MappedTranspositionTable.carregar(fitxer, _incremental.getMidaTauler());
+        if (taula == null) return false;
+        this.transpositionTable = taula;
+        this._megasTaula = taula.getMegabytes();
+        return true;
+    }
+
+    /**
+     * Desa la taula de transposició en un fitxer. Si la taula ja és la d'aquest fitxer, només hi
+     * força els canvis.
+     *
+     * @param fitxer Fitxer on es desa.
+     * @throws IOException Si el fitxer no es pot escriure.
+     */
+    public void desarTaulaTransposicio(Path fitxer) throws IOException {
+        transpositionTable.desar(fitxer, _incremental.getMidaTauler());
+    }
+
+    /**
+     * Indica si la taula de transposició es conserva d'una partida a l'altra, envellint les
+     * entrades per generacions, o es buida en començar-ne una.
+     *
+     * @param conservar Si s'ha de conservar; per defecte, sí.
+     */
+    public void setConservarTaula(boolean conservar) {
+        this._conservarTaula = conservar;
+    }
+
+    /**
+     * @return Consultes a la taula de transposició fetes per aquest jugador des que es va crear
+     *         (no hi compten les dels fils auxiliars).
+     */
+    public long getConsultesTaula() {
+        return _consultesTaula;
+    }
+
+    /**
+     * @return Consultes de {@link #getConsultesTaula()} que han trobat la posició a la taula.
+     */
+    public long getEncertsTaula() {
+        return _encertsTaula;
+    }
+
+    /**
+     * @return La taula de transposició del jugador.
+     */
+    public TranspositionTable getTaulaTransposicio() {
+        return transpositionTable;
+    }
+
+    /**
+     * Tria com es puntuen els moviments de l'arrel: simulant cada moviment i avaluant-lo amb el
+     * Dijkstra (per defecte) o amb els mapes de distàncies de les dues vores, que puntuen totes
+     * les caselles amb quatre cerques.
+     *
+     * @param perMapes Si s'han de fer servir els mapes de distàncies.
+     */
+    public void setOrdenacioPerMapes(boolean perMapes) {
+        this._ordenacioPerMapes = perMapes;
+    }
+
+    /**
+     * Activa o desactiva l'avaluació mandrosa de les fulles fora de la finestra alfa-beta.
+     *
+     * @param perezosa Si les fulles es poden resoldre amb fites del seu valor.
+     */
+    public void setAvaluacioPerezosa(boolean perezosa) {
+        this._avaluacioPerezosa = perezosa;
+    }
+
+    /**
+     * Activa o desactiva les connexions virtuals a l'arrel: jugar directament una victòria
+     * demostrada i descartar sense explorar els fills que el contrari té guanyats.
+     *
+     * @param connexions Si s'han de fer servir les connexions virtuals.
+     */
+    public void setConnexionsVirtuals(boolean connexions) {
+        this._connexionsVirtuals = connexions;
+    }
+
+    /**
+     * Activa o desactiva la poda de caselles mortes i capturades als generadors de moviments.
+     *
+     * @param poda Si s'han de descartar les caselles inferiors.
+     */
+    public void setPodaInferiors(boolean poda) {
+        this._podaInferiors = poda;
+    }
+
+    /**
+     * Activa o desactiva la restricció dels candidats a la regió obligada quan el contrari
+     * amenaça de connectar.
+     *
+     * @param obligada Si s'han de descartar les jugades que no aturen l'amenaça.
+     */
+    public void setRegioObligada(boolean obligada) {
+        this._regioObligada = obligada;
+    }
+
+    /**
+     * @return La regió obligada, amb els seus comptadors de posicions i candidats.
+     */
+    public MustPlayRegion getRegioObligada() {
+        return _obligada;
+    }
+
+    /**
+     * Activa o desactiva la restricció dels candidats a la zona rellevant (les caselles a prop
+     * d'un camí mínim d'algun dels dos colors). La folga es canvia a {@link #getZonaRellevant()}.
+     *
+     * @param zona Si s'han de descartar les caselles de fora de la zona.
+     */
+    public void setZonaRellevant(boolean zona) {
+        this._zonaRellevant = zona;
+    }
+
+    /**
+     * @return La zona rellevant, amb la seva folga i els seus comptadors de candidats.
+     */
+    public RelevanceZone getZonaRellevant() {
+        return _zona;
+    }
+
+    /**
+     * Fixa el grup de fils on es reparteixen l'ordenació i la cerca dels fills de l'arrel. Amb
+     * null o amb un grup d'un sol fil, tot es fa al fil que crida i el resultat és determinista.
+     *
+     * @param pool Grup de fils, o null.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this._pool = pool;
+    }
+
+    /**
+     * Activa o desactiva els punts de partició (Young Brothers Wait) als nodes interiors: el
+     * primer fill de cada node es cerca al fil que hi arriba i la resta es reparteix entre els
+     * fils del grup de {@link #setForkJoinPool(ForkJoinPool)}. El valor de cada jugada és el
+     * mateix que el de la cerca seqüencial.
+     *
+     * @param particio Si s'han de partir els nodes interiors.
+     */
+    public void setPuntsParticio(boolean particio) {
+        this._puntsParticio = particio;
+    }
+
+    /**
+     * @return El valor Minimax de l'última jugada (INFINIT si guanya segur).
+     */
+    public int getUltimValor() {
+        return _ultimValor;
+    }
+
+    /**
+     * @return Nombre de fulles avaluades des de la creació del jugador.
+     */
+    public long getFullesAvaluades() {
+        return _nFulles;
+    }
+
+    /**
+     * @return La memòria cau d'avaluacions, amb els seus comptadors d'encerts i fallades.
+     */
+    public EvaluationCache getCacheAvaluacio() {
+        return _cacheAvaluacio;
+    }
+
     @Override
     public String getName() {
         return _name;
@@ -521,131 +1363,21 @@ public class PlayerMinimaxHexCalculators implements IPlayer, IAuto {
 }
 
     /**
-     * Classe que implementa la taula de transposició per a emmagatzemar i reutilitzar
-     * informació de les posicions ja explorades durant el càlcul del Minimax.
-     */
-    class TranspositionTable {
-        // Constants que representen el tipus de valor emmagatzemat
-        static final int EXACT = 0; // Valor exacte per a una posició
-        static final int alfa = 1;  // Cota inferior (alfa)
-        static final int beta = 2;  // Cota superior (beta)
-
-        // Estructura de dades per emmagatzemar les entrades de la taula
-        private HashMap<Long, TableEntry> table = new HashMap<>();
-
-        /**
-         * Emmagatzema una entrada a la taula de transposició.
-         *
-         * @param hash     El valor hash únic que representa l'estat del joc.
-         * @param depth    La profunditat a la qual es va calcular aquest valor.
-         * @param value    El valor heurístic de la posició.
-         * @param flag     El tipus de valor (EXACT, alfa, beta).
-         * @param bestMove El millor moviment per a aquesta posició.
-         */
-        public void store(long hash, int depth, int value, int flag, Point bestMove) {
-            table.put(hash, new TableEntry(value, depth, flag, bestMove));
-        }
-
-        /**
-         * Busca una entrada a la taula de transposició.
-         *
-         * @param hash El valor hash de l'estat a buscar.
-         * @return La entrada trobada o null si no hi ha cap.
-         */
-        public TableEntry lookup(long hash) {
-            return table.get(hash);
-        }
-
-        /**
-         * Classe interna que representa una entrada de la taula de transposició.
-         */
-        static class TableEntry {
-            int value;    // Valor heurístic de la posició
-            int depth;    // Profunditat de càlcul d'aquest valor
-            int flag;     // EXACT, alfa o beta
-            Point bestMove; // Millor moviment associat
-
-            /**
-             * Constructor d'una entrada de la taula de transposició.
-             *
-             * @param value    Valor heurístic.
-             * @param depth    Profunditat.
-             * @param flag     Tipus de valor (EXACT, alfa, beta).
-             * @param bestMove Millor moviment.
-             */
-            public TableEntry(int value, int depth, int flag, Point bestMove) {
-                this.value = value;
-                this.depth = depth;
-                this.flag = flag;
-                this.bestMove = bestMove;
-            }
-        }
-    }
-
-    /**
-     * Classe que implementa el hashing Zobrist per representar de manera eficient
-     * els estats del joc amb valors hash únics.
+     * Punt de partició de la cerca Young Brothers Wait. Els punts niats formen una cadena fins
+     * a l'arrel: una branca queda cancel·lada quan ha podat qualsevol dels seus punts.
      */
-    class ZobristHashing {
-        private static int boardSize = 11; // Mida del tauler per defecte
-        private static long[][][] ZOBRIST_TABLE; // Taula Zobrist per als estats
-
-        /**
-         * Configura la mida del tauler i genera la taula Zobrist corresponent.
-         *
-         * @param newSize La nova mida del tauler.
-         */
-        public static void setBoardSize(int newSize) {
-            boardSize = newSize;
-            generateZobristTable();
-        }
+    class Particio {
+        private final Particio pare; // Punt de partició on es cerca aquest node, o null
+        volatile boolean tallat; // Si algun germà ja ha provocat la poda
 
-        /**
-         * Genera la taula Zobrist per a la mida actual del tauler.
-         */
-        private static void generateZobristTable() {
-            ZOBRIST_TABLE = new long[boardSize][boardSize][3]; // [0: buit, 1: jugador 1, 2: jugador 2]
-            Random random = new Random();
-            for (int x = 0; x < boardSize; x++) {
-                for (int y = 0; y < boardSize; y++) {
-                    for (int k = 0; k < 3; k++) {
-                        ZOBRIST_TABLE[x][y][k] = random.nextLong();
-                    }
-                }
-            }
+        Particio(Particio pare) {
+            this.pare = pare;
         }
 
-        /**
-         * Calcula el valor hash d'un estat del joc.
-         *
-         * @param estado L'estat del joc.
-         * @return El valor hash corresponent.
-         */
-        public static long calculateHash(HexGameStatus estado) {
-            long hash = 0;
-            for (int x = 0; x < estado.getSize(); x++) {
-                for (int y = 0; y < estado.getSize(); y++) {
-                    int piece = estado.getPos(x, y); // 0: buit, 1: jugador 1, -1: jugador 2
-                    int index = (piece == 1) ? 1 : (piece == -1) ? 2 : 0;
-                    hash ^= ZOBRIST_TABLE[x][y][index];
-                }
+        boolean cancelat() {
+            for (Particio p = this; p != null; p = p.pare) {
+                if (p.tallat) return true;
             }
-            return hash;
-        }
-
-        /**
-         * Actualitza el valor hash després de realitzar un moviment.
-         *
-         * @param hash      El hash actual.
-         * @param move      El moviment realitzat.
-         * @param oldState  L'estat anterior de la casella (buit, jugador 1, jugador 2).
-         * @param newState  El nou estat de la casella.
-         * @return El valor hash actualitzat.
-         */
-        public static long updateHash(long hash, Point move, int oldState, int newState) {
-            int oldIndex = (oldState == 1) ? 1 : (oldState == -1) ? 2 : 0;
-            int newIndex = (newState == 1) ? 1 : (newState == -1) ? 2 : 0;
-            return hash ^ ZOBRIST_TABLE[move.x][move.y][oldIndex] ^ ZOBRIST_TABLE[move.x][move.y][newIndex];
+            return false;
         }
     }
-
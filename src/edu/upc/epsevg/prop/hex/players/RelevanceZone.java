@@ -0,0 +1,114 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Zona rellevant d'una posició: les caselles buides que són a prop d'un camí mínim de
+ * qualsevol dels dos colors, segons els mapes de distàncies de les dues vores del
+ * {@link Dijkstra}. Una casella per on no passa cap camí gaire més llarg que el mínim de cap
+ * color ni ajuda a connectar ni a tallar, i el generador de moviments la pot deixar de banda.
+ *
+ * A diferència de les caselles inferiors i la regió obligada, és una poda heurística: la folga
+ * decideix quant s'allunya la zona dels camins mínims. Si la zona es queda sense candidats,
+ * es torna la llista sencera.
+ *
+ * No és segura entre fils: cal una instància per fil de cerca.
+ */
+public class RelevanceZone {
+    /** Folga per defecte respecte del camí mínim de cada color. */
+    public static final int FOLGA_PER_DEFECTE = 1;
+
+    private final Dijkstra dijkstra = new Dijkstra();
+    private final HexBoard.Adaptador adaptador = new HexBoard.Adaptador();
+    private int folga;
+    private long candidats;
+    private long dinsZona;
+
+    /**
+     * Crea la zona amb la folga per defecte.
+     */
+    public RelevanceZone() {
+        this(FOLGA_PER_DEFECTE);
+    }
+
+    /**
+     * Crea la zona amb una folga donada.
+     *
+     * @param folga Cost extra admès respecte del camí mínim de cada color.
+     */
+    public RelevanceZone(int folga) {
+        this.folga = folga;
+    }
+
+    /**
+     * @return La folga respecte del camí mínim de cada color.
+     */
+    public int getFolga() {
+        return folga;
+    }
+
+    /**
+     * @param folga Cost extra admès respecte del camí mínim de cada color.
+     */
+    public void setFolga(int folga) {
+        this.folga = folga;
+    }
+
+    /**
+     * Restringeix una llista de moviments a la zona rellevant.
+     *
+     * @param estat Posició.
+     * @param moviments Moviments candidats de la posició.
+     * @return Els moviments de la zona, en el mateix ordre, o la llista original si no n'hi ha cap.
+     */
+    public List<MoveNode> podar(HexGameStatus estat, List<MoveNode> moviments) {
+        HexGeometry geometria = HexGeometry.of(estat.getSize());
+        int[] caselles = geometria.caselles(moviments);
+        int[] dins = podar(estat, caselles);
+        return (dins == caselles) ? moviments : geometria.moviments(dins);
+    }
+
+    /**
+     * Com {@link #podar(HexGameStatus, List)}, sobre índexs de casella (x * mida + y).
+     *
+     * @param estat Posició.
+     * @param caselles Caselles candidates de la posició.
+     * @return Les caselles de la zona, en el mateix ordre, o el mateix vector si no se'n treu
+     *         cap o no en queda cap.
+     */
+    public int[] podar(HexGameStatus estat, int[] caselles) {
+        return podar(adaptador.llegir(estat), caselles);
+    }
+
+    /**
+     * Com {@link #podar(HexGameStatus, int[])}, sobre un tauler qualsevol.
+     */
+    public int[] podar(HexBoard estat, int[] caselles) {
+        boolean[] zona = dijkstra.zonaRellevant(estat, estat.getCurrentPlayerColor(), folga);
+        int[] dins = new int[caselles.length];
+        int n = 0;
+        for (int casella : caselles) {
+            if (zona[casella]) dins[n++] = casella;
+        }
+        candidats += caselles.length;
+        dinsZona += n;
+        return (n == 0 || n == caselles.length) ? caselles : Arrays.copyOf(dins, n);
+    }
+
+    /**
+     * @return Nombre total de candidats que han arribat a la zona.
+     */
+    public long getCandidats() {
+        return candidats;
+    }
+
+    /**
+     * @return Nombre total de candidats que han quedat dins la zona.
+     */
+    public long getDinsZona() {
+        return dinsZona;
+    }
+}
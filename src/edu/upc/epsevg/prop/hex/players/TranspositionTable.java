@@ -0,0 +1,296 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Taula de transposició de mida fixa per emmagatzemar i reutilitzar la informació de les
+ * posicions ja explorades durant el càlcul del Minimax.
+ *
+ * Les entrades s'empaqueten en un vector de long, sense cap objecte per entrada: cada entrada
+ * ocupa dos long, la clau (el hash Zobrist sencer, per descartar col·lisions) i les dades. Les
+ * entrades s'agrupen en cubetes de dues: la primera es reserva a la de més profunditat i la
+ * segona es substitueix sempre. Una entrada nova va a la primera si és almenys tan profunda
+ * com la que hi ha o si la que hi ha és d'una generació anterior (en tots dos casos, la que hi
+ * havia passa a la segona) i, si no, a la segona. Si la posició ja és a la cubeta, se
+ * sobreescriu al seu lloc. El nombre de cubetes és una potència de dos i la memòria no creix.
+ *
+ * La taula es conserva d'una partida a l'altra: en lloc de buidar-la, cada partida nova obre
+ * una generació amb {@link #novaGeneracio()}. Les entrades d'altres generacions es continuen
+ * trobant, perquè la posició és la mateixa, però són les primeres que se substitueixen.
+ *
+ * La clau es desa combinada amb les dades (hash ^ dades), i una entrada només es dona per
+ * trobada si la combinació torna el hash buscat. Així, si dos fils escriuen alhora la mateixa
+ * entrada i en queden la clau d'un i les dades de l'altre, la consulta la descarta en lloc de
+ * tornar dades d'una altra posició. Ni la consulta ni l'escriptura fan servir cap bloqueig, i
+ * qualsevol taula es pot compartir entre tots els fils d'una mateixa cerca sense cap cost
+ * afegit; la política de substitució, en canvi, pot perdre alguna entrada quan hi ha curses.
+ *
+ * Les taules grans es poden guardar fora del heap amb {@link OffHeapTranspositionTable}:
+ * {@link #crear(int)} tria el lloc segons la mida. Una taula es pot desar en un fitxer
+ * amb {@link #desar(Path, int)} i tornar a fer servir, fins i tot en una altra execució, amb
+ * {@link MappedTranspositionTable}.
+ */
+public class TranspositionTable {
+    // Constants que representen el tipus de valor emmagatzemat
+    public static final int EXACT = 0; // Valor exacte per a una posició
+    public static final int alfa = 1;  // Cota inferior (alfa)
+    public static final int beta = 2;  // Cota superior (beta)
+    public static final int SENSE_JUGADA = -1; // Entrada sense millor moviment
+
+    /** Mida per defecte, en MB. */
+    public static final int MEGABYTES_PER_DEFECTE = 16;
+    /** Generacions diferents abans de tornar a començar (5 bits de les dades). */
+    public static final int GENERACIONS = 32;
+    /** Mida a partir de la qual {@link #crear(int)} guarda la taula fora del heap, en MB. */
+    public static final int MEGABYTES_FORA_HEAP = 1024;
+
+    /** Bytes de cada cubeta: dues entrades de dos long. */
+    private static final int BYTES_CUBETA = 32;
+    private static final long VALIDA = 1L << 63;
+    private static final int PROFUNDITAT_MAXIMA = 0xFF;
+    /** Màxim de cubetes: els índexs dels long han de cabre en un int. */
+    private static final long MAX_CUBETES = 1L << 28;
+
+    /**
+     * Cubetes consecutives de quatre long: clau ^ dades i dades de la primera entrada i de la
+     * segona (null si les dades són fora del heap).
+     */
+    private final long[] taula;
+    private final int nCubetes;
+    private final int mascara;
+    private final int megabytes;
+    /** No cal que sigui volàtil: només canvia entre partides, fora de la cerca. */
+    private int generacio;
+
+    /**
+     * Crea una taula de transposició de la mida per defecte.
+     */
+    public TranspositionTable() {
+        this(MEGABYTES_PER_DEFECTE);
+    }
+
+    /**
+     * Crea una taula de transposició.
+     *
+     * @param megabytes Memòria de la taula en MB; el nombre de cubetes s'arrodoneix a la
+     *                  potència de dos que hi cap.
+     */
+    public TranspositionTable(int megabytes) {
+        this(megabytes, true);
+    }
+
+    /**
+     * @param vector Si les dades es guarden en un vector del heap; si no, la subclasse les guarda.
+     */
+    TranspositionTable(int megabytes, boolean vector) {
+        this.nCubetes = nombreCubetes(megabytes);
+        this.taula = vector ? new long[nCubetes * 4] : null;
+        this.mascara = nCubetes - 1;
+        this.megabytes = Math.max(1, megabytes);
+    }
+
+    /**
+     * @param megabytes Memòria de la taula en MB.
+     * @return Nombre de cubetes: la potència de dos més gran que hi cap.
+     */
+    static int nombreCubetes(int megabytes) {
+        long cubetes = Math.max(1L, (long) Math.max(1, megabytes) * 1024 * 1024 / BYTES_CUBETA);
+        return (int) Long.highestOneBit(Math.min(cubetes, MAX_CUBETES));
+    }
+
+    /**
+     * Crea una taula de transposició al heap o, a partir de {@link #MEGABYTES_FORA_HEAP}, fora.
+     *
+     * @param megabytes Memòria de la taula en MB.
+     * @return La taula buida.
+     */
+    public static TranspositionTable crear(int megabytes) {
+        return (megabytes >= MEGABYTES_FORA_HEAP)
+                ? new OffHeapTranspositionTable(megabytes)
+                : new TranspositionTable(megabytes);
+    }
+
+    /**
+     * @return Si la taula es guarda en un fitxer i s'ha de conservar d'una partida a l'altra.
+     */
+    public boolean isPersistent() {
+        return false;
+    }
+
+    /**
+     * @return La memòria demanada per a la taula, en MB.
+     */
+    public int getMegabytes() {
+        return megabytes;
+    }
+
+    /**
+     * @return Nombre d'entrades que hi caben.
+     */
+    public int capacitat() {
+        return nCubetes * 2;
+    }
+
+    /**
+     * @return Nombre d'entrades ocupades (recorre tota la taula).
+     */
+    public int size() {
+        int n = 0;
+        for (int i = 1; i < nCubetes * 4; i += 2) {
+            if ((llegir(i) & VALIDA) != 0) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Buida la taula.
+     */
+    public void clear() {
+        Arrays.fill(taula, 0L);
+    }
+
+    /**
+     * Comença una generació nova: les entrades desades fins ara es conserven, però passen a ser
+     * les primeres a substituir.
+     */
+    public void novaGeneracio() {
+        generacio = (generacio + 1) % GENERACIONS;
+    }
+
+    /**
+     * @return La generació de les entrades que es desen ara.
+     */
+    public int getGeneracio() {
+        return generacio;
+    }
+
+    /**
+     * @param generacio Generació de les entrades que es desaran a partir d'ara.
+     */
+    void setGeneracio(int generacio) {
+        this.generacio = Math.floorMod(generacio, GENERACIONS);
+    }
+
+    /**
+     * Desa una còpia de la taula en un fitxer, que es pot tornar a carregar amb
+     * {@link MappedTranspositionTable#carregar}.
+     *
+     * @param fitxer Fitxer on es desa (se sobreescriu si ja existeix).
+     * @param midaTauler Mida del tauler de les posicions de la taula.
+     * @throws IOException Si el fitxer no es pot escriure.
+     */
+    public void desar(Path fitxer, int midaTauler) throws IOException {
+        MappedTranspositionTable copia = MappedTranspositionTable.crear(fitxer, midaTauler, megabytes);
+        copia.setGeneracio(generacio);
+        for (int i = 0; i < nCubetes * 4; i++) {
+            copia.escriure(i, llegir(i));
+        }
+        copia.desar();
+    }
+
+    /**
+     * Emmagatzema una entrada a la taula de transposició.
+     *
+     * @param hash     El valor hash únic que representa l'estat del joc.
+     * @param depth    La profunditat a la qual es va calcular aquest valor.
+     * @param value    El valor heurístic de la posició.
+     * @param flag     El tipus de valor (EXACT, alfa, beta).
+     * @param bestMove La casella del millor moviment per a aquesta posició, o SENSE_JUGADA.
+     */
+    public void store(long hash, int depth, int value, int flag, int bestMove) {
+        int c = cubeta(hash);
+        int generacio = this.generacio;
+        long dades = empaquetar(depth, value, flag, bestMove, generacio);
+        long clau0 = llegir(c);
+        long dades0 = llegir(c + 1);
+        if (dades0 != 0 && (clau0 ^ dades0) == hash) {
+            // La posició ja ocupa l'entrada de profunditat: s'actualitza al seu lloc
+            escriure(c, hash ^ dades);
+            escriure(c + 1, dades);
+        } else if (depth >= profunditat(dades0) || generacio(dades0) != generacio) {
+            // L'entrada de profunditat (o la d'una partida anterior) baixa a la de substitució
+            if (dades0 != 0) {
+                escriure(c + 2, clau0);
+                escriure(c + 3, dades0);
+            }
+            escriure(c, hash ^ dades);
+            escriure(c + 1, dades);
+        } else {
+            escriure(c + 2, hash ^ dades);
+            escriure(c + 3, dades);
+        }
+    }
+
+    /**
+     * Busca una entrada a la taula de transposició.
+     *
+     * @param hash El valor hash de l'estat a buscar.
+     * @param entrada Contenidor on es deixa l'entrada si hi és.
+     * @return Si s'ha trobat l'entrada.
+     */
+    public boolean lookup(long hash, TableEntry entrada) {
+        int c = cubeta(hash);
+        // Es llegeix cada long una sola vegada, perquè un altre fil el pot canviar entremig
+        long dades = llegir(c + 1);
+        if (dades == 0 || (llegir(c) ^ dades) != hash) {
+            dades = llegir(c + 3);
+            if (dades == 0 || (llegir(c + 2) ^ dades) != hash) return false;
+        }
+        entrada.value = (int) dades;
+        entrada.bestMove = (int) ((dades >>> 32) & 0xFFFF) - 1;
+        entrada.depth = (int) ((dades >>> 48) & PROFUNDITAT_MAXIMA);
+        entrada.flag = (int) ((dades >>> 56) & 0x3);
+        return true;
+    }
+
+    private int cubeta(long hash) {
+        return ((int) hash & mascara) << 2;
+    }
+
+    /**
+     * @param i Índex d'un long de la taula.
+     * @return El long.
+     */
+    long llegir(int i) {
+        return taula[i];
+    }
+
+    /**
+     * @param i Índex d'un long de la taula.
+     * @param valor Valor que s'hi desa.
+     */
+    void escriure(int i, long valor) {
+        taula[i] = valor;
+    }
+
+    /**
+     * Format: [63] vàlida | [58..62] generació | [56..57] tipus | [48..55] profunditat |
+     * [32..47] casella + 1 | [0..31] valor
+     */
+    private static long empaquetar(int depth, int value, int flag, int bestMove, int generacio) {
+        long profunditat = Math.max(0, Math.min(depth, PROFUNDITAT_MAXIMA));
+        return VALIDA | ((long) generacio << 58) | ((long) flag << 56) | (profunditat << 48)
+                | ((long) ((bestMove + 1) & 0xFFFF) << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static int profunditat(long dades) {
+        return (dades == 0) ? -1 : (int) ((dades >>> 48) & PROFUNDITAT_MAXIMA);
+    }
+
+    private static int generacio(long dades) {
+        return (int) ((dades >>> 58) & (GENERACIONS - 1));
+    }
+
+    /**
+     * Entrada de la taula de transposició. La consulta l'omple en lloc de crear-ne una de nova,
+     * de manera que cada fil de cerca en pot reutilitzar una.
+     */
+    public static class TableEntry {
+        public int value;    // Valor heurístic de la posició
+        public int depth;    // Profunditat de càlcul d'aquest valor
+        public int flag;     // EXACT, alfa o beta
+        public int bestMove; // Casella del millor moviment associat (SENSE_JUGADA si no n'hi ha)
+    }
+}
@@ -0,0 +1,546 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Connexions virtuals d'un color calculades amb H-search (regles AND i OR d'Anshelevich).
+ *
+ * Els nodes són les caselles pròpies i buides i les dues vores del color. Una connexió plena
+ * entre dos nodes es manté encara que el contrari jugui primer dins la seva portadora (el
+ * conjunt de caselles buides que fa servir); una semiconnexió necessita que el color jugui
+ * primer, a la seva casella clau. Les connexions base són les adjacències. La regla AND encadena
+ * dues connexions plenes disjuntes a través d'un node: si és propi en surt una plena, si és buit
+ * una semi amb clau al node. La regla OR converteix en plena un conjunt de semis del mateix
+ * parell amb portadores sense cap casella comuna. Hi ha una connexió entre les dues vores si el
+ * color ja té la partida guanyada: plena, jugui qui jugui, o semi, si li toca jugar.
+ *
+ * El càlcul és incomplet a propòsit (es limiten les connexions per parell i la mida de les
+ * portadores), però tot el que troba és correcte. Els resultats es desen per hash Zobrist i,
+ * quan la posició anterior hi és, la nova es deriva d'aquella: una pedra contrària només elimina
+ * les connexions que la tenien a la portadora, i una pròpia les conserva, converteix en plenes
+ * les semis amb clau a la casella i només torna a combinar a partir d'ella.
+ *
+ * No és segura entre fils: cal una instància per fil de cerca.
+ */
+public class VirtualConnections {
+    /** Mida per defecte de la memòria de posicions, en entrades. */
+    public static final int ENTRADES_PER_DEFECTE = 1 << 8;
+    /** Nombre màxim de connexions plenes que es guarden per parell de nodes. */
+    public static final int MAX_PLENES = 3;
+    /** Nombre màxim de semiconnexions que es guarden per parell de nodes. */
+    public static final int MAX_SEMIS = 6;
+    /** Nombre màxim de caselles de la portadora d'una connexió. */
+    public static final int MAX_PORTADORA = 12;
+
+    private final HexGeometry geometria;
+    private final int numCaselles;
+    private final int numNodes;
+    private final int paraules;
+    private final long[] claus;
+    private final Conjunt[][] conjunts;
+    private final int mascara;
+    private long hits;
+    private long misses;
+    private final HexBoard.Adaptador adaptador = new HexBoard.Adaptador();
+
+    // Vectors de treball del tancament: connexions per parell i per node, indexats densament
+    private final ArrayList<Connexio>[] plenesParell;
+    private final ArrayList<Connexio>[] semisParell;
+    private final ArrayList<Connexio>[] incidents;
+    private final int[] parellsTocats;
+    private final boolean[] tocat;
+    private int nTocats;
+
+    /**
+     * Connexió virtual entre dos nodes, amb a menor que b. És immutable i es comparteix entre
+     * les posicions derivades que la conserven tal com és.
+     */
+    static final class Connexio {
+        final int a;
+        final int b;
+        final long[] portadora;
+        /** Nombre de caselles de la portadora. */
+        final int mida;
+        /** Casella clau de la semiconnexió, o -1 si és plena. */
+        final int clau;
+
+        Connexio(int a, int b, long[] portadora, int clau) {
+            this.a = Math.min(a, b);
+            this.b = Math.max(a, b);
+            this.portadora = portadora;
+            this.mida = VirtualConnections.mida(portadora);
+            this.clau = clau;
+        }
+
+        int altre(int node) {
+            return (node == a) ? b : a;
+        }
+    }
+
+    /**
+     * Connexions d'un color en una posició.
+     */
+    static final class Conjunt {
+        final int color;
+        final int[] tauler;
+        final ArrayList<Connexio> plenes = new ArrayList<>();
+        final ArrayList<Connexio> semis = new ArrayList<>();
+        boolean guanyaPle;
+        boolean guanyaSemi;
+
+        Conjunt(int color, int[] tauler) {
+            this.color = color;
+            this.tauler = tauler;
+        }
+    }
+
+    /**
+     * Crea el motor per a una mida de tauler amb la memòria de posicions per defecte.
+     *
+     * @param midaTauler Mida del tauler.
+     */
+    public VirtualConnections(int midaTauler) {
+        this(midaTauler, ENTRADES_PER_DEFECTE);
+    }
+
+    /**
+     * Crea el motor per a una mida de tauler.
+     *
+     * @param midaTauler Mida del tauler.
+     * @param entrades Nombre de posicions que es recorden (s'arrodoneix a potència de dos).
+     */
+    public VirtualConnections(int midaTauler, int entrades) {
+        this.geometria = HexGeometry.of(midaTauler);
+        this.numCaselles = geometria.numCaselles;
+        this.numNodes = numCaselles + 2;
+        this.paraules = (numCaselles + 63) >>> 6;
+        int mida = Integer.highestOneBit(Math.max(1, entrades - 1) << 1);
+        this.claus = new long[mida];
+        this.conjunts = new Conjunt[mida][];
+        this.mascara = mida - 1;
+        this.plenesParell = nouVector(numNodes * numNodes);
+        this.semisParell = nouVector(numNodes * numNodes);
+        this.incidents = nouVector(numNodes);
+        this.parellsTocats = new int[numNodes * numNodes];
+        this.tocat = new boolean[numNodes * numNodes];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayList<Connexio>[] nouVector(int mida) {
+        return new ArrayList[mida];
+    }
+
+    /**
+     * @return Mida del tauler.
+     */
+    public int getMidaTauler() {
+        return geometria.midaTauler;
+    }
+
+    /**
+     * Busca un guanyador demostrat per connexions virtuals: el color que mou si té una connexió
+     * (plena o semi) entre les seves vores, o el contrari si en té una de plena.
+     *
+     * @param estat Posició.
+     * @param hash Hash Zobrist de la posició.
+     * @return El color guanyador (1 o -1), o 0 si no se'n pot demostrar cap.
+     */
+    public int guanyador(HexGameStatus estat, long hash) {
+        return guanyador(adaptador.llegir(estat), hash);
+    }
+
+    /**
+     * Com {@link #guanyador(HexGameStatus, long)}, sobre un tauler qualsevol.
+     */
+    public int guanyador(HexBoard estat, long hash) {
+        return guanyador(conjunts(estat, hash), estat.getCurrentPlayerColor());
+    }
+
+    /**
+     * Busca una jugada que conservi una victòria demostrada del color que mou: la casella clau
+     * d'una semiconnexió entre les seves vores o, si ja en té una de plena, una casella de la
+     * seva portadora (una pedra pròpia a la portadora no la trenca).
+     *
+     * @param estat Posició.
+     * @param hash Hash Zobrist de la posició.
+     * @return Índex (x * mida + y) de la jugada, o -1 si el color que mou no té la victòria demostrada.
+     */
+    public int jugadaGuanyadora(HexGameStatus estat, long hash) {
+        int colorQueMou = estat.getCurrentPlayerColor();
+        Conjunt mou = conjunts(adaptador.llegir(estat), hash)[colorQueMou == 1 ? 0 : 1];
+        for (Connexio v : mou.semis) {
+            if (esEntreVores(v)) return v.clau;
+        }
+        for (Connexio v : mou.plenes) {
+            if (!esEntreVores(v)) continue;
+            for (int w = 0; w < paraules; w++) {
+                if (v.portadora[w] != 0) return (w << 6) + Long.numberOfTrailingZeros(v.portadora[w]);
+            }
+        }
+        return -1;
+    }
+
+    private Conjunt[] conjunts(HexBoard estat, long hash) {
+        Conjunt[] c = buscar(hash);
+        if (c == null) {
+            int[] tauler = llegirTauler(estat);
+            c = new Conjunt[]{calcular(1, tauler), calcular(-1, tauler.clone())};
+            desar(hash, c);
+        }
+        return c;
+    }
+
+    /**
+     * Com {@link #guanyador(HexGameStatus, long)}, però si la posició anterior encara es
+     * recorda, deriva les connexions de les seves en lloc de calcular-les de nou.
+     *
+     * @param estat Posició després de la jugada.
+     * @param hash Hash Zobrist de la posició.
+     * @param hashPare Hash Zobrist de la posició abans de la jugada.
+     * @param casella Índex (x * mida + y) de la casella jugada.
+     * @param colorPedra Color de la pedra jugada (1 o -1).
+     * @return El color guanyador (1 o -1), o 0 si no se'n pot demostrar cap.
+     */
+    public int guanyador(HexGameStatus estat, long hash, long hashPare, int casella, int colorPedra) {
+        return guanyador(adaptador.llegir(estat), hash, hashPare, casella, colorPedra);
+    }
+
+    /**
+     * Com {@link #guanyador(HexGameStatus, long, long, int, int)}, sobre un tauler qualsevol.
+     */
+    public int guanyador(HexBoard estat, long hash, long hashPare, int casella, int colorPedra) {
+        Conjunt[] c = buscar(hash);
+        if (c == null) {
+            Conjunt[] pare = buscar(hashPare);
+            if (pare == null) return guanyador(estat, hash);
+            Conjunt propi = pare[colorPedra == 1 ? 0 : 1];
+            Conjunt contrari = pare[colorPedra == 1 ? 1 : 0];
+            Conjunt nouPropi = afegirPropia(propi, casella);
+            Conjunt nouContrari = afegirContraria(contrari, casella);
+            c = (colorPedra == 1) ? new Conjunt[]{nouPropi, nouContrari} : new Conjunt[]{nouContrari, nouPropi};
+            desar(hash, c);
+        }
+        return guanyador(c, estat.getCurrentPlayerColor());
+    }
+
+    private static int guanyador(Conjunt[] c, int colorQueMou) {
+        Conjunt mou = c[colorQueMou == 1 ? 0 : 1];
+        Conjunt espera = c[colorQueMou == 1 ? 1 : 0];
+        if (mou.guanyaPle || mou.guanyaSemi) return colorQueMou;
+        if (espera.guanyaPle) return -colorQueMou;
+        return 0;
+    }
+
+    /**
+     * Buida la memòria de posicions i reinicia els comptadors.
+     */
+    public void clear() {
+        Arrays.fill(conjunts, null);
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return Nombre de consultes resoltes amb la memòria de posicions.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Nombre de consultes que han hagut de calcular o derivar les connexions.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    private Conjunt[] buscar(long hash) {
+        int i = (int) hash & mascara;
+        if (conjunts[i] != null && claus[i] == hash) {
+            hits++;
+            return conjunts[i];
+        }
+        misses++;
+        return null;
+    }
+
+    private void desar(long hash, Conjunt[] c) {
+        int i = (int) hash & mascara;
+        claus[i] = hash;
+        conjunts[i] = c;
+    }
+
+    private int[] llegirTauler(HexBoard estat) {
+        int mida = geometria.midaTauler;
+        int[] tauler = new int[numCaselles];
+        for (int x = 0; x < mida; x++) {
+            for (int y = 0; y < mida; y++) {
+                tauler[x * mida + y] = estat.getPos(x, y);
+            }
+        }
+        return tauler;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Càlcul complet i derivació incremental
+    // ------------------------------------------------------------------------------------------
+
+    /**
+     * Calcula les connexions d'un color des de zero: adjacències i tancament AND/OR.
+     */
+    Conjunt calcular(int color, int[] tauler) {
+        Conjunt s = new Conjunt(color, tauler);
+        ArrayDeque<Connexio> cua = new ArrayDeque<>();
+        long[] buida = new long[paraules];
+        for (int x = 0; x < numCaselles; x++) {
+            if (tauler[x] == -color) continue;
+            for (int k = geometria.iniciVeins[x]; k < geometria.iniciVeins[x + 1]; k++) {
+                int y = node(geometria.veins[k], color);
+                if (y < 0 || (y < numCaselles && (y < x || tauler[y] == -color))) continue;
+                afegirPlena(s, new Connexio(x, y, buida, -1), cua);
+            }
+        }
+        tancar(s, cua);
+        return s;
+    }
+
+    /**
+     * Connexions del color que acaba de jugar a la casella: totes continuen valent sense la
+     * casella a la portadora, i les semis amb clau a la casella passen a ser plenes.
+     */
+    private Conjunt afegirPropia(Conjunt pare, int casella) {
+        int[] tauler = pare.tauler.clone();
+        tauler[casella] = pare.color;
+        Conjunt s = new Conjunt(pare.color, tauler);
+        ArrayDeque<Connexio> noves = new ArrayDeque<>();
+        ArrayDeque<Connexio> ignorades = new ArrayDeque<>();
+        for (Connexio v : pare.plenes) {
+            afegirPlena(s, senseCasella(v, casella, -1), ignorades);
+        }
+        for (Connexio v : pare.semis) {
+            if (v.clau == casella) {
+                afegirPlena(s, senseCasella(v, casella, -1), noves);
+            } else {
+                afegirSemi(s, senseCasella(v, casella, v.clau), ignorades);
+            }
+        }
+        // Ara la casella és pròpia: totes les cadenes que hi passen donen connexions plenes
+        if (incidents[casella] != null) noves.addAll(incidents[casella]);
+        tancar(s, noves);
+        return s;
+    }
+
+    /**
+     * Connexions del color contrari al que acaba de jugar: se'n perden les que tenien la
+     * casella a la portadora o com a extrem, i la resta continuen valent tal com estan.
+     */
+    private Conjunt afegirContraria(Conjunt pare, int casella) {
+        int[] tauler = pare.tauler.clone();
+        tauler[casella] = -pare.color;
+        Conjunt s = new Conjunt(pare.color, tauler);
+        for (Connexio v : pare.plenes) {
+            if (v.a != casella && v.b != casella && !conte(v.portadora, casella)) {
+                s.plenes.add(v);
+                s.guanyaPle |= esEntreVores(v);
+            }
+        }
+        for (Connexio v : pare.semis) {
+            if (v.a != casella && v.b != casella && !conte(v.portadora, casella)) {
+                s.semis.add(v);
+                s.guanyaSemi |= esEntreVores(v);
+            }
+        }
+        return s;
+    }
+
+    private Connexio senseCasella(Connexio v, int casella, int clau) {
+        if (!conte(v.portadora, casella) && v.clau == clau) return v;
+        long[] p = v.portadora.clone();
+        p[casella >>> 6] &= ~(1L << casella);
+        return new Connexio(v.a, v.b, p, clau);
+    }
+
+    /**
+     * Aplica la regla AND a partir de cada connexió plena nova fins que no n'apareixen més.
+     * Deixa els vectors de treball buits per al càlcul següent.
+     */
+    private void tancar(Conjunt s, ArrayDeque<Connexio> cua) {
+        while (!cua.isEmpty() && !s.guanyaPle) {
+            Connexio v = cua.poll();
+            combinar(s, v, v.a, cua);
+            combinar(s, v, v.b, cua);
+        }
+        for (int i = 0; i < nTocats; i++) {
+            int p = parellsTocats[i];
+            if (plenesParell[p] != null) plenesParell[p].clear();
+            if (semisParell[p] != null) semisParell[p].clear();
+            tocat[p] = false;
+        }
+        nTocats = 0;
+        for (ArrayList<Connexio> llista : incidents) {
+            if (llista != null) llista.clear();
+        }
+    }
+
+    /**
+     * Regla AND: encadena la connexió plena amb les plenes que surten del node del mig.
+     * Les vores no es fan servir com a node del mig (connectarien totes les caselles que hi
+     * arriben i no aporten res a la connexió entre vores).
+     */
+    private void combinar(Conjunt s, Connexio nova, int mig, ArrayDeque<Connexio> cua) {
+        if (mig >= numCaselles) return;
+        ArrayList<Connexio> llista = incidents[mig];
+        if (llista == null) return;
+        int extrem = nova.altre(mig);
+        boolean propi = s.tauler[mig] == s.color;
+        int midaMaxima = MAX_PORTADORA - nova.mida - (propi ? 0 : 1);
+        for (int i = 0; i < llista.size(); i++) {
+            Connexio w = llista.get(i);
+            int z = w.altre(mig);
+            if (z == extrem || w.mida > midaMaxima || !disjuntes(nova.portadora, w.portadora)) continue;
+            if (conte(w.portadora, extrem) || conte(nova.portadora, z)) continue;
+            long[] unio = unio(nova.portadora, w.portadora);
+            if (propi) {
+                afegirPlena(s, new Connexio(extrem, z, unio, -1), cua);
+            } else {
+                unio[mig >>> 6] |= 1L << mig;
+                afegirSemi(s, new Connexio(extrem, z, unio, mig), cua);
+            }
+        }
+    }
+
+    private void afegirPlena(Conjunt s, Connexio c, ArrayDeque<Connexio> cua) {
+        if (c.a == c.b || c.mida > MAX_PORTADORA) return;
+        ArrayList<Connexio> llista = llistaParell(plenesParell, c);
+        for (int i = 0; i < llista.size(); i++) {
+            if (subconjunt(llista.get(i).portadora, c.portadora)) return;
+        }
+        if (llista.size() >= MAX_PLENES) return;
+        llista.add(c);
+        s.plenes.add(c);
+        incident(c.a).add(c);
+        incident(c.b).add(c);
+        cua.add(c);
+        s.guanyaPle |= esEntreVores(c);
+    }
+
+    private void afegirSemi(Conjunt s, Connexio c, ArrayDeque<Connexio> cua) {
+        if (c.a == c.b || c.mida > MAX_PORTADORA) return;
+        ArrayList<Connexio> plenes = llistaParell(plenesParell, c);
+        for (int i = 0; i < plenes.size(); i++) {
+            if (subconjunt(plenes.get(i).portadora, c.portadora)) return;
+        }
+        ArrayList<Connexio> llista = llistaParell(semisParell, c);
+        for (int i = 0; i < llista.size(); i++) {
+            if (subconjunt(llista.get(i).portadora, c.portadora)) return;
+        }
+        if (llista.size() >= MAX_SEMIS) return;
+        llista.add(c);
+        s.semis.add(c);
+        s.guanyaSemi |= esEntreVores(c);
+
+        // Regla OR: s'afegeixen semis mentre redueixen la intersecció; si queda buida, és plena
+        long[] interseccio = c.portadora.clone();
+        long[] unio = c.portadora.clone();
+        for (int i = 0; i < llista.size() - 1; i++) {
+            long[] p = llista.get(i).portadora;
+            if (!redueix(interseccio, p)) continue;
+            boolean buida = true;
+            for (int w = 0; w < paraules; w++) {
+                interseccio[w] &= p[w];
+                unio[w] |= p[w];
+                buida &= interseccio[w] == 0;
+            }
+            if (buida) {
+                afegirPlena(s, new Connexio(c.a, c.b, unio, -1), cua);
+                return;
+            }
+        }
+    }
+
+    private ArrayList<Connexio> llistaParell(ArrayList<Connexio>[] taula, Connexio c) {
+        int p = c.a * numNodes + c.b;
+        ArrayList<Connexio> llista = taula[p];
+        if (llista == null) {
+            llista = new ArrayList<>(2);
+            taula[p] = llista;
+        }
+        if (!tocat[p]) {
+            tocat[p] = true;
+            parellsTocats[nTocats++] = p;
+        }
+        return llista;
+    }
+
+    private ArrayList<Connexio> incident(int node) {
+        ArrayList<Connexio> llista = incidents[node];
+        if (llista == null) {
+            llista = new ArrayList<>(8);
+            incidents[node] = llista;
+        }
+        return llista;
+    }
+
+    private boolean esEntreVores(Connexio c) {
+        return c.a == numCaselles && c.b == numCaselles + 1;
+    }
+
+    /**
+     * @return El node d'un veí de la geometria per al color: la casella, la vora inicial
+     *         (numCaselles), la final (numCaselles + 1) o -1 si és una vora de l'altre color.
+     */
+    private int node(int vei, int color) {
+        if (vei < numCaselles) return vei;
+        if (vei == geometria.nodeInici(color)) return numCaselles;
+        if (vei == geometria.nodeFinal(color)) return numCaselles + 1;
+        return -1;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Operacions sobre portadores (conjunts de bits de caselles)
+    // ------------------------------------------------------------------------------------------
+
+    private static boolean conte(long[] p, int casella) {
+        return casella < (p.length << 6) && (p[casella >>> 6] & (1L << casella)) != 0;
+    }
+
+    private static boolean disjuntes(long[] p, long[] q) {
+        for (int w = 0; w < p.length; w++) {
+            if ((p[w] & q[w]) != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean subconjunt(long[] p, long[] q) {
+        for (int w = 0; w < p.length; w++) {
+            if ((p[w] & ~q[w]) != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean redueix(long[] interseccio, long[] p) {
+        for (int w = 0; w < p.length; w++) {
+            if ((interseccio[w] & ~p[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    private static long[] unio(long[] p, long[] q) {
+        long[] r = new long[p.length];
+        for (int w = 0; w < p.length; w++) {
+            r[w] = p[w] | q[w];
+        }
+        return r;
+    }
+
+    static int mida(long[] p) {
+        int n = 0;
+        for (long w : p) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,117 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import java.awt.Point;
+import java.util.Random;
+
+/**
+ * Classe que implementa el hashing Zobrist per representar de manera eficient
+ * els estats del joc amb valors hash únics.
+ */
+class ZobristHashing {
+    /**
+     * Llavor dels valors aleatoris. És fixa perquè els hash d'una posició siguin els mateixos
+     * d'una execució a l'altra i les taules desades en un fitxer es puguin tornar a fer servir.
+     */
+    static final long LLAVOR = 0x5DEECE66DL;
+    private static int boardSize = 11; // Mida del tauler per defecte
+    private static long[][][] ZOBRIST_TABLE; // Taula Zobrist per als estats
+    /**
+     * Valors que es combinen amb el hash d'una posició a la taula de transposició segons el color
+     * del jugador que cerca. Els valors de la taula són des del seu punt de vista, i la mateixa
+     * posició cercada per l'altre color no els ha de trobar.
+     */
+    private static final long PERSPECTIVA_JUGADOR1 = 0x2545F4914F6CDD1DL;
+    private static final long PERSPECTIVA_JUGADOR2 = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Configura la mida del tauler i genera la taula Zobrist corresponent.
+     *
+     * @param newSize La nova mida del tauler.
+     */
+    public static void setBoardSize(int newSize) {
+        boardSize = newSize;
+        generateZobristTable();
+    }
+
+    /**
+     * Genera la taula Zobrist per a la mida actual del tauler.
+     */
+    private static void generateZobristTable() {
+        ZOBRIST_TABLE = new long[boardSize][boardSize][3]; // [0: buit, 1: jugador 1, 2: jugador 2]
+        Random random = new Random(LLAVOR);
+        for (int x = 0; x < boardSize; x++) {
+            for (int y = 0; y < boardSize; y++) {
+                for (int k = 0; k < 3; k++) {
+                    ZOBRIST_TABLE[x][y][k] = random.nextLong();
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula el valor hash d'un estat del joc.
+     *
+     * @param estado L'estat del joc.
+     * @return El valor hash corresponent.
+     */
+    public static long calculateHash(HexGameStatus estado) {
+        return calculateHash(HexBoard.of(estado));
+    }
+
+    /**
+     * Calcula el valor hash d'un tauler.
+     *
+     * @param estado El tauler.
+     * @return El valor hash corresponent.
+     */
+    public static long calculateHash(HexBoard estado) {
+        long hash = 0;
+        for (int x = 0; x < estado.getSize(); x++) {
+            for (int y = 0; y < estado.getSize(); y++) {
+                int piece = estado.getPos(x, y); // 0: buit, 1: jugador 1, -1: jugador 2
+                int index = (piece == 1) ? 1 : (piece == -1) ? 2 : 0;
+                hash ^= ZOBRIST_TABLE[x][y][index];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param color Color del jugador que cerca (1 o -1).
+     * @return El valor que es combina amb el hash de les posicions que desa i consulta a la taula
+     *         de transposició.
+     */
+    static long perspectiva(int color) {
+        return (color == 1) ? PERSPECTIVA_JUGADOR1 : PERSPECTIVA_JUGADOR2;
+    }
+
+    /**
+     * Actualitza el valor hash després de realitzar un moviment.
+     *
+     * @param hash      El hash actual.
+     * @param move      El moviment realitzat.
+     * @param oldState  L'estat anterior de la casella (buit, jugador 1, jugador 2).
+     * @param newState  El nou estat de la casella.
+     * @return El valor hash actualitzat.
+     */
+    public static long updateHash(long hash, Point move, int oldState, int newState) {
+        return updateHash(hash, move.x, move.y, oldState, newState);
+    }
+
+    /**
+     * Actualitza el valor hash després de canviar l'estat de la casella (x, y).
+     *
+     * @param hash      El hash actual.
+     * @param x         Coordenada x de la casella.
+     * @param y         Coordenada y de la casella.
+     * @param oldState  L'estat anterior de la casella (buit, jugador 1, jugador 2).
+     * @param newState  El nou estat de la casella.
+     * @return El valor hash actualitzat.
+     */
+    public static long updateHash(long hash, int x, int y, int oldState, int newState) {
+        int oldIndex = (oldState == 1) ? 1 : (oldState == -1) ? 2 : 0;
+        int newIndex = (newState == 1) ? 1 : (newState == -1) ? 2 : 0;
+        return hash ^ ZOBRIST_TABLE[x][y][oldIndex] ^ ZOBRIST_TABLE[x][y][newIndex];
+    }
+}
@@ -3,15 +3,29 @@ package edu.upc.epsevg.prop.hex.players;
 import edu.upc.epsevg.prop.hex.HexGameStatus;
 import edu.upc.epsevg.prop.hex.IPlayer;
 import edu.upc.epsevg.prop.hex.MoveNode;
+import edu.upc.epsevg.prop.hex.PlayerMove;
 import edu.upc.epsevg.prop.hex.PlayerType;
 import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestPlayerMiniMax {
@@ -119,6 +133,426 @@ public class TestPlayerMiniMax {
        assertEquals(5, distance.shortestPath);
     }
     
+    @Test
+    public void testDijkstra_PontEntrePedresPropies() {
+        HexGameStatus gs = new HexGameStatus(3);
+        gs.placeStone(new Point(0, 1)); // PLAYER1
+        gs.placeStone(new Point(0, 2)); // PLAYER2
+        gs.placeStone(new Point(2, 0)); // PLAYER1, pont amb (0, 1) per (1, 0) i (1, 1)
+
+        Dijkstra distance = new Dijkstra().shortestPathWithVirtualNodes(gs, 1);
+        System.out.println("testDijkstra_PontEntrePedresPropies: " + distance.shortestPath);
+        assertEquals(0, distance.shortestPath);
+        assertEquals(1, distance.viablePathsCount);
+        assertEquals(2, distance.enemyShortestPath);
+    }
+
+    @Test
+    public void testDijkstra_SenseReservesDeMemoria() {
+        HexGameStatus gs = posicioAleatoria(11, 30, new Random(7));
+
+        Dijkstra dijkstra = new Dijkstra();
+        Dijkstra esperat = new Dijkstra().shortestPathWithVirtualNodes(gs, 1);
+        // Escalfament: dimensiona els buffers i deixa que el JIT compili el codi
+        for (int i = 0; i < 20000; i++) {
+            dijkstra.calcular(gs, (i & 1) == 0 ? 1 : -1);
+        }
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long fil = Thread.currentThread().getId();
+        long abans = mx.getThreadAllocatedBytes(fil);
+        for (int i = 0; i < 10000; i++) {
+            dijkstra.calcular(gs, 1);
+        }
+        long reservat = mx.getThreadAllocatedBytes(fil) - abans;
+        System.out.println("testDijkstra_SenseReservesDeMemoria: " + reservat + " bytes en 10000 crides");
+
+        assertSame(dijkstra, dijkstra.calcular(gs, 1));
+        assertEquals(esperat.shortestPath, dijkstra.shortestPath);
+        assertEquals(esperat.viablePathsCount, dijkstra.viablePathsCount);
+        assertEquals(esperat.enemyShortestPath, dijkstra.enemyShortestPath);
+        assertEquals(esperat.viableEnemyPathsCount, dijkstra.viableEnemyPathsCount);
+        // Una sola reserva per crida ja serien més de 160 KB
+        assertTrue(reservat < 1024);
+    }
+
+    @Test
+    public void testIncrementalDijkstra_PushPopCoincideixAmbRecalcul() {
+        passeigIncremental(11, (gs, incremental, random) -> {
+            for (int color : new int[]{1, -1}) {
+                Dijkstra esperat = new Dijkstra().calcular(gs, color);
+                Dijkstra obtingut = incremental.metriques(color, new Dijkstra());
+                assertEquals(esperat.shortestPath, obtingut.shortestPath);
+                assertEquals(esperat.viablePathsCount, obtingut.viablePathsCount);
+                assertEquals(esperat.enemyShortestPath, obtingut.enemyShortestPath);
+                assertEquals(esperat.viableEnemyPathsCount, obtingut.viableEnemyPathsCount);
+            }
+        });
+    }
+
+    @Test
+    public void testIncrementalDijkstra_FitesSenseReconstruir() {
+        passeigIncremental(13, (gs, incremental, random) -> {
+            // Sovint es consulten només les fites, de manera que el pop desfà una reconstrucció pendent
+            if (random.nextBoolean()) return;
+
+            for (int color : new int[]{1, -1}) {
+                Dijkstra esperat = new Dijkstra().calcular(gs, color);
+                Dijkstra minim = new Dijkstra();
+                Dijkstra maxim = new Dijkstra();
+                boolean exactes = incremental.metriquesFitades(color, minim, maxim);
+                assertTrue(minim.shortestPath <= esperat.shortestPath && esperat.shortestPath <= maxim.shortestPath);
+                assertTrue(minim.viablePathsCount <= esperat.viablePathsCount && esperat.viablePathsCount <= maxim.viablePathsCount);
+                assertTrue(minim.enemyShortestPath <= esperat.enemyShortestPath && esperat.enemyShortestPath <= maxim.enemyShortestPath);
+                assertTrue(minim.viableEnemyPathsCount <= esperat.viableEnemyPathsCount && esperat.viableEnemyPathsCount <= maxim.viableEnemyPathsCount);
+                if (exactes) {
+                    assertEquals(esperat.shortestPath, minim.shortestPath);
+                    assertEquals(esperat.viablePathsCount, minim.viablePathsCount);
+                    assertEquals(esperat.enemyShortestPath, minim.enemyShortestPath);
+                    assertEquals(esperat.viableEnemyPathsCount, minim.viableEnemyPathsCount);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testEvaluationCache_RecuperaMetriquesDelsDosColors() {
+        EvaluationCache cache = new EvaluationCache(100);
+        assertEquals(128, cache.getEntrades());
+
+        // Camí del color 1 infinit (bloquejat) i del color -1 de 3
+        cache.store(0x1234L, 1, new Dijkstra(Integer.MAX_VALUE, 11, 2, 3));
+        Dijkstra resultat = new Dijkstra();
+        assertTrue(cache.lookup(0x1234L, -1, resultat));
+        assertEquals(3, resultat.shortestPath);
+        assertEquals(2, resultat.viablePathsCount);
+        assertEquals(Integer.MAX_VALUE, resultat.enemyShortestPath);
+        assertEquals(11, resultat.viableEnemyPathsCount);
+
+        // Un hash diferent que cau a la mateixa posició no ha de trobar l'entrada
+        assertTrue(!cache.lookup(0x1234L + 128, 1, resultat));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        EvaluationCache desactivada = new EvaluationCache(0);
+        desactivada.store(0x1234L, 1, resultat);
+        assertTrue(!desactivada.lookup(0x1234L, 1, resultat));
+    }
+
+    @Test
+    public void testEvaluationCache_MidaLimitada() {
+        assertEquals(0, EvaluationCache.nombreEntrades(0));
+        assertEquals(2, EvaluationCache.nombreEntrades(1));
+        assertEquals(1 << 20, EvaluationCache.nombreEntrades(1 << 20));
+        assertEquals(1 << 28, EvaluationCache.nombreEntrades(1 << 28));
+        // Sense límit, l'arrodoniment desbordaria l'int i la mida seria negativa
+        assertEquals(1 << 28, EvaluationCache.nombreEntrades((1 << 30) + 1));
+        assertEquals(1 << 28, EvaluationCache.nombreEntrades(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testDijkstra_PuntuarCasellesPrioritzaElForat() {
+        // Al jugador 1 només li falta la casella (2, 2) per connectar les dues vores
+        byte[][] board = {
+            { -1, 0, 0, 0, -1 },
+              { 0, 0, 0, 0, 0 },
+                { 1, 1, 0, 1, 1 },
+                  { 0, 0, 0, 0, 0 },
+                    { -1, 0, 0, 0, -1 }
+        };
+        HexGameStatus gs = new HexGameStatus(board, PlayerType.PLAYER1);
+        Dijkstra dijkstra = new Dijkstra();
+        int[] puntuaciones = dijkstra.puntuarCaselles(gs, 1);
+        HexGeometry geometria = HexGeometry.of(5);
+
+        assertEquals(1, dijkstra.shortestPath);
+        assertEquals(Integer.MIN_VALUE, puntuaciones[geometria.index(0, 2)]);
+        // (1, 3) empata: amb el pont cap a (3, 2) també deixa el camí a cost 1
+        int forat = puntuaciones[geometria.index(2, 2)];
+        for (int casella = 0; casella < puntuaciones.length; casella++) {
+            assertTrue(puntuaciones[casella] <= forat);
+        }
+        assertTrue(puntuaciones[geometria.index(1, 0)] < forat);
+    }
+
+    @Test
+    public void testDijkstra_CamiMinimCoincideixAmbCalcular() {
+        Random random = new Random(17);
+        Dijkstra dijkstra = new Dijkstra();
+        for (int prova = 0; prova < 500; prova++) {
+            int mida = 3 + random.nextInt(9);
+            HexGameStatus gs = posicioAleatoria(mida, random.nextInt(mida * mida), random);
+            for (int color : new int[]{1, -1}) {
+                int esperat = dijkstra.calcular(gs, color).shortestPath;
+                assertEquals(esperat, dijkstra.camiMinim(gs, color));
+                // camiMinim no ha de tocar les mètriques de l'última crida a calcular
+                assertEquals(esperat, dijkstra.shortestPath);
+            }
+        }
+    }
+
+    @Test
+    public void testDijkstra_ComptaElsCaminsMesCurts() {
+        // En un tauler buit els camins més curts avancen una columna per casella, cap a (x+1, y)
+        // o cap a (x+1, y-1): es poden comptar amb programació dinàmica
+        for (int mida = 1; mida <= 9; mida++) {
+            long[] camins = new long[mida];
+            Arrays.fill(camins, 1);
+            for (int x = 1; x < mida; x++) {
+                long[] seguent = new long[mida];
+                for (int y = 0; y < mida; y++) {
+                    seguent[y] = camins[y] + ((y + 1 < mida) ? camins[y + 1] : 0);
+                }
+                camins = seguent;
+            }
+            long total = 0;
+            for (long c : camins) total += c;
+
+            Dijkstra dijkstra = new Dijkstra().calcular(new HexGameStatus(mida), 1);
+            assertEquals(mida, dijkstra.shortestPath);
+            assertEquals(mida, dijkstra.viablePathsCount);
+            assertEquals(total, dijkstra.shortestPathsCount);
+            assertEquals(total, dijkstra.enemyShortestPathsCount);
+        }
+
+        // Amb la vora tallada no hi ha cap camí
+        byte[][] board = {
+            { 0, -1, 0 },
+              { 0, -1, 0 },
+                { 0, -1, 0 }
+        };
+        Dijkstra tallat = new Dijkstra().calcular(new HexGameStatus(board, PlayerType.PLAYER1), 1);
+        assertEquals(Integer.MAX_VALUE, tallat.shortestPath);
+        assertEquals(0, tallat.shortestPathsCount);
+        assertEquals(3, tallat.viablePathsCount);
+    }
+
+    @Test
+    public void testBatchEvaluator_CoincideixAmbDijkstra() {
+        Random random = new Random(17);
+        for (int mida : new int[]{3, 7, 11}) {
+            HexGameStatus pare = posicioAleatoria(mida, mida * mida / 3, random);
+            List<MoveNode> moves = pare.getMoves();
+            HexGameStatus[] fills = new HexGameStatus[moves.size()];
+            for (int i = 0; i < fills.length; i++) {
+                fills[i] = new HexGameStatus(pare);
+                fills[i].placeStone(moves.get(i).getPoint());
+            }
+
+            for (int color : new int[]{1, -1}) {
+                Dijkstra[] resultats = new BatchEvaluator().evaluateBatch(fills, color);
+                for (int i = 0; i < fills.length; i++) {
+                    Dijkstra esperat = new Dijkstra().calcular(fills[i], color);
+                    assertEquals(esperat.shortestPath, resultats[i].shortestPath);
+                    assertEquals(esperat.viablePathsCount, resultats[i].viablePathsCount);
+                    assertEquals(esperat.enemyShortestPath, resultats[i].enemyShortestPath);
+                    assertEquals(esperat.viableEnemyPathsCount, resultats[i].viableEnemyPathsCount);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testVirtualConnections_DemostraGuanyadorEn3x3() {
+        ZobristHashing.setBoardSize(3);
+        HexGameStatus estat = new HexGameStatus(3);
+        long hash = ZobristHashing.calculateHash(estat);
+        VirtualConnections connexions = new VirtualConnections(3);
+
+        // Al 3x3 buit guanya qui comença, jugant al centre
+        assertEquals(1, connexions.guanyador(estat, hash));
+        assertEquals(1 * 3 + 1, connexions.jugadaGuanyadora(estat, hash));
+
+        // Derivada de la posició anterior o calculada de zero, la conclusió ha de ser la mateixa
+        HexGameStatus fill = new HexGameStatus(estat);
+        fill.placeStone(new Point(1, 1));
+        long hashFill = ZobristHashing.calculateHash(fill);
+        assertEquals(1, connexions.guanyador(fill, hashFill, hash, 1 * 3 + 1, 1));
+        assertEquals(1, new VirtualConnections(3).guanyador(fill, hashFill));
+        assertEquals(-1, connexions.jugadaGuanyadora(fill, hashFill));
+
+        // Al tauler gran buit no es pot demostrar res
+        ZobristHashing.setBoardSize(11);
+        HexGameStatus gran = new HexGameStatus(11);
+        assertEquals(0, new VirtualConnections(11).guanyador(gran, ZobristHashing.calculateHash(gran)));
+    }
+
+    @Test
+    public void testInferiorCells_CasellaMortaEsPoda() {
+        // Quatre veïns consecutius de (3, 3) del color 1: (4, 3), (4, 2), (3, 2) i (2, 3).
+        // La matriu del constructor s'indexa per [y][x]
+        byte[][] board = new byte[7][7];
+        board[3][4] = 1;
+        board[2][4] = 1;
+        board[2][3] = 1;
+        board[3][2] = 1;
+        board[5][1] = -1;
+        board[1][5] = -1;
+        HexGameStatus estat = new HexGameStatus(board, PlayerType.PLAYER2);
+        assertEquals(1, estat.getPos(4, 3));
+
+        InferiorCells inferiors = new InferiorCells(7);
+        assertTrue(inferiors.analitzar(estat) > 0);
+        assertEquals(InferiorCells.MORTA, inferiors.getTipus(3 * 7 + 3));
+        List<MoveNode> podats = inferiors.podar(estat, estat.getMoves());
+        assertTrue(podats.size() < estat.getMoves().size());
+        for (MoveNode moviment : podats) {
+            assertNotEquals(new Point(3, 3), moviment.getPoint());
+        }
+
+        // Al tauler buit no hi ha cap casella inferior
+        assertEquals(0, inferiors.analitzar(new HexGameStatus(7)));
+    }
+
+    @Test
+    public void testMustPlayRegion_NomesLaCasellaQueAturaLAmenaca() {
+        // El color 1 té (0, 2) .. (3, 2) i només li falta (4, 2): (4, 1) és del color -1.
+        // La matriu del constructor s'indexa per [y][x]
+        byte[][] board = new byte[5][5];
+        for (int x = 0; x < 4; x++) {
+            board[2][x] = 1;
+        }
+        board[1][4] = -1;
+        HexGameStatus estat = new HexGameStatus(board, PlayerType.PLAYER2);
+
+        MustPlayRegion regio = new MustPlayRegion();
+        List<MoveNode> obligats = regio.podar(estat, estat.getMoves());
+        assertEquals(1, obligats.size());
+        assertEquals(new Point(4, 2), obligats.get(0).getPoint());
+        assertEquals(1, regio.getAplicacions());
+
+        // Sense amenaça la llista no es toca
+        HexGameStatus buit = new HexGameStatus(5);
+        List<MoveNode> moviments = buit.getMoves();
+        assertSame(moviments, regio.podar(buit, moviments));
+    }
+
+    @Test
+    public void testRelevanceZone_CasellesDelsCaminsMinims() {
+        // El color 1 té la fila y = 0 fins a x = 5 i el -1 la columna x = 6 des de y = 1: als dos
+        // els falta només (6, 0). La matriu del constructor s'indexa per [y][x]
+        byte[][] board = new byte[7][7];
+        for (int i = 0; i < 6; i++) {
+            board[0][i] = 1;
+            board[i + 1][6] = -1;
+        }
+        HexGameStatus estat = new HexGameStatus(board, PlayerType.PLAYER1);
+
+        boolean[] zona = new Dijkstra().zonaRellevant(estat, 1, 0);
+        assertTrue(zona[6 * 7 + 0]);
+        assertTrue(!zona[2 * 7 + 4]);
+        List<MoveNode> dins = new RelevanceZone(0).podar(estat, estat.getMoves());
+        assertEquals(1, dins.size());
+        assertEquals(new Point(6, 0), dins.get(0).getPoint());
+
+        // Al tauler buit tots els camins mínims són iguals i no es descarta res
+        HexGameStatus buit = new HexGameStatus(7);
+        assertEquals(49, new RelevanceZone(0).podar(buit, buit.getMoves()).size());
+    }
+
+    @Test
+    public void testArrelEnParalel_MateixaJugadaQueSequencial() {
+        Random random = new Random(11);
+        for (int partida = 0; partida < 4; partida++) {
+            HexGameStatus estado = posicioAleatoria(7, 12, random);
+            if (estado.isGameOver()) continue;
+
+            PlayerMinimaxHexCalculators serie = new PlayerMinimaxHexCalculators("TestPlayer", 3, 7);
+            serie.setConnexionsVirtuals(false);
+            PlayerMove esperat = serie.move(new HexGameStatus(estado));
+            for (int fils : new int[]{1, 2}) {
+                ForkJoinPool pool = new ForkJoinPool(fils);
+                PlayerMinimaxHexCalculators paralel = new PlayerMinimaxHexCalculators("TestPlayer", 3, 7);
+                paralel.setConnexionsVirtuals(false);
+                paralel.setForkJoinPool(pool);
+                PlayerMove obtingut = paralel.move(new HexGameStatus(estado));
+                pool.shutdown();
+                assertEquals(esperat.getPoint(), obtingut.getPoint());
+                // Amb un sol fil la cerca és exactament la seqüencial
+                if (fils == 1) {
+                    assertEquals(esperat.getNumerOfNodesExplored(), obtingut.getNumerOfNodesExplored());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPuntsParticio_MateixValorQueSequencial() {
+        Random random = new Random(17);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        for (int partida = 0; partida < 4; partida++) {
+            HexGameStatus estado = posicioAleatoria(7, 10, random);
+            if (estado.isGameOver()) continue;
+
+            for (int prof = 2; prof <= 3; prof++) {
+                PlayerMinimaxHexCalculators serie = new PlayerMinimaxHexCalculators("TestPlayer", prof, 7);
+                serie.setConnexionsVirtuals(false);
+                Point esperat = serie.move(new HexGameStatus(estado)).getPoint();
+
+                PlayerMinimaxHexCalculators ybwc = new PlayerMinimaxHexCalculators("TestPlayer", prof, 7);
+                ybwc.setConnexionsVirtuals(false);
+                ybwc.setForkJoinPool(pool);
+                ybwc.setPuntsParticio(true);
+                Point obtingut = ybwc.move(new HexGameStatus(estado)).getPoint();
+
+                assertEquals(serie.getUltimValor(), ybwc.getUltimValor());
+                assertEquals(esperat, obtingut);
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLazySMP_JugadaLegalDinsDelTemps() {
+        Random random = new Random(13);
+        HexGameStatus estado = posicioAleatoria(7, 8, random);
+
+        PlayerIDHexCalculators player = new PlayerIDHexCalculators("TestPlayer", 7, 1);
+        player.setConnexionsVirtuals(false);
+        player.setFils(4);
+        for (int jugada = 0; jugada < 2; jugada++) {
+            long t0 = System.currentTimeMillis();
+            PlayerMove move = player.move(new HexGameStatus(estado));
+            long temps = System.currentTimeMillis() - t0;
+            System.out.println("testLazySMP_JugadaLegalDinsDelTemps: " + move.getPoint() + " en " + temps + " ms, profunditat "
+                    + move.getMaxDepthReached());
+            // Els ajudants s'aturen amb el principal
+            assertTrue(temps < 3000);
+            assertEquals(0, estado.getPos(move.getPoint().x, move.getPoint().y));
+            estado.placeStone(move.getPoint());
+            if (estado.isGameOver()) break;
+            jugadaAleatoria(estado, random);
+        }
+        player.tancar();
+    }
+
+    @Test
+    public void testLazySMP_TancarAturaElsFils() throws Exception {
+        HexGameStatus estado = posicioAleatoria(7, 8, new Random(13));
+        PlayerIDHexCalculators player = new PlayerIDHexCalculators("TestPlayer", 7, 1);
+        player.setConnexionsVirtuals(false);
+        java.util.Set<Thread> abans = Thread.getAllStackTraces().keySet();
+        player.setFils(3);
+        player.move(new HexGameStatus(estado));
+        java.util.Set<Thread> ajudants = new java.util.HashSet<>(Thread.getAllStackTraces().keySet());
+        ajudants.removeAll(abans);
+        ajudants.removeIf(fil -> !fil.getName().startsWith("ForkJoinPool-"));
+        assertFalse(ajudants.isEmpty());
+
+        // Tornar a un sol fil atura els dels ajudants
+        player.setFils(1);
+        for (Thread fil : ajudants) {
+            fil.join(5000);
+            assertFalse(fil.isAlive());
+        }
+
+        // El jugador es continua podent fer servir amb més fils
+        player.setFils(3);
+        PlayerMove move = player.move(new HexGameStatus(estado));
+        assertEquals(0, estado.getPos(move.getPoint().x, move.getPoint().y));
+        player.tancar();
+    }
+
     @Test
     public void testZobristHashing() {
         ZobristHashing.setBoardSize(5); // Tamaño del tablero
@@ -147,7 +581,84 @@ public class TestPlayerMiniMax {
         assertEquals(hashInicial, hashRevertido);
         assertEquals(hashNuevo, hashActualizado);
     }
-    
+
+    @Test
+    public void testHexPosition_JugarIDesferComLesCopies() {
+        Random random = new Random(19);
+        for (int mida : new int[]{3, 5, 7}) {
+            ZobristHashing.setBoardSize(mida);
+            for (int partida = 0; partida < 20; partida++) {
+                HexPosition posicio = new HexPosition(new HexGameStatus(mida));
+                HexGameStatus[] estats = new HexGameStatus[mida * mida + 1];
+                long[] hashos = new long[mida * mida + 1];
+                estats[0] = new HexGameStatus(mida);
+                hashos[0] = posicio.getHash();
+                int n = 0;
+                // Es juga fins que algú guanya, desfent de tant en tant alguna jugada
+                while (!estats[n].isGameOver()) {
+                    if (n > 0 && random.nextInt(4) == 0) {
+                        posicio.undo();
+                        n--;
+                    } else {
+                        List<MoveNode> moves = estats[n].getMoves();
+                        Point punt = moves.get(random.nextInt(moves.size())).getPoint();
+                        estats[n + 1] = new HexGameStatus(estats[n]);
+                        estats[n + 1].placeStone(punt);
+                        posicio.play(punt);
+                        n++;
+                        hashos[n] = ZobristHashing.calculateHash(estats[n]);
+                    }
+                    HexGameStatus esperat = estats[n];
+                    assertEquals(n, posicio.getJugades());
+                    assertEquals(hashos[n], posicio.getHash());
+                    assertEquals(esperat.isGameOver(), posicio.isGameOver());
+                    assertEquals(esperat.GetWinner(), posicio.GetWinner());
+                    assertEquals(esperat.getCurrentPlayerColor(), posicio.getCurrentPlayerColor());
+                    for (int x = 0; x < mida; x++) {
+                        for (int y = 0; y < mida; y++) {
+                            assertEquals(esperat.getPos(x, y), posicio.getPos(x, y));
+                        }
+                    }
+                    List<MoveNode> movesEsperats = esperat.getMoves();
+                    List<MoveNode> movesObtinguts = posicio.getMoves();
+                    assertEquals(movesEsperats.size(), movesObtinguts.size());
+                    for (int i = 0; i < movesEsperats.size(); i++) {
+                        assertEquals(movesEsperats.get(i).getPoint(), movesObtinguts.get(i).getPoint());
+                    }
+                }
+
+                // Desfer-ho tot torna al tauler buit
+                while (posicio.getJugades() > 0) {
+                    posicio.undo();
+                }
+                assertEquals(hashos[0], posicio.getHash());
+                assertTrue(!posicio.isGameOver());
+                assertEquals(mida * mida, posicio.getMoves().size());
+            }
+        }
+    }
+
+    @Test
+    public void testCasellesBuides_MateixOrdreQueGetMoves() {
+        Random random = new Random(23);
+        for (int mida : new int[]{5, 7, 9}) {
+            ZobristHashing.setBoardSize(mida);
+            HexGeometry geometria = HexGeometry.of(mida);
+            HexGameStatus estat = posicioAleatoria(mida, mida * mida / 2, random);
+            List<MoveNode> moves = estat.getMoves();
+            int[] caselles = new HexPosition(estat).getCasellesBuides();
+            assertEquals(moves.size(), caselles.length);
+            for (int i = 0; i < caselles.length; i++) {
+                assertEquals(moves.get(i).getPoint(), geometria.punt(caselles[i]));
+            }
+            assertTrue(Arrays.equals(caselles, geometria.caselles(moves)));
+            List<MoveNode> tornada = geometria.moviments(caselles);
+            for (int i = 0; i < caselles.length; i++) {
+                assertEquals(moves.get(i).getPoint(), tornada.get(i).getPoint());
+            }
+        }
+    }
+
     @Test
     public void testOrdenarMovimientosRapido() {
         // Configuración inicial del tablero
@@ -228,4 +739,410 @@ public class TestPlayerMiniMax {
             assertTrue(heuristicaAnterior >= heuristicaActual);
         }*/
     }
+
+    @Test
+    public void testOrdenarMovimientos_MateixOrdreQueAmbComparador() {
+        Random random = new Random(5);
+        for (int mida : new int[]{5, 7, 9}) {
+            PlayerMinimaxHexCalculators player = new PlayerMinimaxHexCalculators("TestPlayer", 1, mida);
+            player._colorPlayer = 1;
+            HexGameStatus estado = posicioAleatoria(mida, 2 * mida, random);
+            final HexGameStatus base = estado;
+
+            // Ordenació estable avaluant els fills dins del comparador
+            List<MoveNode> esperat = base.getMoves();
+            esperat.sort((a, b) -> {
+                HexGameStatus estadoA = new HexGameStatus(base);
+                HexGameStatus estadoB = new HexGameStatus(base);
+                estadoA.placeStone(a.getPoint());
+                estadoB.placeStone(b.getPoint());
+                return Integer.compare(player.heuristica(estadoB, 1), player.heuristica(estadoA, 1));
+            });
+
+            List<MoveNode> obtingut = player.ordenarMovimientos(base);
+            assertEquals(esperat.size(), obtingut.size());
+            for (int i = 0; i < esperat.size(); i++) {
+                assertEquals(esperat.get(i).getPoint(), obtingut.get(i).getPoint());
+            }
+        }
+    }
+
+    @Test
+    public void testTaulaTransposicio_SubstitucioPerProfunditat() {
+        TranspositionTable taula = new TranspositionTable(1);
+        TranspositionTable.TableEntry entrada = new TranspositionTable.TableEntry();
+        int capacitat = taula.capacitat();
+
+        // Tres posicions que comparteixen cubeta: només difereixen en els bits alts
+        long a = 0x1234L;
+        long b = a | (1L << 40);
+        long c = a | (1L << 50);
+
+        assertFalse(taula.lookup(a, entrada));
+        taula.store(a, 5, -1234567, TranspositionTable.alfa, TranspositionTable.SENSE_JUGADA);
+        assertTrue(taula.lookup(a, entrada));
+        assertEquals(-1234567, entrada.value);
+        assertEquals(5, entrada.depth);
+        assertEquals(TranspositionTable.alfa, entrada.flag);
+        assertEquals(TranspositionTable.SENSE_JUGADA, entrada.bestMove);
+
+        // Una entrada menys profunda va a la de substitució i no treu la profunda
+        taula.store(b, 2, 7, TranspositionTable.EXACT, 120);
+        assertTrue(taula.lookup(a, entrada));
+        assertTrue(taula.lookup(b, entrada));
+        assertEquals(120, entrada.bestMove);
+        taula.store(c, 1, 8, TranspositionTable.beta, 3);
+        assertTrue(taula.lookup(a, entrada));
+        assertFalse(taula.lookup(b, entrada));
+        assertTrue(taula.lookup(c, entrada));
+
+        // Una entrada més profunda ocupa la primera i la profunda baixa a la de substitució
+        taula.store(b, 9, 11, TranspositionTable.EXACT, 4);
+        assertTrue(taula.lookup(b, entrada));
+        assertEquals(9, entrada.depth);
+        assertTrue(taula.lookup(a, entrada));
+        assertFalse(taula.lookup(c, entrada));
+        assertEquals(2, taula.size());
+
+        // La memòria no creix per moltes entrades que s'hi desin
+        Random random = new Random(21);
+        for (int i = 0; i < 4 * capacitat; i++) {
+            taula.store(random.nextLong(), random.nextInt(10), i, TranspositionTable.EXACT, i & 0xFF);
+        }
+        assertEquals(capacitat, taula.capacitat());
+        assertTrue(taula.size() <= capacitat);
+        taula.clear();
+        assertEquals(0, taula.size());
+    }
+
+    @Test
+    public void testTaulaTransposicioConcurrent_SenseEntradesCorruptes() throws Exception {
+        TranspositionTable taula = new TranspositionTable(1);
+        // Totes les claus cauen en 8 cubetes perquè els fils s'hi trepitgin
+        Random random = new Random(22);
+        long[] claus = new long[256];
+        for (int i = 0; i < claus.length; i++) {
+            claus[i] = random.nextLong() & ~0xFFFFFL | random.nextInt(8);
+        }
+        AtomicLong trobades = new AtomicLong();
+        AtomicLong corruptes = new AtomicLong();
+        Thread[] fils = new Thread[16];
+        for (int f = 0; f < fils.length; f++) {
+            final long llavor = f;
+            fils[f] = new Thread(() -> {
+                Random r = new Random(llavor);
+                TranspositionTable.TableEntry entrada = new TranspositionTable.TableEntry();
+                for (int i = 0; i < 200_000; i++) {
+                    long clau = claus[r.nextInt(claus.length)];
+                    // Les dades es dedueixen de la clau, de manera que una entrada barrejada es detecta
+                    int valor = (int) (clau >>> 32);
+                    int profunditat = (int) ((clau >>> 24) & 0x3F);
+                    int jugada = (int) ((clau >>> 48) & 0x1FF);
+                    if (r.nextBoolean()) {
+                        taula.store(clau, profunditat, valor, TranspositionTable.EXACT, jugada);
+                    } else if (taula.lookup(clau, entrada)) {
+                        trobades.incrementAndGet();
+                        if (entrada.value != valor || entrada.depth != profunditat
+                                || entrada.bestMove != jugada || entrada.flag != TranspositionTable.EXACT) {
+                            corruptes.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread fil : fils) fil.start();
+        for (Thread fil : fils) fil.join();
+        assertTrue(trobades.get() > 0);
+        assertEquals(0, corruptes.get());
+    }
+
+    @Test
+    public void testTaulaForaHeap_MateixesEntradesQueAlHeap() {
+        TranspositionTable heap = new TranspositionTable(2);
+        TranspositionTable fora = new OffHeapTranspositionTable(2);
+        assertEquals(heap.capacitat(), fora.capacitat());
+        Random random = new Random(23);
+        long[] claus = new long[3 * heap.capacitat() / 2];
+        for (int i = 0; i < claus.length; i++) {
+            claus[i] = random.nextLong();
+            int profunditat = random.nextInt(12);
+            heap.store(claus[i], profunditat, -i, i % 3, i & 0x3FF);
+            fora.store(claus[i], profunditat, -i, i % 3, i & 0x3FF);
+        }
+        assertEquals(heap.size(), fora.size());
+        TranspositionTable.TableEntry a = new TranspositionTable.TableEntry();
+        TranspositionTable.TableEntry b = new TranspositionTable.TableEntry();
+        for (long clau : claus) {
+            boolean trobada = heap.lookup(clau, a);
+            assertEquals(trobada, fora.lookup(clau, b));
+            if (trobada) {
+                assertEquals(a.value, b.value);
+                assertEquals(a.depth, b.depth);
+                assertEquals(a.flag, b.flag);
+                assertEquals(a.bestMove, b.bestMove);
+            }
+        }
+        fora.clear();
+        assertEquals(0, fora.size());
+        assertFalse(fora.lookup(claus[0], b));
+    }
+
+    @Test
+    public void testTaulaFitxer_DesarICarregar() throws Exception {
+        Path fitxer = Files.createTempFile("taula", ".tt");
+        try {
+            TranspositionTable taula = new TranspositionTable(1);
+            Random random = new Random(24);
+            long[] claus = new long[1000];
+            for (int i = 0; i < claus.length; i++) {
+                claus[i] = random.nextLong();
+                taula.store(claus[i], i % 20, i - 500, i % 3, i);
+            }
+            taula.desar(fitxer, 9);
+
+            // Un fitxer d'una altra mida de tauler es rebutja
+            assertNull(MappedTranspositionTable.carregar(fitxer, 11));
+
+            MappedTranspositionTable carregada = MappedTranspositionTable.carregar(fitxer, 9);
+            assertNotNull(carregada);
+            assertEquals(taula.capacitat(), carregada.capacitat());
+            TranspositionTable.TableEntry a = new TranspositionTable.TableEntry();
+            TranspositionTable.TableEntry b = new TranspositionTable.TableEntry();
+            for (long clau : claus) {
+                assertTrue(taula.lookup(clau, a));
+                assertTrue(carregada.lookup(clau, b));
+                assertEquals(a.value, b.value);
+                assertEquals(a.depth, b.depth);
+                assertEquals(a.flag, b.flag);
+                assertEquals(a.bestMove, b.bestMove);
+            }
+
+            // El que s'escriu a la taula carregada arriba al fitxer
+            carregada.store(42L, 7, 123, TranspositionTable.EXACT, 5);
+            carregada.desar(fitxer, 9);
+            MappedTranspositionTable altra = MappedTranspositionTable.carregar(fitxer, 9);
+            assertTrue(altra.lookup(42L, b));
+            assertEquals(123, b.value);
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    @Test
+    public void testTaulaGeneracions_SegonJugadorDetectaPartidaNova() {
+        PlayerMinimaxHexCalculators segon = new PlayerMinimaxHexCalculators("segon", 2, 7);
+        segon.setConnexionsVirtuals(false);
+        PlayerIDHexCalculators segonID = new PlayerIDHexCalculators("segonID", 7, 1);
+        segonID.setConnexionsVirtuals(false);
+        Random random = new Random(25);
+        for (int partida = 0; partida < 3; partida++) {
+            // El segon jugador no veu mai el tauler buit: la seva primera jugada ja en té una pedra
+            HexGameStatus minimax = new HexGameStatus(7);
+            HexGameStatus id = new HexGameStatus(7);
+            Point obertura = new Point(random.nextInt(7), random.nextInt(7));
+            minimax.placeStone(obertura);
+            id.placeStone(obertura);
+            for (int jugada = 0; jugada < 3; jugada++) {
+                minimax.placeStone(segon.move(new HexGameStatus(minimax)).getPoint());
+                id.placeStone(segonID.move(new HexGameStatus(id)).getPoint());
+                assertEquals(partida, segon.getTaulaTransposicio().getGeneracio());
+                assertEquals(partida, segonID.getTaulaTransposicio().getGeneracio());
+                jugadaAleatoria(minimax, random);
+                jugadaAleatoria(id, random);
+            }
+        }
+    }
+
+    @Test
+    public void testTaulaFitxer_AltreColorNoFaServirLesEntrades() throws Exception {
+        Path fitxer = Files.createTempFile("taula", ".tt");
+        try {
+            // Un procés juga amb el primer color i desa la taula
+            PlayerMinimaxHexCalculators primer = new PlayerMinimaxHexCalculators("primer", 3, 5);
+            primer.setConnexionsVirtuals(false);
+            HexGameStatus partida = new HexGameStatus(5);
+            Random random = new Random(7);
+            for (int jugada = 0; jugada < 3; jugada++) {
+                partida.placeStone(primer.move(new HexGameStatus(partida)).getPoint());
+                jugadaAleatoria(partida, random);
+            }
+            primer.desarTaulaTransposicio(fitxer);
+
+            // Un altre la carrega i juga amb el segon: cerca igual que amb la taula buida
+            PlayerMinimaxHexCalculators carregat = new PlayerMinimaxHexCalculators("carregat", 3, 5);
+            carregat.setConnexionsVirtuals(false);
+            assertTrue(carregat.carregarTaulaTransposicio(fitxer));
+            PlayerMinimaxHexCalculators nou = new PlayerMinimaxHexCalculators("nou", 3, 5);
+            nou.setConnexionsVirtuals(false);
+            HexGameStatus segon = new HexGameStatus(5);
+            segon.placeStone(new Point(2, 2));
+            assertEquals(nou.move(new HexGameStatus(segon)).getPoint(),
+                    carregat.move(new HexGameStatus(segon)).getPoint());
+            assertEquals(nou.getUltimValor(), carregat.getUltimValor());
+            assertEquals(nou.getEncertsTaula(), carregat.getEncertsTaula());
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    @Test
+    public void testTaulaFitxer_VersioAnteriorEsRebutja() throws Exception {
+        Path fitxer = Files.createTempFile("taula", ".tt");
+        try {
+            MappedTranspositionTable.crear(fitxer, 9, 1);
+            assertNotNull(MappedTranspositionTable.carregar(fitxer, 9));
+
+            // Les claus de la versió 1 no tenien el color que cerca
+            try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.WRITE)) {
+                ByteBuffer versio = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(1);
+                versio.flip();
+                canal.write(versio, 8);
+            }
+            assertNull(MappedTranspositionTable.carregar(fitxer, 9));
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    @Test
+    public void testTaulaGeneracions_AltreColorNoFaServirLesEntrades() {
+        // Una partida amb el primer color deixa a la taula valors des del seu punt de vista
+        PlayerMinimaxHexCalculators jugador = new PlayerMinimaxHexCalculators("jugador", 3, 5);
+        jugador.setConnexionsVirtuals(false);
+        HexGameStatus partida = new HexGameStatus(5);
+        Random random = new Random(7);
+        for (int jugada = 0; jugada < 3; jugada++) {
+            partida.placeStone(jugador.move(new HexGameStatus(partida)).getPoint());
+            jugadaAleatoria(partida, random);
+        }
+
+        // Amb l'altre color, la cerca ha de ser la mateixa que amb la taula buida
+        PlayerMinimaxHexCalculators nou = new PlayerMinimaxHexCalculators("nou", 3, 5);
+        nou.setConnexionsVirtuals(false);
+        for (int x = 0; x < 5; x++) {
+            HexGameStatus segon = new HexGameStatus(5);
+            segon.placeStone(new Point(x, 2));
+            long encerts = jugador.getEncertsTaula();
+            long encertsNou = nou.getEncertsTaula();
+            Point jugadaJugador = jugador.move(new HexGameStatus(segon)).getPoint();
+            Point jugadaNou = nou.move(new HexGameStatus(segon)).getPoint();
+            assertEquals(jugadaNou, jugadaJugador);
+            assertEquals(nou.getUltimValor(), jugador.getUltimValor());
+            assertEquals(nou.getEncertsTaula() - encertsNou, jugador.getEncertsTaula() - encerts);
+        }
+    }
+
+    @Test
+    public void testTaulaGeneracions_EntradesVellesEsSubstitueixenPrimer() throws Exception {
+        TranspositionTable taula = new TranspositionTable(1);
+        TranspositionTable.TableEntry entrada = new TranspositionTable.TableEntry();
+        long a = 0x1234L;
+        long b = a | (1L << 40);
+        long c = a | (1L << 50);
+
+        taula.store(a, 9, 1, TranspositionTable.EXACT, 1);
+        taula.store(b, 1, 2, TranspositionTable.EXACT, 2);
+
+        // En una partida nova, la profunda de l'anterior cedeix el lloc però es continua trobant
+        taula.novaGeneracio();
+        assertEquals(1, taula.getGeneracio());
+        assertTrue(taula.lookup(a, entrada));
+        taula.store(c, 1, 3, TranspositionTable.EXACT, 3);
+        assertTrue(taula.lookup(c, entrada));
+        assertTrue(taula.lookup(a, entrada));
+        assertEquals(9, entrada.depth);
+        assertFalse(taula.lookup(b, entrada));
+
+        // Dins la mateixa generació torna a manar la profunditat
+        taula.store(b, 1, 4, TranspositionTable.EXACT, 4);
+        assertTrue(taula.lookup(c, entrada));
+        assertTrue(taula.lookup(b, entrada));
+        assertFalse(taula.lookup(a, entrada));
+
+        // El comptador dóna la volta
+        for (int i = 0; i < TranspositionTable.GENERACIONS; i++) {
+            taula.novaGeneracio();
+        }
+        assertEquals(1, taula.getGeneracio());
+
+        // La taula d'un fitxer conserva la generació
+        Path fitxer = Files.createTempFile("taula", ".tt");
+        try {
+            MappedTranspositionTable projectada = MappedTranspositionTable.crear(fitxer, 9, 1);
+            assertEquals(0, projectada.getGeneracio());
+            projectada.novaGeneracio();
+            projectada.novaGeneracio();
+            projectada.desar();
+            assertEquals(2, MappedTranspositionTable.carregar(fitxer, 9).getGeneracio());
+            taula.desar(fitxer, 9);
+            assertEquals(1, MappedTranspositionTable.carregar(fitxer, 9).getGeneracio());
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    /**
+     * Posa pedres a l'atzar, alternant els colors, sobre un tauler buit. S'atura si algú guanya.
+     *
+     * @param mida Mida del tauler.
+     * @param pedres Nombre de pedres.
+     * @param random Generador de les jugades.
+     * @return La posició.
+     */
+    private static HexGameStatus posicioAleatoria(int mida, int pedres, Random random) {
+        HexGameStatus s = new HexGameStatus(mida);
+        for (int i = 0; i < pedres && !s.isGameOver(); i++) {
+            jugadaAleatoria(s, random);
+        }
+        return s;
+    }
+
+    /**
+     * Juga una casella buida qualsevol.
+     *
+     * @param s Estat de la partida, que no ha d'haver acabat.
+     * @param random Generador de la jugada.
+     */
+    private static void jugadaAleatoria(HexGameStatus s, Random random) {
+        List<MoveNode> moves = s.getMoves();
+        s.placeStone(moves.get(random.nextInt(moves.size())).getPoint());
+    }
+
+    /** Comprovació que es fa a cada pas de {@link #passeigIncremental}. */
+    private interface PasIncremental {
+        void comprovar(HexGameStatus gs, IncrementalDijkstra incremental, Random random);
+    }
+
+    /**
+     * Recorre l'arbre de jugades de taulers de mida 5, 9 i 11 jugant i desfent a l'atzar, alhora
+     * sobre còpies de l'estat i sobre un {@link IncrementalDijkstra}, i comprova cada pas.
+     *
+     * @param llavor Llavor de les jugades.
+     * @param pas Comprovació de cada pas, amb l'estat i l'incremental ja al mateix punt.
+     */
+    private static void passeigIncremental(long llavor, PasIncremental pas) {
+        Random random = new Random(llavor);
+        for (int mida : new int[]{5, 9, 11}) {
+            HexGameStatus gs = new HexGameStatus(mida);
+            IncrementalDijkstra incremental = new IncrementalDijkstra(mida);
+            incremental.reiniciar(gs);
+            java.util.ArrayDeque<HexGameStatus> cami = new java.util.ArrayDeque<>();
+
+            for (int i = 0; i < 200; i++) {
+                if (!gs.isGameOver() && (cami.isEmpty() || random.nextInt(3) > 0)) {
+                    List<MoveNode> moves = gs.getMoves();
+                    Point p = moves.get(random.nextInt(moves.size())).getPoint();
+                    cami.push(gs);
+                    incremental.push(p, gs.getCurrentPlayerColor());
+                    gs = new HexGameStatus(gs);
+                    gs.placeStone(p);
+                } else if (!cami.isEmpty()) {
+                    incremental.pop();
+                    gs = cami.pop();
+                }
+                pas.comprovar(gs, incremental, random);
+            }
+            assertEquals(cami.size(), incremental.getProfunditat());
+        }
+    }
 }